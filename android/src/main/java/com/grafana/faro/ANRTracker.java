@@ -2,38 +2,47 @@ package com.grafana.faro;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ANRTracker detects Application Not Responding (ANR) situations by monitoring the main thread.
- * It posts a task to the main thread and checks if it completes within a specified timeout.
- * If the task doesn't complete in time, it indicates the main thread is blocked (ANR).
+ * Every {@link #TIMEOUT}, a check registered with the {@link NativeScheduler} posts a task to the
+ * main thread. If the task posted by the previous check has still not run, the main thread has
+ * been blocked for at least the timeout, and the ANR is reported once for that blocked period.
  */
-public class ANRTracker extends Thread {
+public class ANRTracker {
     private static final String TAG = "ANRTracker";
-    private static final long TIMEOUT = 5000L; // Time interval for checking ANR, in milliseconds
-    private static final long CHECK_INTERVAL = 500L; // Time to wait between checks, in milliseconds
+    static final long TIMEOUT = 5000L; // Time interval for checking ANR, in milliseconds
     static final int MAX_STACK_FRAMES = 50;
     static final int MAX_ANR_ENTRIES = 10;
+    private static final long IDLE = -1L;
     
-    // Thread-safe list to store ANR information
-    private static final List<String> anrList = Collections.synchronizedList(new ArrayList<>());
+    // Lock-free queue of detected ANRs, keeping the most recent ones
+    private static final EventRingBuffer<JSONObject> anrEvents = new EventRingBuffer<>(MAX_ANR_ENTRIES);
+    // Where ANRs go while no engine is attached to drain them
+    private static volatile @Nullable TelemetrySpool spool;
     
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
-    private final Thread mainThread = Looper.getMainLooper().getThread();
-    private final AtomicBoolean isRunning = new AtomicBoolean(true);
-    private final AtomicBoolean taskExecuted = new AtomicBoolean(false);
+    private final @Nullable Thread mainThread;
+    private final NativeScheduler scheduler;
+    private final AtomicBoolean taskExecuted = new AtomicBoolean(true);
+    private final @Nullable EventAggregator eventAggregator;
+    private @Nullable NativeScheduler.Timer checkTimer;
+    // Accessed on the scheduler thread only
+    private long postedAtMs = IDLE;
+    private boolean isAnrReported = false;
     
     private final Runnable checkTask = () -> {
         // This task runs on the main thread
@@ -41,158 +50,196 @@ public class ANRTracker extends Thread {
     };
 
     /**
-     * Get the list of ANR events that have been detected
-     * @return List of ANR stack traces as strings, or null if no ANRs detected
+     * @param eventAggregator Aggregator notified of each detected ANR, if any
      */
-    public static List<String> getANRStatus() {
-        if (anrList.isEmpty()) {
-            return null;
-        }
-        // Return a copy to avoid concurrent modification issues
-        synchronized (anrList) {
-            return new ArrayList<>(anrList);
-        }
+    public ANRTracker(@Nullable EventAggregator eventAggregator) {
+        this(eventAggregator, NativeScheduler.getInstance(), Looper.getMainLooper().getThread());
+    }
+
+    ANRTracker(
+            @Nullable EventAggregator eventAggregator,
+            @NonNull NativeScheduler scheduler,
+            @Nullable Thread mainThread) {
+        this.eventAggregator = eventAggregator;
+        this.scheduler = scheduler;
+        this.mainThread = mainThread;
     }
 
     /**
-     * Clear the ANR events list
+     * Remove and return the ANR events detected since the previous call, in one step.
+     * Stacks are sent as {@link FrameDictionary} ids; the first event also carries the frames the
+     * receiver does not know yet as "frames", starting at id "firstFrameId", and the number of
+     * ANRs dropped because too many were pending as "droppedCount".
+     * @param knownFrames Number of dictionary frames the receiver already has
+     * @return List of ANR events as JSON strings, or null if no ANRs detected
      */
-    public static void resetANR() {
-        synchronized (anrList) {
-            anrList.clear();
+    @Nullable
+    public static synchronized List<String> drainANRStatus(int knownFrames) {
+        if (anrEvents.isEmpty()) {
+            return null;
         }
-    }
-
-    @Override
-    public void run() {
-        Log.d(TAG, "Tracking started");
-        
-        while (isRunning.get() && !isInterrupted()) {
-            try {
-                // Capture start time
-                long startTime = System.currentTimeMillis();
-                
-                // Reset the flag before posting the task
-                taskExecuted.set(false);
-                
-                // Post the task to the main thread
-                mainHandler.post(checkTask);
-                
-                // Wait for a short time to give the main thread a chance to execute the task
-                sleep(CHECK_INTERVAL);
-                
-                // Check if we've been interrupted or should stop
-                if (!isRunning.get() || isInterrupted()) {
-                    Log.d(TAG, "Tracking interrupted or stopped during execution");
-                    break;
-                }
-                
-                // If the task hasn't executed after the check interval, start monitoring for ANR
-                if (!taskExecuted.get()) {
-                    Log.d(TAG, "Task not executed after initial check");
-
-                    // Calculate how much more time to wait for a total of TIMEOUT since we started
-                    long elapsedTime = System.currentTimeMillis() - startTime;
-                    long remainingTime = TIMEOUT - elapsedTime;
-                    
-                    // Wait for the remaining time if needed
-                    if (remainingTime > 0) {
-                        sleep(remainingTime);
-                        Log.d(TAG, "Waited additional " + remainingTime + "ms");
-                        
-                        // Check again if we should exit
-                        if (!isRunning.get() || isInterrupted()) {
-                            Log.d(TAG, "Tracking interrupted or stopped during additional wait");
-                            break;
-                        }
-                    }
-                    
-                    // Check again if the task has executed
-                    if (!taskExecuted.get()) {
-                        Log.d(TAG, "Task is still not executed after " + TIMEOUT + "ms");
-                        // The main thread is blocked - this is an ANR
-                        handleAnrDetected();
+        List<JSONObject> anrs = new ArrayList<>(MAX_ANR_ENTRIES);
+        int dropped = anrEvents.drainTo(anrs);
+        if (anrs.isEmpty()) {
+            return null;
+        }
+        // Every frame referenced by the drained events was interned before they were published
+        List<String> newFrames = new ArrayList<>();
+        int firstFrameId = FrameDictionary.framesFrom(knownFrames, newFrames);
+        List<String> statuses = new ArrayList<>(anrs.size());
+        for (int i = 0; i < anrs.size(); i++) {
+            JSONObject anr = anrs.get(i);
+            if (i == 0) {
+                try {
+                    if (!newFrames.isEmpty()) {
+                        anr.put("firstFrameId", firstFrameId);
+                        anr.put("frames", new JSONArray(newFrames));
                     }
-                }
-                
-                // Calculate total time spent in this cycle
-                long cycleTime = System.currentTimeMillis() - startTime;
-                
-                // Wait before next check cycle to maintain 5 second intervals
-                long timeToNextCheck = TIMEOUT - cycleTime;
-                if (timeToNextCheck > 0) {
-                    sleep(timeToNextCheck);
-                    
-                    // One final check if we should exit
-                    if (!isRunning.get() || isInterrupted()) {
-                        Log.d(TAG, "Tracking interrupted or stopped during between-cycle wait");
-                        break;
+                    if (dropped > 0) {
+                        anr.put("droppedCount", dropped);
                     }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Error adding frame dictionary", e);
                 }
-            } catch (InterruptedException e) {
-                // Check if this was due to a deliberate stopTracking call
-                if (!isRunning.get()) {
-                    // This is a normal shutdown, no need to log as a warning
-                    Log.d(TAG, "Tracking thread interrupted during normal shutdown");
-                } else {
-                    // This is an unexpected interruption
-                    Log.w(TAG, "Tracking unexpectedly interrupted", e);
-                }
-                Thread.currentThread().interrupt();
-                return;
             }
+            statuses.add(anr.toString());
         }
-        
-        Log.d(TAG, "Tracking stopped");
+        return statuses;
+    }
+
+    /**
+     * Drop all but the newest pending ANR events, to release memory. The dropped ones are
+     * reported as "droppedCount" by the next drain.
+     * @param keep Number of newest events to keep
+     * @return Number of events dropped
+     */
+    public static synchronized int trimPending(int keep) {
+        return anrEvents.trimTo(keep);
+    }
+
+    /**
+     * Set the spool ANRs are written to instead of the in-memory queue, while no engine can drain them.
+     * Spooled ANRs carry formatted stack traces, as frame ids do not outlive the process.
+     * @param telemetrySpool Spool to write to, or null to queue ANRs in memory
+     */
+    static void setSpool(@Nullable TelemetrySpool telemetrySpool) {
+        spool = telemetrySpool;
+    }
+
+    /**
+     * Start checking the main thread. Calling this while running has no effect.
+     */
+    public synchronized void start() {
+        if (checkTimer != null) {
+            return;
+        }
+        taskExecuted.set(true);
+        checkTimer = scheduler.schedulePeriodic(() -> check(SystemClock.uptimeMillis()), TIMEOUT);
+        Log.d(TAG, "Tracking started");
     }
     
     /**
      * Stop the ANR tracker
      */
-    public void stopTracking() {
-        Log.d(TAG, "stopTracking called - shutting down tracker");
-        
-        // First set the running flag to false before interrupting
-        // This helps us distinguish between normal shutdown and unexpected interruptions
-        isRunning.set(false);
-        
-        // Remove any pending tasks on the main handler
+    public synchronized void stopTracking() {
+        scheduler.cancel(checkTimer);
+        checkTimer = null;
         mainHandler.removeCallbacks(checkTask);
-        
-        // Now interrupt the thread
-        interrupt();
-        
-        Log.d(TAG, "Tracker shutdown complete");
+        Log.d(TAG, "Tracking stopped");
+    }
+
+    public synchronized boolean isRunning() {
+        return checkTimer != null;
+    }
+
+    /**
+     * Check whether the task posted by the previous check ran, and post the next one.
+     * Runs on the scheduler thread.
+     * @param nowMs Current uptime, in milliseconds
+     * @return Whether an ANR was reported
+     */
+    boolean check(long nowMs) {
+        if (taskExecuted.getAndSet(false)) {
+            // The main thread is responsive
+            postedAtMs = nowMs;
+            isAnrReported = false;
+            mainHandler.post(checkTask);
+            return false;
+        }
+        // A whole check interval went by without the main thread running the task
+        if (isAnrReported) {
+            return false;
+        }
+        long blockedMs = nowMs - postedAtMs;
+        Log.d(TAG, "Task is still not executed after " + blockedMs + "ms");
+        isAnrReported = true;
+        handleAnrDetected(blockedMs);
+        return true;
     }
     
     /**
      * Handle ANR detection by capturing stack trace and storing information
      */
-    private void handleAnrDetected() {
+    private void handleAnrDetected(long blockedMs) {
+        if (mainThread != null) {
+            reportAnr(mainThread, blockedMs, null, eventAggregator);
+        }
+    }
+
+    /**
+     * Capture the stack trace of a blocked thread and store it as an ANR
+     * @param mainThread The blocked main thread
+     * @param durationMs How long the thread has been blocked, in milliseconds
+     * @param profile Stack samples taken while the thread was blocked, if any
+     * @param eventAggregator Aggregator notified of the ANR, if any
+     */
+    static void reportAnr(
+            @NonNull Thread mainThread,
+            long durationMs,
+            @Nullable JSONObject profile,
+            @Nullable EventAggregator eventAggregator) {
         try {
             StackTraceElement[] stackTrace = mainThread.getStackTrace();
-            String stackTraceStr = buildStackTraceString(
-                    stackTrace, MAX_STACK_FRAMES);
+            TelemetrySpool telemetrySpool = spool;
+            if (telemetrySpool != null) {
+                spoolAnr(telemetrySpool, stackTrace, durationMs);
+                if (eventAggregator != null) {
+                    eventAggregator.recordAnr();
+                }
+                Log.w(TAG, "ANR detected while detached, main thread blocked for " + durationMs + "ms");
+                return;
+            }
+            int[] frameIds = FrameDictionary.intern(stackTrace, MAX_STACK_FRAMES);
 
             JSONObject anrInfo = new JSONObject();
             try {
                 anrInfo.put("type", "ANR");
                 anrInfo.put("timestamp", System.currentTimeMillis());
-                anrInfo.put("stacktrace", stackTraceStr);
-                anrInfo.put("duration", TIMEOUT);
+                if (frameIds != null) {
+                    JSONArray frames = new JSONArray();
+                    for (int frameId : frameIds) {
+                        frames.put(frameId);
+                    }
+                    anrInfo.put("frameIds", frames);
+                    anrInfo.put("truncatedFrames", stackTrace.length - frameIds.length);
+                } else {
+                    // The frame dictionary is full
+                    anrInfo.put("stacktrace", buildStackTraceString(stackTrace, MAX_STACK_FRAMES));
+                }
+                anrInfo.put("duration", durationMs);
+                if (profile != null) {
+                    anrInfo.put("profile", profile);
+                }
             } catch (JSONException e) {
                 Log.e(TAG, "Error creating ANR JSON", e);
             }
 
-            String anrData = anrInfo.toString();
-            synchronized (anrList) {
-                if (anrList.size() >= MAX_ANR_ENTRIES) {
-                    anrList.remove(0);
-                }
-                anrList.add(anrData);
+            anrEvents.offer(anrInfo);
+            if (eventAggregator != null) {
+                eventAggregator.recordAnr();
             }
 
-            Log.w(TAG, "ANR detected: " + stackTraceStr);
+            Log.w(TAG, "ANR detected, main thread blocked for " + durationMs + "ms");
         } catch (OutOfMemoryError e) {
             Log.e(TAG, "OOM while handling ANR", e);
         } catch (Exception e) {
@@ -200,6 +247,18 @@ public class ANRTracker extends Thread {
         }
     }
 
+    private static void spoolAnr(
+            @NonNull TelemetrySpool telemetrySpool,
+            @NonNull StackTraceElement[] stackTrace,
+            long durationMs) throws JSONException {
+        JSONObject anrInfo = new JSONObject();
+        anrInfo.put("type", "ANR");
+        anrInfo.put("timestamp", System.currentTimeMillis());
+        anrInfo.put("stacktrace", buildStackTraceString(stackTrace, MAX_STACK_FRAMES));
+        anrInfo.put("duration", durationMs);
+        telemetrySpool.append(TelemetrySpool.RECORD_ANR, anrInfo.toString());
+    }
+
     /**
      * Builds a human-readable stack trace string from stack trace elements.
      *
@@ -0,0 +1,286 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * AnrTraceParser extracts the useful part of an ANR traces file, as returned by
+ * {@code ApplicationExitInfo.getTraceInputStream()}: the main thread's stack, and the stacks of the
+ * threads holding the locks it waits on, following "held by thread" chains.
+ *
+ * <p>The file is read line by line through a fixed-size buffer. Lines are only decoded for thread
+ * headers and for the threads being kept, and reading stops once the main thread and every lock
+ * holder found so far have been read, so memory stays at a few kilobytes whatever the file size.
+ * ART dumps the main thread first, so its lock holders are always known before they are reached;
+ * holders of locks further down a chain are only found if they are dumped after the thread waiting.
+ */
+final class AnrTraceParser {
+    static final int MAX_LINE_BYTES = 512;
+    static final int MAX_THREADS = 8;
+    static final int MAIN_THREAD_TID = 1;
+    private static final int READ_BUFFER_BYTES = 8 * 1024;
+
+    /**
+     * Stack of one thread of the dump
+     */
+    static final class ThreadStack {
+        final String name;
+        final int tid;
+        final String state;
+        final List<String> frames = new ArrayList<>();
+        int truncatedFrames = 0;
+        final List<String> lockedMonitors = new ArrayList<>();
+        @Nullable String waitingToLock;
+        int heldByTid = -1;
+
+        ThreadStack(@NonNull String name, int tid, @NonNull String state) {
+            this.name = name;
+            this.tid = tid;
+            this.state = state;
+        }
+
+        @NonNull
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("tid", tid);
+            json.put("state", state);
+            json.put("frames", new JSONArray(frames));
+            if (truncatedFrames > 0) {
+                json.put("truncatedFrames", truncatedFrames);
+            }
+            if (!lockedMonitors.isEmpty()) {
+                json.put("locked", new JSONArray(lockedMonitors));
+            }
+            if (waitingToLock != null) {
+                json.put("waitingToLock", waitingToLock);
+                if (heldByTid >= 0) {
+                    json.put("heldBy", heldByTid);
+                }
+            }
+            return json;
+        }
+    }
+
+    /**
+     * Threads extracted from a dump, main thread first
+     */
+    static final class Result {
+        int pid = -1;
+        final List<ThreadStack> threads = new ArrayList<>();
+        long bytesRead = 0;
+
+        @NonNull
+        JSONArray threadsToJson() throws JSONException {
+            JSONArray json = new JSONArray();
+            for (ThreadStack thread : threads) {
+                json.put(thread.toJson());
+            }
+            return json;
+        }
+
+        /**
+         * @return The threads in the traces file layout, trimmed to the kept lines
+         */
+        @NonNull
+        String format() {
+            StringBuilder sb = new StringBuilder();
+            for (ThreadStack thread : threads) {
+                sb.append('"').append(thread.name).append("\" tid=").append(thread.tid)
+                        .append(' ').append(thread.state).append('\n');
+                for (String frame : thread.frames) {
+                    sb.append("  at ").append(frame).append('\n');
+                }
+                if (thread.truncatedFrames > 0) {
+                    sb.append("  ... ").append(thread.truncatedFrames).append(" more frames truncated\n");
+                }
+                if (thread.waitingToLock != null) {
+                    sb.append("  - waiting to lock ").append(thread.waitingToLock);
+                    if (thread.heldByTid >= 0) {
+                        sb.append(" held by thread ").append(thread.heldByTid);
+                    }
+                    sb.append('\n');
+                }
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    private final int maxFrames;
+    private final Result result = new Result();
+    private final Set<Integer> wantedTids = new HashSet<>();
+    private @Nullable ThreadStack current;
+    private boolean isMainThreadRead = false;
+    private boolean isDone = false;
+
+    private AnrTraceParser(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Parse an ANR traces file, reading no further than needed
+     * @param in Traces file content; not closed
+     * @param maxBytes Maximum number of bytes to read
+     * @param maxFrames Maximum number of frames kept per thread
+     */
+    @NonNull
+    static Result parse(@NonNull InputStream in, long maxBytes, int maxFrames) throws IOException {
+        AnrTraceParser parser = new AnrTraceParser(maxFrames);
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        byte[] line = new byte[MAX_LINE_BYTES];
+        int lineLength = 0;
+        long total = 0;
+        int read;
+        while (!parser.isDone && total < maxBytes
+                && (read = in.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - total))) != -1) {
+            total += read;
+            for (int i = 0; i < read && !parser.isDone; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    parser.onLine(line, lineLength);
+                    lineLength = 0;
+                } else if (lineLength < line.length) {
+                    // The rest of an overlong line is dropped
+                    line[lineLength++] = b;
+                }
+            }
+        }
+        if (!parser.isDone && lineLength > 0) {
+            parser.onLine(line, lineLength);
+        }
+        parser.endThread();
+        parser.result.bytesRead = total;
+        return parser.result;
+    }
+
+    private void onLine(@NonNull byte[] line, int length) {
+        int start = 0;
+        while (start < length && (line[start] == ' ' || line[start] == '\t')) {
+            start++;
+        }
+        if (start == length) {
+            // Threads are separated by blank lines
+            endThread();
+            return;
+        }
+        if (line[start] == '"') {
+            endThread();
+            onThreadHeader(new String(line, start, length - start, StandardCharsets.UTF_8));
+        } else if (line[start] == '-' && start + 5 <= length && line[start + 1] == '-') {
+            onSectionLine(new String(line, start, length - start, StandardCharsets.UTF_8));
+        } else if (current != null && line[start] != '|') {
+            onStackLine(new String(line, start, length - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void onSectionLine(@NonNull String text) {
+        // "----- pid 1234 at 2024-01-01 00:00:00 -----" and "----- end 1234 -----"
+        if (text.startsWith("----- pid ")) {
+            int end = text.indexOf(' ', 10);
+            result.pid = parseInt(text, 10, end < 0 ? text.length() : end);
+        } else if (text.startsWith("----- end ")) {
+            endThread();
+            isDone = true;
+        }
+    }
+
+    private void onThreadHeader(@NonNull String header) {
+        // "main" prio=5 tid=1 Blocked
+        int nameEnd = header.lastIndexOf('"');
+        int tidStart = header.indexOf(" tid=", nameEnd);
+        if (nameEnd <= 0 || tidStart < 0) {
+            return;
+        }
+        int tidEnd = header.indexOf(' ', tidStart + 5);
+        int tid = parseInt(header, tidStart + 5, tidEnd < 0 ? header.length() : tidEnd);
+        boolean isMain = tid == MAIN_THREAD_TID;
+        if (!isMain && !wantedTids.contains(tid)) {
+            return;
+        }
+        if (result.threads.size() == MAX_THREADS) {
+            isDone = true;
+            return;
+        }
+        wantedTids.remove(tid);
+        String state = tidEnd < 0 ? "" : header.substring(tidEnd + 1).trim();
+        current = new ThreadStack(header.substring(1, nameEnd), tid, state);
+        result.threads.add(current);
+    }
+
+    private void onStackLine(@NonNull String text) {
+        ThreadStack thread = current;
+        if (thread == null) {
+            return;
+        }
+        if (text.startsWith("at ") || text.startsWith("native: ")) {
+            if (thread.frames.size() < maxFrames) {
+                thread.frames.add(text.startsWith("at ") ? text.substring(3) : text);
+            } else {
+                thread.truncatedFrames++;
+            }
+        } else if (text.startsWith("- locked ")) {
+            thread.lockedMonitors.add(text.substring(9));
+        } else if (text.startsWith("- waiting to lock ")) {
+            String monitor = text.substring(18);
+            int heldBy = monitor.indexOf(" held by thread ");
+            if (heldBy >= 0) {
+                thread.heldByTid = parseInt(monitor, heldBy + 16, monitor.length());
+                monitor = monitor.substring(0, heldBy);
+                if (thread.heldByTid >= 0 && thread.heldByTid != thread.tid && !isRead(thread.heldByTid)) {
+                    wantedTids.add(thread.heldByTid);
+                }
+            }
+            thread.waitingToLock = monitor;
+        }
+    }
+
+    private void endThread() {
+        if (current == null) {
+            return;
+        }
+        if (current.tid == MAIN_THREAD_TID) {
+            isMainThreadRead = true;
+        }
+        current = null;
+        if (isMainThreadRead && wantedTids.isEmpty()) {
+            isDone = true;
+        }
+    }
+
+    private boolean isRead(int tid) {
+        for (ThreadStack thread : result.threads) {
+            if (thread.tid == tid) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int parseInt(@NonNull String text, int start, int end) {
+        int value = 0;
+        if (start >= end) {
+            return -1;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,243 @@
+package com.grafana.faro;
+
+import android.app.ActivityManager;
+import android.app.ApplicationStartInfo;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.Log;
+
+/**
+ * AppStartTracker breaks the start of the app down into phases between native milestones, so a
+ * regression can be attributed to the process start, the engine and plugin setup, the activity
+ * creation or the first frames rather than to one span ending whenever Dart asks for it.
+ *
+ * <p>Each milestone is recorded once per process, on the {@link SystemClock#elapsedRealtimeNanos()}
+ * clock: the process start, the first engine attaching the SDK, the first activity an engine is
+ * attached to, its first resume, the first frame its window draws, and the first Flutter frame,
+ * when Dart asks for the report. On API 35+ the system start record, {@link ApplicationStartInfo},
+ * gives the start type and the system-side phases, from the launch request to the fully drawn
+ * report. Before that, the start is cold if the process was in the foreground when the SDK was
+ * attached, and warm if it was started for something else, such as a receiver, before the activity.
+ */
+public class AppStartTracker {
+    private static final String TAG = "AppStartTracker";
+    static final String START_TYPE_COLD = "cold";
+    static final String START_TYPE_WARM = "warm";
+    static final String START_TYPE_HOT = "hot";
+
+    // Milestones, in the order they are reached
+    static final int PROCESS_START = 0;
+    static final int PLUGIN_ATTACH = 1;
+    static final int ACTIVITY_ATTACH = 2;
+    static final int ACTIVITY_RESUME = 3;
+    static final int FIRST_DRAW = 4;
+    static final int FLUTTER_FIRST_FRAME = 5;
+    // Phase between each milestone and the next
+    private static final String[] PHASES = {
+            "processStartToPluginAttach",
+            "pluginAttachToActivityAttach",
+            "activityAttachToResume",
+            "resumeToFirstDraw",
+            "firstDrawToFlutterFrame",
+    };
+
+    // System milestones of ApplicationStartInfo, in the order they are reached
+    private static final int[] SYSTEM_TIMESTAMPS = {
+            ApplicationStartInfo.START_TIMESTAMP_LAUNCH,
+            ApplicationStartInfo.START_TIMESTAMP_FORK,
+            ApplicationStartInfo.START_TIMESTAMP_BIND_APPLICATION,
+            ApplicationStartInfo.START_TIMESTAMP_APPLICATION_ONCREATE,
+            ApplicationStartInfo.START_TIMESTAMP_FIRST_FRAME,
+            ApplicationStartInfo.START_TIMESTAMP_FULLY_DRAWN,
+    };
+    private static final String[] SYSTEM_PHASES = {
+            "launchToFork",
+            "forkToBindApplication",
+            "bindApplicationToApplicationOnCreate",
+            "applicationOnCreateToFirstFrame",
+            "firstFrameToFullyDrawn",
+    };
+
+    private final long[] milestones = new long[PHASES.length + 1];
+    private final long[] systemMilestones = new long[SYSTEM_TIMESTAMPS.length];
+    private boolean isForegroundAtAttach = true;
+    private @Nullable String systemStartType;
+
+    public AppStartTracker() {
+        for (int i = 0; i < milestones.length; i++) {
+            milestones[i] = -1;
+        }
+        for (int i = 0; i < systemMilestones.length; i++) {
+            systemMilestones[i] = -1;
+        }
+    }
+
+    /**
+     * The SDK was attached by the first engine. Records the process start along with it.
+     */
+    public void onPluginAttached() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mark(PROCESS_START, Process.getStartElapsedRealtime() * 1_000_000L);
+        }
+        ActivityManager.RunningAppProcessInfo processInfo = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(processInfo);
+        synchronized (this) {
+            isForegroundAtAttach =
+                    processInfo.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+        }
+        mark(PLUGIN_ATTACH, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * An engine was attached to an activity. Only the first one is part of the start, and its
+     * window is watched for the first frame. Call from the main thread.
+     */
+    public void onActivityAttached(@Nullable Window window) {
+        if (!mark(ACTIVITY_ATTACH, SystemClock.elapsedRealtimeNanos()) || window == null) {
+            return;
+        }
+        NextDrawWatcher.watch(window, (drawnNanos, isFirstDraw) -> {
+            if (isFirstDraw) {
+                mark(FIRST_DRAW, drawnNanos);
+            }
+        });
+    }
+
+    public void onActivityResumed() {
+        mark(ACTIVITY_RESUME, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Dart drew its first frame. Call when it asks for the report, before {@link #report(Context)}.
+     */
+    public void onFlutterFirstFrame() {
+        mark(FLUTTER_FIRST_FRAME, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Build the start report. Reads the system start record on API 35+, so it runs off the main thread.
+     * @return Map with the "startType", the "appStartDuration" in milliseconds, from the process
+     * start for a cold start and from the activity otherwise, and the "phases" reached, in milliseconds
+     */
+    @NonNull
+    public Map<String, Object> report(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM) {
+            readSystemStart(context);
+        }
+        return report();
+    }
+
+    /**
+     * Record a milestone, unless it was already reached
+     * @param milestone One of the milestone constants
+     * @param elapsedNanos {@link SystemClock#elapsedRealtimeNanos()} when it was reached
+     * @return Whether it was recorded
+     */
+    synchronized boolean mark(int milestone, long elapsedNanos) {
+        if (milestones[milestone] >= 0 || elapsedNanos < 0) {
+            return false;
+        }
+        milestones[milestone] = elapsedNanos;
+        return true;
+    }
+
+    synchronized void setForegroundAtAttach(boolean isForeground) {
+        isForegroundAtAttach = isForeground;
+    }
+
+    /**
+     * Apply the system start record
+     * @param startType One of the ApplicationStartInfo start types
+     * @param timestamps Timestamps of the system milestones, in elapsed realtime nanoseconds
+     */
+    synchronized void setSystemStart(int startType, @Nullable Map<Integer, Long> timestamps) {
+        systemStartType = startTypeName(startType);
+        if (timestamps == null) {
+            return;
+        }
+        for (int i = 0; i < SYSTEM_TIMESTAMPS.length; i++) {
+            Long timestamp = timestamps.get(SYSTEM_TIMESTAMPS[i]);
+            systemMilestones[i] = timestamp != null ? timestamp : -1;
+        }
+    }
+
+    @NonNull
+    synchronized Map<String, Object> report() {
+        String startType = startType();
+        boolean isCold = START_TYPE_COLD.equals(startType);
+        Map<String, Object> phases = new HashMap<>();
+        // The process may have been running long before a warm start, so it starts at the activity
+        for (int i = isCold ? 0 : ACTIVITY_ATTACH; i < PHASES.length; i++) {
+            putPhase(phases, PHASES[i], milestones[i], milestones[i + 1]);
+        }
+        for (int i = 0; i < SYSTEM_PHASES.length; i++) {
+            putPhase(phases, SYSTEM_PHASES[i], systemMilestones[i], systemMilestones[i + 1]);
+        }
+        long start = milestones[isCold ? PROCESS_START : ACTIVITY_ATTACH];
+        long end = milestones[FLUTTER_FIRST_FRAME];
+        Map<String, Object> appStart = new HashMap<>();
+        appStart.put("startType", startType);
+        appStart.put("appStartDuration", start >= 0 && end >= start ? (end - start) / 1_000_000L : 0L);
+        appStart.put("phases", phases);
+        return appStart;
+    }
+
+    @NonNull
+    private String startType() {
+        if (systemStartType != null) {
+            return systemStartType;
+        }
+        return isForegroundAtAttach ? START_TYPE_COLD : START_TYPE_WARM;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.VANILLA_ICE_CREAM)
+    private void readSystemStart(@NonNull Context context) {
+        try {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            if (activityManager == null) {
+                return;
+            }
+            // The most recent start is the one of this process
+            List<ApplicationStartInfo> starts = activityManager.getHistoricalProcessStartReasons(1);
+            if (starts == null || starts.isEmpty() || starts.get(0).getPid() != Process.myPid()) {
+                return;
+            }
+            ApplicationStartInfo start = starts.get(0);
+            setSystemStart(start.getStartType(), start.getStartupTimestamps());
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting application start info", e);
+        }
+    }
+
+    @Nullable
+    private static String startTypeName(int startType) {
+        switch (startType) {
+            case ApplicationStartInfo.START_TYPE_COLD:
+                return START_TYPE_COLD;
+            case ApplicationStartInfo.START_TYPE_WARM:
+                return START_TYPE_WARM;
+            case ApplicationStartInfo.START_TYPE_HOT:
+                return START_TYPE_HOT;
+            default:
+                return null;
+        }
+    }
+
+    private static void putPhase(@NonNull Map<String, Object> phases, @NonNull String name, long start, long end) {
+        if (start >= 0 && end >= start) {
+            phases.put(name, (end - start) / 1_000_000.0);
+        }
+    }
+}
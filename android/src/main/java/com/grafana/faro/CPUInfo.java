@@ -6,49 +6,67 @@ import android.system.Os;
 import android.system.OsConstants;
 import android.os.Process;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 
 
 @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 public class CPUInfo {
 
+    // Field numbers in /proc/<pid>/stat, see proc(5)
+    private static final int UTIME_FIELD = 14;
+    private static final int STIME_FIELD = 15;
+    private static final int CUTIME_FIELD = 16;
+    private static final int CSTIME_FIELD = 17;
 
     private static final long clockSpeedHz = Os.sysconf(OsConstants._SC_CLK_TCK);
-    private static final File statFile = new File("/proc/"+ Process.myPid() +"/stat");
-    private static Double lastCpuTime =null;
-    private static Double lastProcessTime =null;
-
-    public static Double onGetCpuInfo() {
-        if (statFile.exists() && statFile.canRead()) {
-            try {
-                BufferedReader   reader = new BufferedReader(new FileReader(statFile));
-                String line = reader.readLine();
-                reader.close();
-                String []statArray = line.split(" ");
-                int utime = Integer.parseInt(statArray[13]);
-                int stime = Integer.parseInt(statArray[14]);
-                int cutime = Integer.parseInt(statArray[15]);
-                int cstime = Integer.parseInt(statArray[16]);
-                Double cpuTime = (double) ((utime+stime+cutime+cstime)/clockSpeedHz);
-                Double uptime = SystemClock.elapsedRealtime()/1000.0;
-                Long startTime = Long.parseLong(statArray[21]);
-                Double processTime = uptime - (startTime / clockSpeedHz);
-                if(lastCpuTime == null){
-                    lastCpuTime = cpuTime;
-                    lastProcessTime = processTime;
-                    return 0.0;
-                }
-                return 100*((cpuTime - lastCpuTime) / (processTime - lastProcessTime));
-
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    private static final ProcStatReader statReader =
+            new ProcStatReader(new File("/proc/"+ Process.myPid() +"/stat"), 1024);
+    private static boolean hasBaseline = false;
+    private static double lastCpuTime = 0;
+    private static double lastProcessTime = 0;
+
+    public @Nullable static synchronized Double onGetCpuInfo() {
+        long cpuTicks = readCpuTicks();
+        if (cpuTicks < 0) {
+            return null;
+        }
+        double cpuTime = cpuTicks / (double) clockSpeedHz;
+        // The process start time cancels out of the delta below, so elapsed realtime is enough
+        double processTime = SystemClock.elapsedRealtime() / 1000.0;
+        if (!hasBaseline) {
+            hasBaseline = true;
+            lastCpuTime = cpuTime;
+            lastProcessTime = processTime;
+            return 0.0;
+        }
+        return 100*((cpuTime - lastCpuTime) / (processTime - lastProcessTime));
+    }
+
+    /**
+     * Read the total CPU time consumed by this process and its waited-for children
+     * @return CPU time in clock ticks, or -1 if /proc/<pid>/stat is unreadable
+     */
+    static synchronized long readCpuTicks() {
+        if (!statReader.refresh()) {
+            return -1;
+        }
+        long utime = statReader.statField(UTIME_FIELD);
+        long stime = statReader.statField(STIME_FIELD);
+        long cutime = statReader.statField(CUTIME_FIELD);
+        long cstime = statReader.statField(CSTIME_FIELD);
+        if (utime < 0 || stime < 0 || cutime < 0 || cstime < 0) {
+            return -1;
         }
-        return null;
+        return utime + stime + cutime + cstime;
+    }
+
+    /**
+     * @return Number of clock ticks per second used by /proc time fields
+     */
+    static long clockTicksPerSecond() {
+        return clockSpeedHz;
     }
 }
@@ -0,0 +1,427 @@
+package com.grafana.faro;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of crash records, bounded in size.
+ *
+ * <p>Each record is {@code magic (4) | payload length (4) | sequence (8) | CRC32 (4) | payload},
+ * little-endian, where the CRC covers the sequence and the payload. A record torn by a dying
+ * process fails its length or CRC check and is skipped; readers then resynchronize on the next
+ * magic number, and the writer truncates a torn tail before appending. Sequence numbers grow
+ * monotonically, so they double as read cursors that stay valid across compactions.
+ *
+ * <p>When an append would exceed the size cap, the oldest records are evicted by rewriting the
+ * journal to a temporary file that atomically replaces it. The handle of the temporary file is kept
+ * as the journal's, so a rewrite, including the one of an acknowledgement, leaves the journal open
+ * and appending a crash never has to read the file again.
+ *
+ * <p>Opening the file and scanning it are separate steps: {@link #openFile()} only opens the handle,
+ * and the first read, append or {@link #prepare(int)} scans the records for the end of the valid
+ * ones, so the scan can run off the main thread.
+ */
+public class CrashJournal implements Closeable {
+    private static final String TAG = "CrashJournal";
+    static final String FILE_NAME = "faro_crash_journal";
+    static final int DEFAULT_MAX_BYTES = 256 * 1024;
+    static final int MAGIC = 0x4641524A; // "FARJ"
+    static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private static @Nullable CrashJournal instance;
+
+    private final File file;
+    private final int maxBytes;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private @Nullable RandomAccessFile output;
+    // Whether the records of the open file were scanned, setting size and nextSequence
+    private boolean isScanned = false;
+    private long nextSequence = 1;
+    private long size = 0;
+    // Payload size kept free by prepare, re-applied after acknowledgements
+    private int reserveBytes = 0;
+
+    /**
+     * Result of a cursor-based read
+     */
+    public static final class Page {
+        public final List<String> records;
+        public final long[] sequences;
+        /** Cursor to pass to the next read */
+        public final long cursor;
+        public final boolean hasMore;
+
+        Page(@NonNull List<String> records, @NonNull long[] sequences, long cursor, boolean hasMore) {
+            this.records = records;
+            this.sequences = sequences;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * @param context Any context of the application
+     * @return The process-wide journal, stored in the application's cache directory
+     */
+    @NonNull
+    public static synchronized CrashJournal getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new CrashJournal(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * @param file Journal file, created on the first append if missing
+     * @param maxBytes Maximum journal size, in bytes
+     */
+    public CrashJournal(@NonNull File file, int maxBytes) {
+        if (maxBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("maxBytes must leave room for a record");
+        }
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Append a record, evicting the oldest records if the journal would exceed its size cap
+     * @param payload Record content
+     * @return Whether the record was written
+     */
+    public synchronized boolean append(@NonNull String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Append a record, evicting the oldest records if the journal would exceed its size cap
+     * @param payload Buffer holding the record content
+     * @param offset Start of the content in the buffer
+     * @param length Content length, in bytes
+     * @return Whether the record was written
+     */
+    public synchronized boolean append(@NonNull byte[] payload, int offset, int length) {
+        int recordBytes = HEADER_BYTES + length;
+        if (recordBytes > maxBytes) {
+            Log.w(TAG, "Dropping crash record of " + length + " bytes, larger than the journal");
+            return false;
+        }
+        try {
+            RandomAccessFile out = open();
+            if (size + recordBytes > maxBytes) {
+                evict(maxBytes - recordBytes);
+                out = open();
+            }
+            long sequence = nextSequence++;
+            header.clear();
+            header.putInt(MAGIC).putInt(length).putLong(sequence).putInt(checksum(sequence, payload, offset, length));
+            out.seek(size);
+            out.write(header.array());
+            out.write(payload, offset, length);
+            size += recordBytes;
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending crash record", e);
+            return false;
+        }
+    }
+
+    /**
+     * Open the journal file without reading it, so a crash captured later does not have to open it
+     */
+    public synchronized void openFile() {
+        try {
+            openHandle();
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening crash journal", e);
+        }
+    }
+
+    /**
+     * Open the journal and evict old records ahead of time, so that appending a record of up to
+     * reserveBytes needs neither to read nor to rewrite the journal
+     * @param reserveBytes Payload size to keep room for, in bytes
+     */
+    public synchronized void prepare(int reserveBytes) {
+        this.reserveBytes = reserveBytes;
+        long budget = maxBytes - HEADER_BYTES - (long) Math.min(reserveBytes, maxBytes - HEADER_BYTES);
+        try {
+            open();
+            if (size > budget) {
+                evict(budget);
+                open();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error preparing crash journal", e);
+        }
+    }
+
+    /**
+     * Read the records that follow a cursor
+     * @param cursor Cursor returned by the previous read, or 0 to start from the oldest record
+     * @param maxRecords Maximum number of records to return
+     * @return The records, oldest first, and the cursor to continue from
+     */
+    @NonNull
+    public synchronized Page read(long cursor, int maxRecords) {
+        List<String> records = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        long next = cursor;
+        boolean hasMore = false;
+        try {
+            byte[] data = readAll();
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int position = 0;
+            while (position + HEADER_BYTES <= data.length) {
+                int recordEnd = validRecordEnd(buffer, position);
+                if (recordEnd < 0) {
+                    position = nextMagic(data, position + 1);
+                    continue;
+                }
+                long sequence = buffer.getLong(position + 8);
+                if (sequence > cursor) {
+                    if (records.size() == maxRecords) {
+                        hasMore = true;
+                        break;
+                    }
+                    records.add(new String(data, position + HEADER_BYTES,
+                            recordEnd - position - HEADER_BYTES, StandardCharsets.UTF_8));
+                    sequences.add(sequence);
+                    next = sequence;
+                }
+                position = recordEnd;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading crash journal", e);
+        }
+        long[] sequenceArray = new long[sequences.size()];
+        for (int i = 0; i < sequenceArray.length; i++) {
+            sequenceArray[i] = sequences.get(i);
+        }
+        return new Page(records, sequenceArray, next, hasMore);
+    }
+
+    /**
+     * Remove the records up to and including a cursor, once they have been delivered
+     * @param cursor Cursor returned by a read
+     */
+    public synchronized void acknowledge(long cursor) {
+        try {
+            rewrite(cursor, Long.MAX_VALUE);
+        } catch (IOException e) {
+            Log.e(TAG, "Error acknowledging crash records", e);
+        }
+        if (reserveBytes > 0) {
+            prepare(reserveBytes);
+        }
+    }
+
+    /**
+     * @return Current journal size, in bytes
+     */
+    public synchronized long size() {
+        try {
+            open();
+        } catch (IOException e) {
+            return 0;
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing crash journal", e);
+            }
+            output = null;
+        }
+        isScanned = false;
+    }
+
+    /**
+     * Open the journal for appending, truncating a torn record left at its end
+     */
+    @NonNull
+    RandomAccessFile open() throws IOException {
+        RandomAccessFile out = openHandle();
+        if (isScanned) {
+            return out;
+        }
+        byte[] data = readAll();
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int position = 0;
+        int validEnd = 0;
+        while (position + HEADER_BYTES <= data.length) {
+            int recordEnd = validRecordEnd(buffer, position);
+            if (recordEnd < 0) {
+                position = nextMagic(data, position + 1);
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, buffer.getLong(position + 8) + 1);
+            validEnd = recordEnd;
+            position = recordEnd;
+        }
+        if (out.length() != validEnd) {
+            out.setLength(validEnd);
+        }
+        size = validEnd;
+        isScanned = true;
+        return out;
+    }
+
+    @NonNull
+    private RandomAccessFile openHandle() throws IOException {
+        if (output == null) {
+            output = new RandomAccessFile(file, "rw");
+            isScanned = false;
+        }
+        return output;
+    }
+
+    /**
+     * Keep the newest records that fit in the given budget
+     */
+    private void evict(long budgetBytes) throws IOException {
+        byte[] data = readAll();
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        // Walk the records, dropping the oldest until the rest fits
+        long kept = size;
+        long firstKeptSequence = Long.MAX_VALUE;
+        int position = 0;
+        while (position + HEADER_BYTES <= data.length) {
+            int recordEnd = validRecordEnd(buffer, position);
+            if (recordEnd < 0) {
+                position = nextMagic(data, position + 1);
+                continue;
+            }
+            if (kept <= budgetBytes) {
+                firstKeptSequence = buffer.getLong(position + 8);
+                break;
+            }
+            kept -= recordEnd - position;
+            position = recordEnd;
+        }
+        rewrite(firstKeptSequence == Long.MAX_VALUE ? Long.MAX_VALUE : firstKeptSequence - 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * Rewrite the journal with the valid records in (afterSequence, upToSequence]. The journal stays
+     * open on the rewritten file.
+     */
+    private void rewrite(long afterSequence, long upToSequence) throws IOException {
+        // Scanned first, so the sequence continues after the records removed
+        open();
+        byte[] data = readAll();
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        File temp = new File(file.getPath() + ".tmp");
+        long written = 0;
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        try {
+            out.setLength(0);
+            int position = 0;
+            while (position + HEADER_BYTES <= data.length) {
+                int recordEnd = validRecordEnd(buffer, position);
+                if (recordEnd < 0) {
+                    position = nextMagic(data, position + 1);
+                    continue;
+                }
+                long sequence = buffer.getLong(position + 8);
+                if (sequence > afterSequence && sequence <= upToSequence) {
+                    out.write(data, position, recordEnd - position);
+                    written += recordEnd - position;
+                }
+                position = recordEnd;
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            out.close();
+            temp.delete();
+            throw e;
+        }
+        close();
+        if (!temp.renameTo(file)) {
+            out.close();
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        // The handle now refers to the journal file, open for the next append
+        output = out;
+        size = written;
+        isScanned = true;
+    }
+
+    @NonNull
+    private byte[] readAll() throws IOException {
+        if (output != null) {
+            byte[] data = new byte[(int) (isScanned ? size : Math.min(output.length(), Integer.MAX_VALUE))];
+            output.seek(0);
+            output.readFully(data);
+            return data;
+        }
+        if (!file.exists()) {
+            return new byte[0];
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[(int) Math.min(in.length(), Integer.MAX_VALUE)];
+            in.readFully(data);
+            return data;
+        }
+    }
+
+    /**
+     * @return End offset of the record at position, or -1 if it is torn or corrupted
+     */
+    private int validRecordEnd(@NonNull ByteBuffer buffer, int position) {
+        if (buffer.getInt(position) != MAGIC) {
+            return -1;
+        }
+        int length = buffer.getInt(position + 4);
+        if (length < 0 || length > buffer.limit() - position - HEADER_BYTES) {
+            return -1;
+        }
+        long sequence = buffer.getLong(position + 8);
+        int expected = buffer.getInt(position + 16);
+        if (checksum(sequence, buffer.array(), position + HEADER_BYTES, length) != expected) {
+            return -1;
+        }
+        return position + HEADER_BYTES + length;
+    }
+
+    private int checksum(long sequence, @NonNull byte[] payload, int offset, int length) {
+        crc.reset();
+        for (int i = 0; i < 8; i++) {
+            crc.update((int) (sequence >>> (8 * i)) & 0xFF);
+        }
+        crc.update(payload, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int nextMagic(@NonNull byte[] data, int from) {
+        // MAGIC in little-endian byte order
+        for (int i = from; i + 4 <= data.length; i++) {
+            if (data[i] == 0x4A && data[i + 1] == 0x52 && data[i + 2] == 0x41 && data[i + 3] == 0x46) {
+                return i;
+            }
+        }
+        return data.length;
+    }
+}
@@ -0,0 +1,284 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * CrashWriter serializes an uncaught throwable into a preallocated buffer as a crash journal record:
+ * {@code {"timestamp": ..., "pid": ..., "type": ..., "value": ..., "stacktrace": ..., "truncated": ...}},
+ * where the stack trace follows the {@link Throwable#printStackTrace()} layout, including causes and
+ * suppressed exceptions. The wall clock time and pid let a record be matched with the crash exit the
+ * system records for the process.
+ *
+ * <p>Strings are escaped and UTF-8 encoded straight into the buffer, so no JSON object, builder or
+ * intermediate string is allocated while the process is dying. The only allocations left are the
+ * stack trace arrays returned by {@link Throwable#getStackTrace()} and {@link Throwable#getSuppressed()}.
+ * When one of them fails, or the buffer fills up, the record is closed as is and flagged as truncated.
+ *
+ * <p>Not thread-safe: callers serialize access to the buffer.
+ */
+final class CrashWriter {
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+    static final int MAX_THROWABLES = 16;
+    // Room kept to close the record once the buffer is full
+    private static final int CLOSING_BYTES = 32;
+
+    private final byte[] buffer;
+    private final Throwable[] seen = new Throwable[MAX_THROWABLES];
+    private int seenCount;
+    private int position;
+    private int limit;
+    private boolean truncated;
+
+    /**
+     * @param capacity Maximum record size, in bytes
+     */
+    CrashWriter(int capacity) {
+        if (capacity <= CLOSING_BYTES) {
+            throw new IllegalArgumentException("capacity is too small for a record");
+        }
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Serialize a throwable into the buffer
+     * @param timestampMs Wall clock time of the crash, in milliseconds since the epoch
+     * @param pid Id of the crashing process
+     * @return Number of bytes written at the start of {@link #buffer()}
+     */
+    int write(@NonNull Throwable throwable, long timestampMs, int pid) {
+        position = 0;
+        limit = buffer.length - CLOSING_BYTES;
+        truncated = false;
+        seenCount = 0;
+        try {
+            ascii("{\"timestamp\":");
+            number(timestampMs);
+            ascii(",\"pid\":");
+            number(pid);
+            ascii(",\"type\":\"");
+            string(throwable.getClass().getName());
+            String message = throwable.getMessage();
+            if (message != null) {
+                ascii("\",\"value\":\"");
+                string(message);
+            }
+            ascii("\",\"stacktrace\":\"");
+            throwable(throwable, null, null, 0);
+        } catch (Throwable e) {
+            // Most likely an OutOfMemoryError: keep what was written so far
+            truncated = true;
+        }
+        limit = buffer.length;
+        ascii(truncated ? "\",\"truncated\":true}" : "\",\"truncated\":false}");
+        Arrays.fill(seen, 0, seenCount, null);
+        return position;
+    }
+
+    @NonNull
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    private void throwable(@NonNull Throwable throwable, @Nullable StackTraceElement[] enclosingTrace,
+                           @Nullable String caption, int indent) {
+        for (int i = 0; i < seenCount; i++) {
+            if (seen[i] == throwable) {
+                tabs(indent);
+                if (caption != null) {
+                    string(caption);
+                }
+                string("[CIRCULAR REFERENCE: ");
+                string(throwable.getClass().getName());
+                string("]\n");
+                return;
+            }
+        }
+        if (seenCount == seen.length) {
+            truncated = true;
+            return;
+        }
+        seen[seenCount++] = throwable;
+
+        tabs(indent);
+        if (caption != null) {
+            string(caption);
+        }
+        string(throwable.getClass().getName());
+        String message = throwable.getMessage();
+        if (message != null) {
+            string(": ");
+            string(message);
+        }
+        string("\n");
+
+        StackTraceElement[] trace = throwable.getStackTrace();
+        // Like printStackTrace, leave out the frames shared with the enclosing trace
+        int last = trace.length - 1;
+        if (enclosingTrace != null) {
+            for (int j = enclosingTrace.length - 1; last >= 0 && j >= 0 && trace[last].equals(enclosingTrace[j]); j--) {
+                last--;
+            }
+        }
+        for (int i = 0; i <= last && !truncated; i++) {
+            tabs(indent);
+            string("\tat ");
+            frame(trace[i]);
+            string("\n");
+        }
+        if (last < trace.length - 1) {
+            tabs(indent);
+            string("\t... ");
+            number(trace.length - 1 - last);
+            string(" more\n");
+        }
+
+        for (Throwable suppressed : throwable.getSuppressed()) {
+            throwable(suppressed, trace, "Suppressed: ", indent + 1);
+        }
+        Throwable cause = throwable.getCause();
+        if (cause != null) {
+            throwable(cause, trace, "Caused by: ", indent);
+        }
+    }
+
+    private void frame(@NonNull StackTraceElement element) {
+        string(element.getClassName());
+        string(".");
+        string(element.getMethodName());
+        if (element.isNativeMethod()) {
+            string("(Native Method)");
+            return;
+        }
+        String fileName = element.getFileName();
+        if (fileName == null) {
+            string("(Unknown Source)");
+            return;
+        }
+        string("(");
+        string(fileName);
+        if (element.getLineNumber() >= 0) {
+            string(":");
+            number(element.getLineNumber());
+        }
+        string(")");
+    }
+
+    private void tabs(int count) {
+        for (int i = 0; i < count; i++) {
+            string("\t");
+        }
+    }
+
+    private void number(long value) {
+        if (truncated) {
+            return;
+        }
+        if (value < 0) {
+            ascii("-");
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        if (!room(19)) {
+            return;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer[position++] = (byte) ('0' + (value / divisor) % 10);
+        }
+    }
+
+    /**
+     * Write characters that need neither escaping nor encoding
+     */
+    private void ascii(@NonNull String text) {
+        if (position + text.length() > limit) {
+            truncated = true;
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Write the contents of a JSON string: escaped, then UTF-8 encoded.
+     * Stops at the last whole character that fits.
+     */
+    private void string(@NonNull String text) {
+        for (int i = 0; i < text.length() && !truncated; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                put2('\\', c);
+            } else if (c == '\n') {
+                put2('\\', 'n');
+            } else if (c == '\t') {
+                put2('\\', 't');
+            } else if (c == '\r') {
+                put2('\\', 'r');
+            } else if (c < 0x20) {
+                if (room(6)) {
+                    buffer[position++] = '\\';
+                    buffer[position++] = 'u';
+                    buffer[position++] = '0';
+                    buffer[position++] = '0';
+                    buffer[position++] = (byte) hexDigit(c >> 4);
+                    buffer[position++] = (byte) hexDigit(c & 0xF);
+                }
+            } else if (c < 0x80) {
+                if (room(1)) {
+                    buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                if (room(2)) {
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                if (room(4)) {
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                }
+            } else {
+                // Lone surrogates are replaced, as String.getBytes would
+                char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+                if (room(3)) {
+                    buffer[position++] = (byte) (0xE0 | (encoded >> 12));
+                    buffer[position++] = (byte) (0x80 | ((encoded >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (encoded & 0x3F));
+                }
+            }
+        }
+    }
+
+    private void put2(char first, char second) {
+        if (room(2)) {
+            buffer[position++] = (byte) first;
+            buffer[position++] = (byte) second;
+        }
+    }
+
+    private boolean room(int bytes) {
+        if (position + bytes > limit) {
+            truncated = true;
+            return false;
+        }
+        return true;
+    }
+
+    private static char hexDigit(int value) {
+        return (char) (value < 10 ? '0' + value : 'a' + value - 10);
+    }
+}
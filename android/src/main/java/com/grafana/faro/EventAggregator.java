@@ -0,0 +1,509 @@
+package com.grafana.faro;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+
+/**
+ * EventAggregator coalesces native events (frames, ANRs, main thread stalls, monitor transitions, GC,
+ * memory pressure) into primitive counters, keeps the few warm and hot starts as they are, and sends
+ * them to Dart as a single binary batch, instead of one method call per event.
+ * A flush is scheduled on the {@link NativeScheduler} when the first event of a batch arrives, so
+ * nothing wakes up while no events are produced, and it may run up to {@link #FLUSH_TOLERANCE_MS}
+ * early to share a wakeup with other periodic work; a batch is flushed early once it reaches the
+ * size threshold.
+ *
+ * <p>Batch format (little-endian): a version byte, followed by records made of a type byte,
+ * an unsigned 16-bit payload length and the payload. Readers skip unknown record types.
+ *
+ * <p>Each batch is sent to a single channel, the one of the most recently attached engine still
+ * attached, so the events are counted once whatever the number of engines, like the values Dart
+ * pulls from the native side.
+ *
+ * <p>While no channel is set, batches go to the {@link TelemetrySpool} instead, if there is one,
+ * so events produced without an attached engine are delivered on the next start.
+ */
+public class EventAggregator {
+    private static final String TAG = "EventAggregator";
+    public static final String CHANNEL_NAME = "faro/events";
+
+    static final byte BATCH_VERSION = 1;
+    static final byte RECORD_FRAMES = 1;
+    static final byte RECORD_ANR = 2;
+    static final byte RECORD_FRAME_BUDGET_HISTOGRAM = 3;
+    static final byte RECORD_STALLS = 4;
+    static final byte RECORD_MONITOR_TRANSITIONS = 5;
+    static final byte RECORD_GC = 6;
+    static final byte RECORD_MEMORY_PRESSURE = 7;
+    static final byte RECORD_APP_START = 8;
+    static final long DEFAULT_FLUSH_INTERVAL_MS = 5000L;
+    static final int DEFAULT_MAX_PENDING_EVENTS = 256;
+    static final long FLUSH_TOLERANCE_MS = 1000L;
+
+    private static final int RECORD_HEADER_BYTES = 3;
+    private static final int FRAMES_PAYLOAD_BYTES = 4 + 4 + 4 + 8;
+    private static final int ANR_PAYLOAD_BYTES = 4;
+    private static final int MONITOR_TRANSITIONS_PAYLOAD_BYTES = 4 + 4 + 8 + 8;
+    private static final int GC_PAYLOAD_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    private static final int MEMORY_PRESSURE_PAYLOAD_BYTES = 4 + 4 + 4 + 8;
+    private static final int APP_START_PAYLOAD_BYTES = 1 + 8 + 8 + 8;
+    // Starts pending in one batch; they are seconds apart at least, so more are dropped
+    static final int MAX_PENDING_APP_STARTS = 8;
+    // Frames by missed vsyncs: 0, 1, 2-3, 4-7, 8+
+    static final int FRAME_BUDGET_BUCKETS = 5;
+    private static final int FRAME_BUDGET_HISTOGRAM_PAYLOAD_BYTES = 1 + 4 * FRAME_BUDGET_BUCKETS;
+    // Main thread stalls: threshold count, then a threshold in ms and a count per threshold
+    static final int MAX_STALL_THRESHOLDS = 8;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final NativeScheduler scheduler;
+    private @Nullable NativeScheduler.Timer flushTimer;
+    private final List<BasicMessageChannel<ByteBuffer>> channels = new ArrayList<>();
+    private @Nullable TelemetrySpool spool;
+    private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+    private int maxPendingEvents = DEFAULT_MAX_PENDING_EVENTS;
+    private boolean isFlushScheduled = false;
+
+    // Pending batch
+    private int pendingEvents = 0;
+    private int frameCount = 0;
+    private int slowFrames = 0;
+    private int frozenFrames = 0;
+    private long occupiedFrameNanos = 0;
+    private final int[] frameBudgetHistogram = new int[FRAME_BUDGET_BUCKETS];
+    private int anrCount = 0;
+    private long[] stallThresholdsMs = new long[0];
+    private final int[] stallCounts = new int[MAX_STALL_THRESHOLDS];
+    private boolean hasStalls = false;
+    private int monitorTransitions = 0;
+    private int skippedMonitorTransitions = 0;
+    private long monitorTransitionNanos = 0;
+    private long maxMonitorTransitionNanos = 0;
+    private boolean hasGc = false;
+    private long gcIntervalMs = 0;
+    private int gcCount = 0;
+    private long gcTimeMs = 0;
+    private int blockingGcCount = 0;
+    private long blockingGcTimeMs = 0;
+    private long gcBytesAllocated = 0;
+    private long gcBytesFreed = 0;
+    private int frozenFramesWithBlockingGc = 0;
+    private int trimMemoryCount = 0;
+    private int lowMemoryCount = 0;
+    private int maxTrimLevel = 0;
+    private long memoryPressureRssKb = -1;
+    private int appStartCount = 0;
+    private final byte[] appStartTypes = new byte[MAX_PENDING_APP_STARTS];
+    // Per start: created to started, started to resumed and resumed to drawn, in nanoseconds
+    private final long[] appStartPhases = new long[MAX_PENDING_APP_STARTS * 3];
+
+    private final Runnable flushTask = this::flush;
+    // Flushes send on the channel, which must happen on the main thread
+    private final Runnable postFlushTask = () -> mainHandler.post(flushTask);
+
+    public EventAggregator() {
+        this(NativeScheduler.getInstance());
+    }
+
+    EventAggregator(@NonNull NativeScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Configure when pending events are sent
+     * @param flushIntervalMs Maximum time an event waits before being sent, in milliseconds
+     * @param maxPendingEvents Number of pending events that triggers an immediate send
+     */
+    public synchronized void configure(long flushIntervalMs, int maxPendingEvents) {
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.maxPendingEvents = Math.max(1, maxPendingEvents);
+    }
+
+    /**
+     * Add a channel batches may be sent on. Batches go to the most recently added one.
+     */
+    public synchronized void addChannel(@NonNull BasicMessageChannel<ByteBuffer> channel) {
+        if (channels.contains(channel)) {
+            return;
+        }
+        channels.add(channel);
+        if (pendingEvents > 0) {
+            scheduleFlush(false);
+        }
+    }
+
+    /**
+     * Remove a channel. Batches go to the most recently added channel left, and once none is left,
+     * pending events are spooled.
+     */
+    public synchronized void removeChannel(@NonNull BasicMessageChannel<ByteBuffer> channel) {
+        if (channels.remove(channel) && channels.isEmpty()) {
+            // Nothing will receive the pending events in this process anymore
+            spoolPending();
+        }
+    }
+
+    /**
+     * Set the spool batches are written to while no channel is set
+     */
+    public synchronized void setSpool(@Nullable TelemetrySpool spool) {
+        this.spool = spool;
+    }
+
+    /**
+     * Record a rendered frame. A frame occupies as many vsync intervals as it needs to complete,
+     * so a frame is slow when it misses at least one vsync.
+     * @param durationNanos Frame duration, in nanoseconds
+     * @param budgetNanos Vsync interval of the display the frame was drawn on, in nanoseconds
+     * @param frozen Whether the frame took long enough to be considered frozen
+     */
+    public synchronized void recordFrame(long durationNanos, long budgetNanos, boolean frozen) {
+        long vsyncs = budgetNanos > 0 ? Math.max(1, (durationNanos + budgetNanos - 1) / budgetNanos) : 1;
+        frameCount++;
+        occupiedFrameNanos += vsyncs * budgetNanos;
+        frameBudgetHistogram[frameBudgetBucket(vsyncs - 1)]++;
+        if (vsyncs > 1) {
+            slowFrames++;
+        }
+        if (frozen) {
+            frozenFrames++;
+        }
+        onEventRecorded();
+    }
+
+    /**
+     * @param missedVsyncs Number of vsync intervals a frame overran its budget by
+     * @return Index of the frame budget histogram bucket
+     */
+    static int frameBudgetBucket(long missedVsyncs) {
+        if (missedVsyncs <= 0) {
+            return 0;
+        }
+        return Math.min(FRAME_BUDGET_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(missedVsyncs));
+    }
+
+    /**
+     * Record a detected ANR. Details stay with the ANR tracker; Dart is only notified.
+     */
+    public synchronized void recordAnr() {
+        anrCount++;
+        onEventRecorded();
+    }
+
+    /**
+     * Set the stall thresholds that {@link #recordStall(int)} levels refer to. Pending stalls are dropped.
+     * @param thresholdsMs Ascending stall thresholds, in milliseconds
+     */
+    public synchronized void setStallThresholds(@NonNull long[] thresholdsMs) {
+        stallThresholdsMs = thresholdsMs.length > MAX_STALL_THRESHOLDS
+                ? Arrays.copyOf(thresholdsMs, MAX_STALL_THRESHOLDS)
+                : thresholdsMs.clone();
+        Arrays.fill(stallCounts, 0);
+        hasStalls = false;
+    }
+
+    /**
+     * Record a main thread message that ran past a stall threshold
+     * @param level Index of the crossed threshold in the configured stall thresholds
+     */
+    public synchronized void recordStall(int level) {
+        if (level < 0 || level >= stallThresholdsMs.length) {
+            return;
+        }
+        stallCounts[level]++;
+        hasStalls = true;
+        onEventRecorded();
+    }
+
+    /**
+     * Record a foreground/background transition of the {@link MonitorRegistry}
+     * @param latencyNanos Time spent starting, pausing or stopping the monitors, in nanoseconds
+     */
+    public synchronized void recordMonitorTransition(long latencyNanos) {
+        monitorTransitions++;
+        monitorTransitionNanos += latencyNanos;
+        maxMonitorTransitionNanos = Math.max(maxMonitorTransitionNanos, latencyNanos);
+        onEventRecorded();
+    }
+
+    /**
+     * Record a {@link MonitorRegistry} transition to the state it already was in
+     */
+    public synchronized void recordSkippedMonitorTransition() {
+        skippedMonitorTransitions++;
+        onEventRecorded();
+    }
+
+    /**
+     * Record the garbage collection activity of one {@link GcMonitor} interval. Intervals without
+     * any collection are only added to the next batch, they don't trigger a send by themselves.
+     * @param intervalMs Duration of the interval, in milliseconds
+     * @param count Number of collections
+     * @param timeMs Time spent collecting, in milliseconds
+     * @param blockingCount Number of collections that blocked the allocating thread
+     * @param blockingTimeMs Time spent in blocking collections, in milliseconds
+     * @param bytesAllocated Bytes allocated on the Java heap
+     * @param bytesFreed Bytes freed by the collections
+     */
+    public synchronized void recordGc(long intervalMs, int count, long timeMs, int blockingCount,
+                                      long blockingTimeMs, long bytesAllocated, long bytesFreed) {
+        hasGc = true;
+        gcIntervalMs += intervalMs;
+        gcCount += count;
+        gcTimeMs += timeMs;
+        blockingGcCount += blockingCount;
+        blockingGcTimeMs += blockingTimeMs;
+        gcBytesAllocated += bytesAllocated;
+        gcBytesFreed += bytesFreed;
+        if (count > 0) {
+            onEventRecorded();
+        }
+    }
+
+    /**
+     * Record a frozen frame that a blocking garbage collection overlapped. The frame itself is
+     * recorded with {@link #recordFrame(long, long, boolean)}.
+     */
+    public synchronized void recordFrozenFrameWithBlockingGc() {
+        hasGc = true;
+        frozenFramesWithBlockingGc++;
+    }
+
+    /**
+     * Record a memory pressure signal from the system
+     * @param trimLevel Level passed to onTrimMemory, or 0 for onLowMemory
+     * @param rssKb Resident set size of the process when the signal arrived, in kB, or -1
+     */
+    public synchronized void recordMemoryPressure(int trimLevel, long rssKb) {
+        if (trimLevel > 0) {
+            trimMemoryCount++;
+            maxTrimLevel = Math.max(maxTrimLevel, trimLevel);
+        } else {
+            lowMemoryCount++;
+        }
+        memoryPressureRssKb = rssKb;
+        onEventRecorded();
+    }
+
+    /**
+     * Record a warm or hot start measured by the {@link WarmStartTracker}
+     * @param startType {@link WarmStartTracker#START_TYPE_WARM} or {@link WarmStartTracker#START_TYPE_HOT}
+     * @param createdToStartedNanos Time from the activity creation to its start, or -1 for a hot start
+     * @param startedToResumedNanos Time from the activity start to its resume
+     * @param resumedToDrawnNanos Time from the resume to the next frame drawn
+     */
+    public synchronized void recordAppStart(byte startType, long createdToStartedNanos,
+                                            long startedToResumedNanos, long resumedToDrawnNanos) {
+        if (appStartCount == MAX_PENDING_APP_STARTS) {
+            return;
+        }
+        appStartTypes[appStartCount] = startType;
+        appStartPhases[appStartCount * 3] = createdToStartedNanos;
+        appStartPhases[appStartCount * 3 + 1] = startedToResumedNanos;
+        appStartPhases[appStartCount * 3 + 2] = resumedToDrawnNanos;
+        appStartCount++;
+        onEventRecorded();
+    }
+
+    /**
+     * Send the pending batch now to the most recently added channel, or spool it if no channel is set.
+     * Must be called on the main thread.
+     */
+    public void flush() {
+        ByteBuffer batch;
+        BasicMessageChannel<ByteBuffer> target;
+        synchronized (this) {
+            isFlushScheduled = false;
+            scheduler.cancel(flushTimer);
+            flushTimer = null;
+            if (channels.isEmpty()) {
+                spoolPending();
+                return;
+            }
+            batch = drain();
+            target = channels.get(channels.size() - 1);
+        }
+        if (batch == null) {
+            return;
+        }
+        try {
+            target.send(batch);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending event batch", e);
+        }
+    }
+
+    /**
+     * Encode the pending events and reset the counters
+     * @return The encoded batch with its position at the end of the data, or null if nothing is pending
+     */
+    @Nullable
+    synchronized ByteBuffer drain() {
+        if (pendingEvents == 0) {
+            return null;
+        }
+        int size = 1;
+        if (frameCount > 0) {
+            size += RECORD_HEADER_BYTES + FRAMES_PAYLOAD_BYTES;
+            size += RECORD_HEADER_BYTES + FRAME_BUDGET_HISTOGRAM_PAYLOAD_BYTES;
+        }
+        if (anrCount > 0) {
+            size += RECORD_HEADER_BYTES + ANR_PAYLOAD_BYTES;
+        }
+        if (hasStalls) {
+            size += RECORD_HEADER_BYTES + stallsPayloadBytes();
+        }
+        boolean hasMonitorTransitions = monitorTransitions > 0 || skippedMonitorTransitions > 0;
+        if (hasMonitorTransitions) {
+            size += RECORD_HEADER_BYTES + MONITOR_TRANSITIONS_PAYLOAD_BYTES;
+        }
+        if (hasGc) {
+            size += RECORD_HEADER_BYTES + GC_PAYLOAD_BYTES;
+        }
+        boolean hasMemoryPressure = trimMemoryCount > 0 || lowMemoryCount > 0;
+        if (hasMemoryPressure) {
+            size += RECORD_HEADER_BYTES + MEMORY_PRESSURE_PAYLOAD_BYTES;
+        }
+        size += appStartCount * (RECORD_HEADER_BYTES + APP_START_PAYLOAD_BYTES);
+        // Flutter requires a direct buffer, positioned at the end of the message
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(BATCH_VERSION);
+        if (frameCount > 0) {
+            putRecordHeader(buffer, RECORD_FRAMES, FRAMES_PAYLOAD_BYTES);
+            buffer.putInt(frameCount);
+            buffer.putInt(slowFrames);
+            buffer.putInt(frozenFrames);
+            buffer.putLong(occupiedFrameNanos);
+            putRecordHeader(buffer, RECORD_FRAME_BUDGET_HISTOGRAM, FRAME_BUDGET_HISTOGRAM_PAYLOAD_BYTES);
+            buffer.put((byte) FRAME_BUDGET_BUCKETS);
+            for (int i = 0; i < FRAME_BUDGET_BUCKETS; i++) {
+                buffer.putInt(frameBudgetHistogram[i]);
+                frameBudgetHistogram[i] = 0;
+            }
+        }
+        if (anrCount > 0) {
+            putRecordHeader(buffer, RECORD_ANR, ANR_PAYLOAD_BYTES);
+            buffer.putInt(anrCount);
+        }
+        if (hasStalls) {
+            putRecordHeader(buffer, RECORD_STALLS, stallsPayloadBytes());
+            buffer.put((byte) stallThresholdsMs.length);
+            for (int i = 0; i < stallThresholdsMs.length; i++) {
+                buffer.putInt((int) stallThresholdsMs[i]);
+                buffer.putInt(stallCounts[i]);
+                stallCounts[i] = 0;
+            }
+            hasStalls = false;
+        }
+        if (hasMonitorTransitions) {
+            putRecordHeader(buffer, RECORD_MONITOR_TRANSITIONS, MONITOR_TRANSITIONS_PAYLOAD_BYTES);
+            buffer.putInt(monitorTransitions);
+            buffer.putInt(skippedMonitorTransitions);
+            buffer.putLong(monitorTransitionNanos);
+            buffer.putLong(maxMonitorTransitionNanos);
+            monitorTransitions = 0;
+            skippedMonitorTransitions = 0;
+            monitorTransitionNanos = 0;
+            maxMonitorTransitionNanos = 0;
+        }
+        if (hasGc) {
+            putRecordHeader(buffer, RECORD_GC, GC_PAYLOAD_BYTES);
+            buffer.putInt(gcCount);
+            buffer.putInt(blockingGcCount);
+            buffer.putInt(frozenFramesWithBlockingGc);
+            buffer.putLong(gcTimeMs);
+            buffer.putLong(blockingGcTimeMs);
+            buffer.putLong(gcBytesAllocated);
+            buffer.putLong(gcBytesFreed);
+            buffer.putLong(gcIntervalMs);
+            hasGc = false;
+            gcIntervalMs = 0;
+            gcCount = 0;
+            gcTimeMs = 0;
+            blockingGcCount = 0;
+            blockingGcTimeMs = 0;
+            gcBytesAllocated = 0;
+            gcBytesFreed = 0;
+            frozenFramesWithBlockingGc = 0;
+        }
+        if (hasMemoryPressure) {
+            putRecordHeader(buffer, RECORD_MEMORY_PRESSURE, MEMORY_PRESSURE_PAYLOAD_BYTES);
+            buffer.putInt(trimMemoryCount);
+            buffer.putInt(lowMemoryCount);
+            buffer.putInt(maxTrimLevel);
+            buffer.putLong(memoryPressureRssKb);
+            trimMemoryCount = 0;
+            lowMemoryCount = 0;
+            maxTrimLevel = 0;
+            memoryPressureRssKb = -1;
+        }
+        for (int i = 0; i < appStartCount; i++) {
+            putRecordHeader(buffer, RECORD_APP_START, APP_START_PAYLOAD_BYTES);
+            buffer.put(appStartTypes[i]);
+            buffer.putLong(appStartPhases[i * 3]);
+            buffer.putLong(appStartPhases[i * 3 + 1]);
+            buffer.putLong(appStartPhases[i * 3 + 2]);
+        }
+        appStartCount = 0;
+        pendingEvents = 0;
+        frameCount = 0;
+        slowFrames = 0;
+        frozenFrames = 0;
+        occupiedFrameNanos = 0;
+        anrCount = 0;
+        return buffer;
+    }
+
+    private synchronized void spoolPending() {
+        if (spool == null) {
+            return;
+        }
+        ByteBuffer batch = drain();
+        if (batch != null) {
+            batch.flip();
+            spool.append(TelemetrySpool.RECORD_EVENT_BATCH, batch);
+        }
+    }
+
+    private int stallsPayloadBytes() {
+        return 1 + (4 + 4) * stallThresholdsMs.length;
+    }
+
+    private void onEventRecorded() {
+        pendingEvents++;
+        if (channels.isEmpty() && spool == null) {
+            return;
+        }
+        scheduleFlush(pendingEvents == maxPendingEvents);
+    }
+
+    private void scheduleFlush(boolean immediately) {
+        if (immediately) {
+            scheduler.cancel(flushTimer);
+            flushTimer = null;
+            mainHandler.removeCallbacks(flushTask);
+            mainHandler.post(flushTask);
+            isFlushScheduled = true;
+        } else if (!isFlushScheduled) {
+            flushTimer = scheduler.scheduleOnce(
+                    postFlushTask, flushIntervalMs, Math.min(FLUSH_TOLERANCE_MS, flushIntervalMs));
+            isFlushScheduled = true;
+        }
+    }
+
+    private static void putRecordHeader(@NonNull ByteBuffer buffer, byte type, int payloadLength) {
+        buffer.put(type);
+        buffer.putShort((short) payloadLength);
+    }
+}
@@ -0,0 +1,160 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer with drop-oldest semantics.
+ * Producers never block or take a lock: each one claims a sequence number and publishes its
+ * event into the matching slot, overwriting the oldest event once the buffer is full. A slot is
+ * only ever replaced by a newer sequence, so a producer delayed by a whole lap drops its own event
+ * instead of overwriting the newer one.
+ * The consumer drains every published event in one pass and learns how many were overwritten
+ * before it could read them.
+ *
+ * @param <T> Event type
+ */
+public class EventRingBuffer<T> {
+
+    private static final class Slot<T> {
+        final long sequence;
+        final T event;
+
+        Slot(long sequence, T event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final AtomicLong writeSequence = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    // Dropped by trimTo, reported by the next drain
+    private final AtomicLong trimmedCount = new AtomicLong(0);
+    // Only written by the consumer
+    private volatile long readSequence = 0;
+
+    /**
+     * @param capacity Maximum number of events kept
+     */
+    public EventRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Publish an event, overwriting the oldest one if the buffer is full. Safe to call from any thread.
+     */
+    public void offer(@NonNull T event) {
+        publish(claim(), event);
+    }
+
+    long claim() {
+        return writeSequence.getAndIncrement();
+    }
+
+    /**
+     * Publish an event into the slot of its sequence, unless a newer one was published there
+     */
+    void publish(long sequence, @NonNull T event) {
+        int index = index(sequence);
+        Slot<T> slot = new Slot<>(sequence, event);
+        while (true) {
+            Slot<T> current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                // Overwritten a lap ahead already; the drain counts it as dropped
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move every published event to the given list, oldest first.
+     * Must only be called from one thread at a time.
+     * @param out List the events are added to
+     * @return Number of events overwritten since the previous drain
+     */
+    public int drainTo(@NonNull List<T> out) {
+        long end = writeSequence.get();
+        long start = Math.max(readSequence, end - slots.length());
+        long dropped = start - readSequence;
+        long sequence = start;
+        for (; sequence < end; sequence++) {
+            int index = index(sequence);
+            Slot<T> slot = slots.get(index);
+            if (slot == null || slot.sequence < sequence) {
+                // Claimed but not published yet; it is picked up by the next drain
+                break;
+            }
+            if (slot.sequence > sequence) {
+                // Overwritten by a newer event since end was read
+                dropped++;
+                continue;
+            }
+            slots.compareAndSet(index, slot, null);
+            out.add(slot.event);
+        }
+        readSequence = sequence;
+        droppedCount.addAndGet(dropped);
+        return (int) (dropped + trimmedCount.getAndSet(0));
+    }
+
+    /**
+     * Drop all but the newest published events, to release memory. Dropped events are counted as
+     * overwritten by the next drain. Must only be called from the consumer thread.
+     * @param keep Number of newest events to keep
+     * @return Number of events dropped
+     */
+    public int trimTo(int keep) {
+        long end = writeSequence.get();
+        long start = Math.max(readSequence, end - slots.length());
+        long dropped = start - readSequence;
+        long sequence = start;
+        for (; sequence < end - Math.max(0, keep); sequence++) {
+            int index = index(sequence);
+            Slot<T> slot = slots.get(index);
+            if (slot == null || slot.sequence < sequence) {
+                // Claimed but not published yet; it is kept
+                break;
+            }
+            if (slot.sequence == sequence) {
+                slots.compareAndSet(index, slot, null);
+            }
+            dropped++;
+        }
+        readSequence = sequence;
+        droppedCount.addAndGet(dropped);
+        trimmedCount.addAndGet(dropped);
+        return (int) dropped;
+    }
+
+    /**
+     * @return Whether no event is waiting to be drained
+     */
+    public boolean isEmpty() {
+        return writeSequence.get() == readSequence;
+    }
+
+    /**
+     * @return Total number of events overwritten before they were drained
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % slots.length());
+    }
+}
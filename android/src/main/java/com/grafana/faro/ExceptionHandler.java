@@ -1,31 +1,59 @@
 package com.grafana.faro;
 
+import android.os.Process;
 import android.os.StrictMode;
 
 import androidx.annotation.NonNull;
 
-import org.json.JSONObject;
-
 import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.flutter.Log;
 
 /**
  * Provides automatic notification hooks for unhandled exceptions.
+ * The journal is opened and the record buffer allocated when the handler is installed,
+ * so capturing a crash neither allocates much nor opens files while the process is dying.
+ * Reading the journal and evicting old records to make room for a record is left to a background
+ * executor.
  */
 class ExceptionHandler implements UncaughtExceptionHandler {
-
-
+    private static final String TAG = "ExceptionHandler";
 
     private final UncaughtExceptionHandler originalHandler;
+    private final CrashJournal crashJournal;
+    private final CrashWriter crashWriter;
+    private final int pid = Process.myPid();
 
-    ExceptionHandler() {
+    ExceptionHandler(@NonNull CrashJournal crashJournal) {
+        this(crashJournal, new CrashWriter(CrashWriter.DEFAULT_CAPACITY));
+    }
+
+    ExceptionHandler(@NonNull CrashJournal crashJournal, @NonNull CrashWriter crashWriter) {
         this.originalHandler = Thread.getDefaultUncaughtExceptionHandler();
+        this.crashJournal = crashJournal;
+        this.crashWriter = crashWriter;
     }
 
-    void install() {
+    /**
+     * @param executor Executor the journal is prepared on, off the calling thread
+     */
+    void install(@NonNull Executor executor) {
+        // Only opens the file, which is cheap enough for the main thread
+        StrictMode.ThreadPolicy originalThreadPolicy = StrictMode.allowThreadDiskWrites();
+        try {
+            crashJournal.openFile();
+        } finally {
+            StrictMode.setThreadPolicy(originalThreadPolicy);
+        }
         Thread.setDefaultUncaughtExceptionHandler(this);
+        try {
+            executor.execute(() -> crashJournal.prepare(crashWriter.capacity()));
+        } catch (RejectedExecutionException e) {
+            // The journal is then read by the first capture
+            Log.w(TAG, "Too many background tasks pending, crash journal not prepared");
+        }
     }
 
     void uninstall() {
@@ -35,14 +63,12 @@ class ExceptionHandler implements UncaughtExceptionHandler {
     @Override
     public void uncaughtException(@NonNull Thread thread, @NonNull Throwable throwable) {
         try {
-            JSONObject jsonObject = new JSONObject();
-            jsonObject.put("stacktrace", Arrays.toString(throwable.getStackTrace()));
-            jsonObject.put("value", throwable.getMessage());
-            StrictMode.ThreadPolicy originalThreadPolicy = StrictMode.getThreadPolicy();
-            StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX);
-            RumCache rumCache = new RumCache();
-            rumCache.writeToCache(jsonObject.toString());
-            StrictMode.setThreadPolicy(originalThreadPolicy);
+            synchronized (crashWriter) {
+                int length = crashWriter.write(throwable, System.currentTimeMillis(), pid);
+                StrictMode.ThreadPolicy originalThreadPolicy = StrictMode.allowThreadDiskWrites();
+                crashJournal.append(crashWriter.buffer(), 0, length);
+                StrictMode.setThreadPolicy(originalThreadPolicy);
+            }
         } catch (Throwable ignored) {
             //  avoid possible unhandled-exception loops
         } finally {
@@ -58,4 +84,4 @@ class ExceptionHandler implements UncaughtExceptionHandler {
             System.err.printf("Exception in thread \"%s\" ", thread.getName());
         }
     }
-}
\ No newline at end of file
+}
@@ -13,12 +13,13 @@ import androidx.annotation.RequiresApi;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -29,25 +30,36 @@ import java.util.Set;
 public class ExitInfoHelper {
     private static final String TAG = "ExitInfoHelper";
     private static final int MAX_EXIT_REASONS = 15; // Maximum number of exit reasons to retrieve
-    private static final int MAX_TRACE_BYTES = 1024 * 1024; // 1MB max for trace data
+    static final int MAX_TRACE_BYTES = 1024 * 1024; // 1MB max for trace data
     
-    private final SharedPreferencesService preferencesService;
+    private final Context context;
+    private final HandledExitStore handledExits;
+    private volatile int maxTraceBytes = MAX_TRACE_BYTES;
 
     /**
      * Constructor for ExitInfoHelper
-     * @param context Application context used for SharedPreferences
+     * @param context Application context used to store the handled exits
      */
     public ExitInfoHelper(@NonNull Context context) {
-        this.preferencesService = new SharedPreferencesService(context);
+        this.context = context.getApplicationContext();
+        this.handledExits = new HandledExitStore(new File(this.context.getFilesDir(), HandledExitStore.FILE_NAME));
     }
 
     /**
-     * Get the SharedPreferencesService
-     * @return The SharedPreferencesService instance
+     * Limit how much of each exit trace is read, e.g. while the app is under memory pressure
+     * @param maxBytes Maximum number of trace bytes read, at most {@link #MAX_TRACE_BYTES}
+     */
+    public void setMaxTraceBytes(int maxBytes) {
+        maxTraceBytes = Math.max(1, Math.min(MAX_TRACE_BYTES, maxBytes));
+    }
+
+    /**
+     * Get the store of exits already reported
+     * @return The HandledExitStore instance
      * Note: This method is primarily for testing
      */
-    public SharedPreferencesService getPreferencesService() {
-        return preferencesService;
+    public HandledExitStore getHandledExitStore() {
+        return handledExits;
     }
 
     /**
@@ -100,22 +112,49 @@ public class ExitInfoHelper {
             return exitInfoList;
         }
 
-        Set<String> handledExitInfo = preferencesService.getHandledExitInfos();
-        List<ApplicationExitInfo> newExitInfo = new ArrayList<>();
-        Set<String> updatedHandledExitInfo = new HashSet<>(handledExitInfo);
+        if (!handledExits.exists()) {
+            migrateHandledExitInfos();
+        }
 
+        List<ApplicationExitInfo> newExitInfo = new ArrayList<>();
+        long oldestTimestamp = Long.MAX_VALUE;
         for (ApplicationExitInfo exitInfo : exitInfoList) {
-            String exitInfoKey = ApplicationExitInfoExt.getUniqueId(exitInfo);
-            if (!handledExitInfo.contains(exitInfoKey)) {
+            long timestamp = exitInfo.getTimestamp();
+            int pid = exitInfo.getPid();
+            oldestTimestamp = Math.min(oldestTimestamp, timestamp);
+            if (!handledExits.isHandled(timestamp, pid)) {
                 newExitInfo.add(exitInfo);
-                updatedHandledExitInfo.add(exitInfoKey);
+                handledExits.markHandled(timestamp, pid);
             }
         }
 
-        preferencesService.setHandledExitInfos(updatedHandledExitInfo);
+        // The system returns its most recent exits, so older ones cannot show up again
+        handledExits.advanceTo(oldestTimestamp);
+        handledExits.save();
         return newExitInfo;
     }
 
+    /**
+     * Import the exits handled by previous versions, stored as "timestamp_pid" strings in
+     * SharedPreferences, and remove them from there
+     */
+    private void migrateHandledExitInfos() {
+        SharedPreferencesService preferencesService = new SharedPreferencesService(context);
+        Set<String> legacyIds = preferencesService.getHandledExitInfos();
+        for (String id : legacyIds) {
+            int separator = id.lastIndexOf('_');
+            try {
+                handledExits.markHandled(
+                        Long.parseLong(id.substring(0, separator)), Integer.parseInt(id.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Skipping malformed handled exit id " + id);
+            }
+        }
+        if (handledExits.save() && !legacyIds.isEmpty()) {
+            preferencesService.clearHandledExitInfos();
+        }
+    }
+
     /**
      * Convert ApplicationExitInfo to a JSON object with relevant information
      * @param exitInfo The exit information to convert
@@ -149,9 +188,22 @@ public class ExitInfoHelper {
             
             // Add trace data for crashes if available
             int reasonCode = exitInfo.getReason();
-            if ((reasonCode == ApplicationExitInfo.REASON_CRASH || 
-                 reasonCode == ApplicationExitInfo.REASON_CRASH_NATIVE || 
-                 reasonCode == ApplicationExitInfo.REASON_ANR) && 
+            if (reasonCode == ApplicationExitInfo.REASON_ANR) {
+                AnrTraceParser.Result anrTrace = readAnrTrace(exitInfo);
+                if (anrTrace != null && !anrTrace.threads.isEmpty()) {
+                    jsonObject.put("stacktrace", anrTrace.format());
+                    jsonObject.put("threads", anrTrace.threadsToJson());
+                }
+            } else if (reasonCode == ApplicationExitInfo.REASON_CRASH_NATIVE
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                // A protobuf tombstone since API 31
+                TombstoneDecoder.Tombstone tombstone = readTombstone(exitInfo);
+                if (tombstone != null) {
+                    jsonObject.put("stacktrace", tombstone.format());
+                    jsonObject.put("tombstone", tombstone.toJson());
+                }
+            } else if ((reasonCode == ApplicationExitInfo.REASON_CRASH ||
+                 reasonCode == ApplicationExitInfo.REASON_CRASH_NATIVE) &&
                 exitInfo.getTraceInputStream() != null) {
                 
                 String trace = readTraceInputStream(exitInfo);
@@ -168,6 +220,44 @@ public class ExitInfoHelper {
         }
     }
     
+    /**
+     * Extract the main thread and the threads blocking it from an ANR traces file
+     * @param exitInfo The exit information containing trace data
+     * @return The extracted threads, or null if not available
+     */
+    @Nullable
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private AnrTraceParser.Result readAnrTrace(@NonNull ApplicationExitInfo exitInfo) {
+        try (InputStream traceInputStream = exitInfo.getTraceInputStream()) {
+            if (traceInputStream == null) {
+                return null;
+            }
+            return AnrTraceParser.parse(traceInputStream, maxTraceBytes, ANRTracker.MAX_STACK_FRAMES);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading ANR trace", e);
+            return null;
+        }
+    }
+
+    /**
+     * Decode the signal and crashing thread backtrace of a native crash tombstone
+     * @param exitInfo The exit information containing the tombstone
+     * @return The decoded crash, or null if not available
+     */
+    @Nullable
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private TombstoneDecoder.Tombstone readTombstone(@NonNull ApplicationExitInfo exitInfo) {
+        try (InputStream traceInputStream = exitInfo.getTraceInputStream()) {
+            if (traceInputStream == null) {
+                return null;
+            }
+            return TombstoneDecoder.decode(new BufferedInputStream(traceInputStream), maxTraceBytes);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading tombstone", e);
+            return null;
+        }
+    }
+
     /**
      * Read trace data from the exit info
      * @param exitInfo The exit information containing trace data
@@ -193,7 +283,7 @@ public class ExitInfoHelper {
                 totalBytesRead += bytesRead;
                 
                 // Limit the size of trace data to prevent OOM
-                if (totalBytesRead > MAX_TRACE_BYTES) {
+                if (totalBytesRead > maxTraceBytes) {
                     Log.w(TAG, "Trace data too large, truncating");
                     break;
                 }
@@ -1,7 +1,6 @@
 package com.grafana.faro;
 
 import android.app.Activity;
-import android.app.Application;
 import android.app.ApplicationExitInfo;
 import android.content.Context;
 import android.os.Build;
@@ -10,8 +9,6 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
 import android.os.SystemClock;
-import android.view.Choreographer;
-import android.view.Window;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -21,19 +18,22 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.Log;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
@@ -48,114 +48,26 @@ import io.flutter.plugin.common.MethodChannel.Result;
  * - ANR detection
  * - Crash reporting
  * - Frame rate monitoring
+ *
+ * Each Flutter engine gets its own instance, which only subscribes to the process-wide
+ * {@link NativeCore} that owns the monitors, the crash handler and the buffers.
  */
 public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAware {
     /// The MethodChannel that will the communication between Flutter and native Android
     /// This local reference serves to register the plugin with the Flutter Engine and unregister it
     /// when the Flutter Engine is detached from the Activity
     private MethodChannel channel;
+    private BasicMessageChannel<ByteBuffer> eventChannel;
     private Context applicationContext;
+    // Process-wide state shared by the plugin instances of all engines
+    private @Nullable NativeCore core;
     private @Nullable WeakReference<Activity> activity = null;
-    private @Nullable ANRTracker anrTracker;
-    private @Nullable ExitInfoHelper exitInfoHelper;
-    private @Nullable Window window;
-    private @Nullable Application application;
 
     private FlutterPluginBinding pluginBinding;
-    private long lastFrameTimeNanos = 0;
-    final int[] frozenFrameCount = {0};
 
-    private static final long NANOSECONDS_IN_SECOND = 1_000_000_000L;
     private static final String TAG = "FaroPlugin";
 
-    Double refreshRate = 0.0;
-    private int count = 0;
-    private int frameCount = 0;
-    private AtomicInteger slowFrames = new AtomicInteger(0);
-
-    private boolean isAnrTrackerRunning = false;
-    private boolean isActivityResumed = false;
-    private boolean isFrameMonitoringRunning = false;
-    private Choreographer.FrameCallback frameCallback;
-    
-    private final Application.ActivityLifecycleCallbacks activityLifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
-        @Override
-        public void onActivityCreated(Activity activity, android.os.Bundle savedInstanceState) {
-            // Not needed for our purposes
-        }
-
-        @Override
-        public void onActivityStarted(Activity activity) {
-            // Not needed for our purposes
-        }
-
-        @Override
-        public void onActivityResumed(Activity activity) {
-            Log.d(TAG, "Activity resumed (foreground)");
-            isActivityResumed = true;
-            
-            // Ensure we start the ANR tracker when app comes to foreground
-            if (!isAnrTrackerRunning && isActivityResumed) {
-                Log.d(TAG, "Starting tracker from resume");
-                
-                // Ensure we don't have a lingering ANR tracker
-                if (anrTracker != null) {
-                    Log.d(TAG, "Cleaning up old tracker before starting new one");
-                    try {
-                        anrTracker.stopTracking();
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error stopping old tracker", e);
-                    }
-                }
-                
-                anrTracker = new ANRTracker();
-                anrTracker.start();
-                isAnrTrackerRunning = true;
-            }
-            
-            // Restart frame monitoring
-            startFrameMonitoring();
-        }
-
-        @Override
-        public void onActivityPaused(Activity activity) {
-            Log.d(TAG, "Activity paused (background)");
-            isActivityResumed = false;
-            
-            // Stop ANR tracking when app goes to background
-            if (isAnrTrackerRunning && anrTracker != null) {
-                Log.d(TAG, "Stopping tracker from pause");
-                
-                try {
-                    anrTracker.stopTracking();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error stopping tracker", e);
-                } finally {
-                    Log.d(TAG, "Cleanup or stop monitoring if needed");
-                    anrTracker = null;
-                    isAnrTrackerRunning = false;
-                }
-            }
-            
-            // Stop frame monitoring
-            stopFrameMonitoring();
-        }
-
-        @Override
-        public void onActivityStopped(Activity activity) {
-            // Not needed for our purposes
-        }
-
-        @Override
-        public void onActivitySaveInstanceState(Activity activity, android.os.Bundle outState) {
-            // Not needed for our purposes
-        }
-
-        @Override
-        public void onActivityDestroyed(Activity activity) {
-            // Not needed for our purposes
-        }
-    };
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
@@ -163,17 +75,17 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
         this.pluginBinding = flutterPluginBinding;
         channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "faro");
         channel.setMethodCallHandler(this);
+        eventChannel = new BasicMessageChannel<>(
+                flutterPluginBinding.getBinaryMessenger(), EventAggregator.CHANNEL_NAME, BinaryCodec.INSTANCE);
         
         // Store application context which is more stable than activity context
         this.applicationContext = flutterPluginBinding.getApplicationContext();
         
-        // Initialize ExitInfoHelper with application context
-        if (this.exitInfoHelper == null && this.applicationContext != null) {
-            this.exitInfoHelper = new ExitInfoHelper(applicationContext);
+        if (this.applicationContext != null) {
+            // The first engine creates the core and installs the crash handler; the others subscribe
+            core = NativeCore.getInstance(applicationContext);
+            core.attachEngine(eventChannel);
         }
-        
-        ExceptionHandler exceptionHandler = new ExceptionHandler();
-        exceptionHandler.install();
 
         // StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder(StrictMode.getVmPolicy()) .detectLeakedClosableObjects() .build());
     }
@@ -181,148 +93,27 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
     @Override
     public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
         Log.d(TAG, "attached to Activity");
-        
-        if (binding.getActivity() != null) {
-            activity = new WeakReference<>(binding.getActivity());
-            window = activity.get().getWindow();
-            // Update application context from activity if needed
-            if (applicationContext == null) {
-                applicationContext = activity.get().getApplicationContext();
-            }
-            
-            // Register activity lifecycle callbacks
-            if (activity.get() != null && activity.get().getApplication() != null) {
-                application = activity.get().getApplication();
-                application.registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
-                
-                // Check if activity is currently resumed (visible to user)
-                isActivityResumed = true;
-            }
-        }
-        
-        // Start ANR tracking if enabled and activity is resumed
-        if (!isAnrTrackerRunning && isActivityResumed) {
-            // Ensure we don't have a lingering ANR tracker
-            if (anrTracker != null) {
-                Log.d(TAG, "Cleaning up old tracker before starting new one");
-                try {
-                    anrTracker.stopTracking();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error stopping old tracker", e);
-                }
-            }
-            
-            anrTracker = new ANRTracker();
-            anrTracker.start();
-            isAnrTrackerRunning = true;
-        }
-        
-        // Ensure exitInfoHelper is initialized with a valid context
-        if (exitInfoHelper == null && applicationContext != null) {
-            exitInfoHelper = new ExitInfoHelper(applicationContext);
-        }
-        
-        // Start frame monitoring if activity is resumed
-        if (isActivityResumed) {
-            startFrameMonitoring();
-        }
+        attachActivity(binding);
     }
     
     @Override
     public void onDetachedFromActivityForConfigChanges() {
         Log.d(TAG, "detached from Activity (config change)");
-        
-        // Set isActivityResumed to false during config changes
-        isActivityResumed = false;
-        
-        // Stop ANR tracking if running
-        if (isAnrTrackerRunning && anrTracker != null) {
-            try {
-                anrTracker.stopTracking();
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping tracker", e);
-            } finally {
-                anrTracker = null;
-                isAnrTrackerRunning = false;
-            }
-        }
-        
-        // Unregister activity lifecycle callbacks during config change
-        if (application != null) {
-            application.unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
-        }
-        
-        // Stop frame monitoring
-        stopFrameMonitoring();
+        detachActivity(true);
     }
 
     @Override
     public void onReattachedToActivityForConfigChanges(@NonNull ActivityPluginBinding binding) {
         Log.d(TAG, "reattached to Activity");
-        
-        if (binding.getActivity() != null) {
-            activity = new WeakReference<>(binding.getActivity());
-            window = activity.get().getWindow();
-            
-            // Re-register activity lifecycle callbacks
-            if (activity.get() != null && activity.get().getApplication() != null) {
-                application = activity.get().getApplication();
-                application.registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
-                
-                // Activity is considered resumed after reattachment for config changes
-                isActivityResumed = true;
-            }
-        }
-        
-        // Restart ANR tracking if enabled and activity is resumed
-        if (!isAnrTrackerRunning && isActivityResumed) {
-            // Ensure we don't have a lingering ANR tracker
-            if (anrTracker != null) {
-                Log.d(TAG, "Cleaning up old tracker before starting new one");
-                try {
-                    anrTracker.stopTracking();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error stopping old tracker", e);
-                }
-            }
-            
-            anrTracker = new ANRTracker();
-            anrTracker.start();
-            isAnrTrackerRunning = true;
-        }
-        
-        // Restart frame monitoring if activity is resumed
-        if (isActivityResumed) {
-            startFrameMonitoring();
-        }
+        // Activity is considered resumed after reattachment for config changes;
+        // the resume callback that follows is then skipped by the monitor registry
+        attachActivity(binding);
     }
 
     @Override
     public void onDetachedFromActivity() {
         Log.d(TAG, "detached from Activity");
-        
-        // Stop ANR tracking if running
-        if (isAnrTrackerRunning && anrTracker != null) {
-            try {
-                anrTracker.stopTracking();
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping tracker", e);
-            } finally {
-                anrTracker = null;
-                isAnrTrackerRunning = false;
-            }
-        }
-        
-        // Stop frame monitoring
-        stopFrameMonitoring();
-        
-        // Unregister activity lifecycle callbacks
-        if (application != null) {
-            application.unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
-        }
-        
-        window = null;
-        isActivityResumed = false;
+        detachActivity(false);
     }
 
     @Override
@@ -330,6 +121,10 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
         Log.d(TAG, "onDetachedFromEngine");
         channel.setMethodCallHandler(null);
         channel = null;
+        if (core != null) {
+            core.detachEngine(eventChannel);
+        }
+        eventChannel = null;
     }
 
     // test
@@ -339,10 +134,15 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
             if (call.method != null) {
                 switch (call.method) {
                     case "initRefreshRate":
-                        this.lastFrameTimeNanos = 0;
-                        this.count = 0;
-                        startFrameMonitoring();
-                        result.success(checkFrozenFrames());
+                        // Frame monitoring is continuous and follows the foreground state
+                        result.success(null);
+                        break;
+                    case "getFrameHistogram":
+                        if (core == null) {
+                            result.success(null);
+                            break;
+                        }
+                        result.success(core.getFrameTimingMonitor().getHistogram().snapshotAndReset());
                         break;
                     case "getMemoryUsage":
                         result.success(MemoryUsageInfo.onGetMemoryUsageInfo());
@@ -355,43 +155,123 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
                             result.success(null);
                         }
                         break;
+                    case "initVitalsSampler":
+                        if (core == null) {
+                            result.success(null);
+                            break;
+                        }
+                        Number intervalMs = call.argument("intervalMs");
+                        Number windowSize = call.argument("windowSize");
+                        Number threadCpuTopCount = call.argument("threadCpuTopCount");
+                        // Applies the new interval if the sampler is already running
+                        core.configureVitalsSampler(
+                                intervalMs != null ? intervalMs.longValue() : VitalsSampler.DEFAULT_INTERVAL_MS,
+                                windowSize != null ? windowSize.intValue() : VitalsSampler.DEFAULT_WINDOW_SIZE,
+                                threadCpuTopCount != null ? threadCpuTopCount.intValue() : 0);
+                        result.success(null);
+                        break;
+                    case "getVitalsWindow":
+                        result.success(core != null ? core.drainVitalsWindow() : null);
+                        break;
                     case "getCrashReport":
                         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.R) {
-                            // Check if exitInfoHelper is initialized
-                            if (exitInfoHelper == null) {
-                                if (applicationContext != null) {
-                                    exitInfoHelper = new ExitInfoHelper(applicationContext);
-                                } else {
-                                    Log.e(TAG, "Cannot initialize ExitInfoHelper: applicationContext is null");
-                                    result.success(null);
-                                    break;
-                                }
-                            }
-                            
-                            List<String> exitInfo;
-                            try {
-                                exitInfo = getExitInfo();
-                                result.success(exitInfo);
-                            } catch (JSONException e) {
-                                Log.e(TAG, "Error getting exit info: " + e.getMessage());
-                                result.success(null);
-                            } catch (NullPointerException e) {
-                                Log.e(TAG, "NullPointerException in getExitInfo: " + e.getMessage());
+                            if (core == null) {
+                                Log.e(TAG, "Cannot initialize ExitInfoHelper: applicationContext is null");
                                 result.success(null);
+                                break;
                             }
+                            
+                            // Exit reasons and their trace files are read from disk
+                            runInBackground(result, () -> {
+                                try {
+                                    return getExitInfo();
+                                } catch (JSONException e) {
+                                    Log.e(TAG, "Error getting exit info: " + e.getMessage());
+                                    return null;
+                                }
+                            });
                         } else {
                             result.success(null);
                         }
                         break;
+                    case "initAnrWatchdog":
+                        List<Number> thresholds = call.argument("stallThresholdsMs");
+                        long[] stallThresholdsMs = MainThreadWatchdog.DEFAULT_STALL_THRESHOLDS_MS;
+                        if (thresholds != null) {
+                            stallThresholdsMs = new long[thresholds.size()];
+                            for (int i = 0; i < stallThresholdsMs.length; i++) {
+                                stallThresholdsMs[i] = thresholds.get(i).longValue();
+                            }
+                        }
+                        // Replace the polling tracker with the message dispatch watchdog
+                        Number samplingIntervalMs = call.argument("samplingIntervalMs");
+                        if (core != null) {
+                            core.configureAnrWatchdog(
+                                    stallThresholdsMs,
+                                    samplingIntervalMs != null
+                                            ? samplingIntervalMs.longValue()
+                                            : MainThreadWatchdog.DEFAULT_SAMPLING_INTERVAL_MS);
+                        }
+                        result.success(null);
+                        break;
+                    case "readCrashJournal":
+                        if (applicationContext == null) {
+                            result.success(null);
+                            break;
+                        }
+                        Number cursor = call.argument("cursor");
+                        Number limit = call.argument("limit");
+                        CrashJournal crashJournal = CrashJournal.getInstance(applicationContext);
+                        runInBackground(result, () -> {
+                            CrashJournal.Page page = crashJournal.read(
+                                    cursor != null ? cursor.longValue() : 0L,
+                                    limit != null ? limit.intValue() : 20);
+                            Map<String, Object> crashRecords = new HashMap<>();
+                            crashRecords.put("records", page.records);
+                            crashRecords.put("cursor", page.cursor);
+                            crashRecords.put("hasMore", page.hasMore);
+                            return crashRecords;
+                        });
+                        break;
+                    case "acknowledgeCrashJournal":
+                        Number acknowledgedCursor = call.argument("cursor");
+                        if (applicationContext == null || acknowledgedCursor == null) {
+                            result.success(null);
+                            break;
+                        }
+                        CrashJournal acknowledgedJournal = CrashJournal.getInstance(applicationContext);
+                        runInBackground(result, () -> {
+                            acknowledgedJournal.acknowledge(acknowledgedCursor.longValue());
+                            return null;
+                        });
+                        break;
+                    case "drainTelemetrySpool":
+                        if (applicationContext == null) {
+                            result.success(null);
+                            break;
+                        }
+                        // Opening the spool maps its file, so it stays off the main thread
+                        Context spoolContext = applicationContext;
+                        runInBackground(result, () -> drainTelemetrySpool(spoolContext));
+                        break;
                     case "getANRStatus":
-                        List<String> anrStatuses = ANRTracker.getANRStatus();
-                        ANRTracker.resetANR();
+                        Number knownFrames = call.argument("knownFrames");
+                        // Drained in one step so ANRs detected meanwhile are not lost
+                        List<String> anrStatuses = ANRTracker.drainANRStatus(
+                                knownFrames != null ? knownFrames.intValue() : 0);
                         result.success(anrStatuses);
                         break;
                     case "getAppStart":
-                        Map<String, Object> appStart = new HashMap<>();
-                        appStart.put("appStartDuration", getAppStart());
-                        result.success(appStart);
+                        if (core == null) {
+                            Map<String, Object> appStart = new HashMap<>();
+                            appStart.put("appStartDuration", getAppStart());
+                            result.success(appStart);
+                            break;
+                        }
+                        // Called after the first Flutter frame; the system start record is read from disk
+                        AppStartTracker appStartTracker = core.getAppStartTracker();
+                        appStartTracker.onFlutterFirstFrame();
+                        runInBackground(result, () -> appStartTracker.report(applicationContext));
                         break;
                     default:
                         result.notImplemented();
@@ -404,54 +284,86 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
         }
     }
 
-    private void startFrameMonitoring() {
-        if (isFrameMonitoringRunning) {
-            return; // Already running
+    private void attachActivity(@NonNull ActivityPluginBinding binding) {
+        Activity boundActivity = binding.getActivity();
+        if (boundActivity == null) {
+            return;
         }
-        
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
-            frameCallback = new Choreographer.FrameCallback() {
-                @Override
-                public void doFrame(long frameTimeNanos) {
-                    checkFrameDuration(frameTimeNanos);
-                    if (count < 5 && isFrameMonitoringRunning) {
-                        Choreographer.getInstance().postFrameCallback(this);
-                    }
-                }
-            };
-            isFrameMonitoringRunning = true;
-            Choreographer.getInstance().postFrameCallback(frameCallback);
-        } else {
-            // Fallback for older API levels
-            isFrameMonitoringRunning = true;
-            new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                checkFrameDuration(System.nanoTime());
-                if (isFrameMonitoringRunning) {
-                    startFrameMonitoring();
-                }
-            }, 16);
+        activity = new WeakReference<>(boundActivity);
+        // Update application context from activity if needed
+        if (core == null && boundActivity.getApplicationContext() != null) {
+            applicationContext = boundActivity.getApplicationContext();
+            core = NativeCore.getInstance(applicationContext);
+            core.attachEngine(eventChannel);
+        }
+        if (core != null) {
+            core.attachActivity(boundActivity);
+        }
+    }
+
+    private void detachActivity(boolean isConfigChange) {
+        Activity attachedActivity = activity != null ? activity.get() : null;
+        if (core != null && attachedActivity != null) {
+            core.detachActivity(attachedActivity, isConfigChange);
         }
+        activity = null;
     }
 
-    private void stopFrameMonitoring() {
-        isFrameMonitoringRunning = false;
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN && frameCallback != null) {
-            Choreographer.getInstance().removeFrameCallback(frameCallback);
-            frameCallback = null;
+    /**
+     * Drain the telemetry spool into the channel reply: event batches, ANRs and the dropped count
+     */
+    @NonNull
+    private static Map<String, Object> drainTelemetrySpool(@NonNull Context context) {
+        List<TelemetrySpool.Record> spooled = new ArrayList<>();
+        int droppedRecords = TelemetrySpool.getInstance(context).drainTo(spooled);
+        List<byte[]> eventBatches = new ArrayList<>();
+        List<String> spooledAnrs = new ArrayList<>();
+        for (TelemetrySpool.Record record : spooled) {
+            if (record.type == TelemetrySpool.RECORD_EVENT_BATCH) {
+                eventBatches.add(record.data);
+            } else if (record.type == TelemetrySpool.RECORD_ANR) {
+                spooledAnrs.add(new String(record.data, StandardCharsets.UTF_8));
+            }
+        }
+        Map<String, Object> spool = new HashMap<>();
+        spool.put("eventBatches", eventBatches);
+        spool.put("anrs", spooledAnrs);
+        spool.put("dropped", droppedRecords);
+        return spool;
+    }
+
+    /**
+     * Run blocking work off the main thread and reply with its result on the main thread.
+     * Replies null if too many tasks are already waiting.
+     */
+    private void runInBackground(@NonNull Result result, @NonNull Callable<Object> task) {
+        if (core == null) {
+            result.success(null);
+            return;
+        }
+        try {
+            core.getBackgroundExecutor().execute(() -> {
+                Object value = null;
+                try {
+                    value = task.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Error in background task", e);
+                }
+                Object reply = value;
+                mainHandler.post(() -> result.success(reply));
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Too many background tasks pending, skipping");
+            result.success(null);
         }
-        // Reset monitoring state
-        lastFrameTimeNanos = 0;
-        count = 0;
-        frameCount = 0;
-        slowFrames.set(0);
-        frozenFrameCount[0] = 0;
     }
 
     private List<String> getExitInfo() throws JSONException {
-        if (exitInfoHelper == null || applicationContext == null) {
+        if (core == null) {
             Log.e(TAG, "ExitInfoHelper or applicationContext is null");
             return null;
         }
+        ExitInfoHelper exitInfoHelper = core.getExitInfoHelper();
         
         List<ApplicationExitInfo> exitInfos = exitInfoHelper.getApplicationExitInfo(applicationContext);
         if (exitInfos == null) {
@@ -470,78 +382,10 @@ public class FaroPlugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
         return infoList.isEmpty() ? null : infoList;
     }
 
-    private int checkFrozenFrames() {
-        return this.frozenFrameCount[0];
-    }
-
-    private void checkFrameDuration(long frameTimeNanos) {
-        // Safety check - don't process if monitoring is stopped or channel is null
-        if (!isFrameMonitoringRunning || channel == null) {
-            return;
-        }
-        
-        long frameDuration = frameTimeNanos - lastFrameTimeNanos;
-        this.frameCount++;
-        this.refreshRate = NANOSECONDS_IN_SECOND / (double) frameDuration;
-        if(lastFrameTimeNanos !=0){
-            handleRefreshRate();
-        }
-        double fps = this.frameCount / (frameDuration / (double) NANOSECONDS_IN_SECOND);
-        // Reset counters for the next second
-        this.frameCount = 0;
-        this.count++;
-
-        // Check for slow or frozen frames based on your thresholds
-        if (fps < 60) {
-            // Handle slow frames
-            this.slowFrames.incrementAndGet();
-            handleSlowFrameDrop();
-        }
-
-        if (lastFrameTimeNanos != 0 && frameDuration > 100_000_000L) {
-            this.frozenFrameCount[0]++;
-            handleFrameDrop();
-        }
-        lastFrameTimeNanos = frameTimeNanos;
-    }
-
     private long getAppStart(){
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
         }
         return 0;
     }
-
-    private void handleFrameDrop() {
-        if (channel == null) {
-            Log.w(TAG, "Channel is null, skipping handleFrameDrop");
-            return;
-        }
-        int frozenFrame = this.frozenFrameCount[0];
-        // Handle the frozen frame event, e.g., log, send an event to Dart, etc.
-        channel.invokeMethod("onFrozenFrame", frozenFrame);
-        this.frozenFrameCount[0] = 0;
-    }
-
-    private void handleSlowFrameDrop() {
-        if (channel == null) {
-            Log.w(TAG, "Channel is null, skipping handleSlowFrameDrop");
-            return;
-        }
-        int slowFramesCount = this.slowFrames.get();
-        // Handle the frozen frame event, e.g., log, send an event to Dart, etc.
-        channel.invokeMethod("onSlowFrames", slowFramesCount);
-        this.slowFrames.set(0);
-    }
-
-    private void handleRefreshRate() {
-        if (channel == null) {
-            Log.w(TAG, "Channel is null, skipping handleRefreshRate");
-            return;
-        }
-        Object refreshRates = this.refreshRate;
-        // Handle the frozen frame event, e.g., log, send an event to Dart, etc.
-        channel.invokeMethod("onRefreshRate", refreshRates);
-        this.refreshRate = 0.0;
-    }
 }
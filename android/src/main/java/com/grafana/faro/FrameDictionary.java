@@ -0,0 +1,107 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FrameDictionary interns stack frames into small, dense integer ids for the lifetime of the process.
+ * Payloads sent to Dart carry frame ids, and only the frames Dart has not received yet are sent
+ * alongside them, so stacks that recur across ANRs and stall profiles are formatted and sent once.
+ *
+ * <p>Ids are assigned in order starting at 0, so "frames not yet sent" is simply every id at or
+ * above the number of frames the receiver already knows. The dictionary is bounded; once it is
+ * full, {@link #intern(StackTraceElement)} returns {@link #UNKNOWN} and callers fall back to
+ * formatted stack traces.
+ */
+public final class FrameDictionary {
+    static final int MAX_FRAMES = 8192;
+    static final int UNKNOWN = -1;
+
+    private static final Map<StackTraceElement, Integer> ids = new HashMap<>();
+    private static final List<String> frames = new ArrayList<>();
+    private static int limit = MAX_FRAMES;
+
+    private FrameDictionary() {
+    }
+
+    /**
+     * @param element Stack frame to intern
+     * @return Id of the frame, or {@link #UNKNOWN} if the dictionary is full
+     */
+    public static synchronized int intern(@NonNull StackTraceElement element) {
+        Integer id = ids.get(element);
+        if (id != null) {
+            return id;
+        }
+        if (frames.size() >= limit) {
+            return UNKNOWN;
+        }
+        int newId = frames.size();
+        frames.add(format(element));
+        ids.put(element, newId);
+        return newId;
+    }
+
+    /**
+     * Intern the innermost frames of a stack trace
+     * @param stackTrace Stack trace, innermost frame first
+     * @param maxFrames Maximum number of frames to intern
+     * @return Frame ids in stack order, or null if the dictionary is full
+     */
+    @Nullable
+    public static synchronized int[] intern(@NonNull StackTraceElement[] stackTrace, int maxFrames) {
+        int[] frameIds = new int[Math.min(stackTrace.length, maxFrames)];
+        for (int i = 0; i < frameIds.length; i++) {
+            frameIds[i] = intern(stackTrace[i]);
+            if (frameIds[i] == UNKNOWN) {
+                return null;
+            }
+        }
+        return frameIds;
+    }
+
+    /**
+     * Limit the number of frames the dictionary grows to. Frames already interned are kept, as
+     * receivers refer to them by id.
+     * @param maxFrames Maximum number of frames, at most {@link #MAX_FRAMES}
+     */
+    public static synchronized void setLimit(int maxFrames) {
+        limit = Math.max(0, Math.min(MAX_FRAMES, maxFrames));
+    }
+
+    public static synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * Copy the formatted frames with ids from fromId up to {@link #size()}, in id order. The id of
+     * the first frame is returned along with them, as frames interned meanwhile change the size.
+     * @param fromId First id to copy
+     * @param out List the frames are added to
+     * @return Id of the first frame added
+     */
+    public static synchronized int framesFrom(int fromId, @NonNull List<String> out) {
+        int start = Math.max(0, Math.min(fromId, frames.size()));
+        out.addAll(frames.subList(start, frames.size()));
+        return start;
+    }
+
+    static synchronized void clear() {
+        ids.clear();
+        frames.clear();
+    }
+
+    /**
+     * @return The frame formatted as {@code class.method(file:line)}
+     */
+    @NonNull
+    static String format(@NonNull StackTraceElement element) {
+        return element.getClassName() + "." + element.getMethodName()
+                + "(" + element.getFileName() + ":" + element.getLineNumber() + ")";
+    }
+}
@@ -0,0 +1,132 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed-memory log-linear histogram of frame durations, in the style of HdrHistogram.
+ * Values below {@code 2^SUB_BUCKET_BITS} microseconds get their own bucket; above that, every
+ * power of two is split into {@code 2^(SUB_BUCKET_BITS - 1)} linear buckets, which bounds the
+ * relative error of any reported percentile to about 6%. Recording is O(1) and never allocates.
+ */
+public class FrameHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+    static final long MAX_VALUE_MICROS = 60_000_000L;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private final long[] counts = new long[bucketIndex(MAX_VALUE_MICROS) + 1];
+    private long totalCount = 0;
+    private long maxValue = 0;
+
+    /**
+     * Record one frame duration. Values above {@link #MAX_VALUE_MICROS} are clamped.
+     * @param valueMicros Frame duration, in microseconds
+     */
+    public synchronized void record(long valueMicros) {
+        long value = Math.max(0, Math.min(MAX_VALUE_MICROS, valueMicros));
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @param percentile Percentile in the range [0, 100]
+     * @return Highest value equivalent to the given percentile, or 0 if nothing was recorded
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(maxValue, bucketUpperBound(i) - 1);
+            }
+        }
+        return maxValue;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    /**
+     * Export the percentiles and non-empty buckets recorded since the previous call, then reset
+     * @return Map with count, p50, p90, p99 and max in microseconds, plus the exclusive upper
+     *     bound and count of each non-empty bucket
+     */
+    @NonNull
+    public synchronized Map<String, Object> snapshotAndReset() {
+        int nonEmpty = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                nonEmpty++;
+            }
+        }
+        long[] upperBounds = new long[nonEmpty];
+        long[] bucketCounts = new long[nonEmpty];
+        int next = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                upperBounds[next] = bucketUpperBound(i);
+                bucketCounts[next] = counts[i];
+                next++;
+            }
+        }
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("count", totalCount);
+        snapshot.put("p50", getValueAtPercentile(50));
+        snapshot.put("p90", getValueAtPercentile(90));
+        snapshot.put("p99", getValueAtPercentile(99));
+        snapshot.put("max", maxValue);
+        snapshot.put("bucketUpperBounds", upperBounds);
+        snapshot.put("bucketCounts", bucketCounts);
+        reset();
+        return snapshot;
+    }
+
+    /**
+     * @param value Non-negative value
+     * @return Index of the bucket holding the value
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index Bucket index
+     * @return Smallest value that is not part of the bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_HALF_COUNT;
+        return (subBucket + 1) << shift;
+    }
+}
@@ -0,0 +1,150 @@
+package com.grafana.faro;
+
+import android.view.Display;
+import android.view.View;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.metrics.performance.FrameData;
+import androidx.metrics.performance.JankStats;
+
+import io.flutter.Log;
+
+/**
+ * FrameTimingMonitor continuously measures every frame drawn by the activity window.
+ * It relies on JankStats, which uses FrameMetrics on API 24+ and Choreographer before that,
+ * so frames are only reported when something is actually drawn and an idle app costs nothing.
+ * Slow frames are judged against the frame budget of the window's display, so 90/120 Hz
+ * devices are not measured against a 60 Hz deadline. Frozen frames are checked against the
+ * {@link GcMonitor}, if any, to count those a blocking garbage collection overlapped.
+ *
+ * <p>Only the draws of the window's view hierarchy are measured. A FlutterView in its default
+ * SurfaceView render mode draws Flutter frames on a separate surface, which FrameMetrics does not
+ * see, so the frames measured then are those of the native views and far fewer than Flutter draws;
+ * Flutter's own frame timings are only available from Dart. The TextureView render mode draws
+ * Flutter frames through the view hierarchy, where they are measured.
+ */
+public class FrameTimingMonitor {
+    private static final String TAG = "FrameTimingMonitor";
+    static final long FROZEN_FRAME_NANOS = 100_000_000L;
+    static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final long NANOSECONDS_IN_SECOND = 1_000_000_000L;
+    // The display refresh rate can change at runtime (e.g. adaptive refresh rate)
+    private static final int REFRESH_RATE_CHECK_FRAMES = 120;
+
+    private final EventAggregator eventAggregator;
+    private final @Nullable GcMonitor gcMonitor;
+    private final FrameHistogram histogram = new FrameHistogram();
+    private @Nullable JankStats jankStats;
+    private volatile @Nullable Display display;
+    private volatile long frameBudgetNanos = frameBudgetNanos(DEFAULT_REFRESH_RATE);
+    private int framesSinceRefreshRateCheck = 0;
+
+    public FrameTimingMonitor(@NonNull EventAggregator eventAggregator) {
+        this(eventAggregator, null);
+    }
+
+    public FrameTimingMonitor(@NonNull EventAggregator eventAggregator, @Nullable GcMonitor gcMonitor) {
+        this.eventAggregator = eventAggregator;
+        this.gcMonitor = gcMonitor;
+    }
+
+    /**
+     * Start tracking the frames of a window. Calling this while already running has no effect.
+     * @param window The activity window to track
+     */
+    public synchronized void start(@NonNull Window window) {
+        if (jankStats != null) {
+            return;
+        }
+        display = findDisplay(window);
+        updateFrameBudget();
+        try {
+            jankStats = JankStats.createAndTrack(window, this::onFrame);
+            Log.d(TAG, "Frame tracking started, frame budget " + frameBudgetNanos + "ns");
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting frame tracking", e);
+        }
+    }
+
+    /**
+     * Stop tracking frames
+     */
+    public synchronized void stop() {
+        if (jankStats != null) {
+            jankStats.setTrackingEnabled(false);
+            jankStats = null;
+            Log.d(TAG, "Frame tracking stopped");
+        }
+        display = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return jankStats != null;
+    }
+
+    private void onFrame(@NonNull FrameData frameData) {
+        if (++framesSinceRefreshRateCheck >= REFRESH_RATE_CHECK_FRAMES) {
+            framesSinceRefreshRateCheck = 0;
+            updateFrameBudget();
+        }
+        recordFrame(frameData.getFrameStartNanos(), frameData.getFrameDurationUiNanos());
+    }
+
+    /**
+     * Record one frame against the current frame budget
+     * @param startNanos {@link System#nanoTime()} at the start of the frame
+     * @param durationNanos Frame duration, in nanoseconds
+     */
+    void recordFrame(long startNanos, long durationNanos) {
+        boolean frozen = durationNanos > FROZEN_FRAME_NANOS;
+        eventAggregator.recordFrame(durationNanos, frameBudgetNanos, frozen);
+        histogram.record(durationNanos / 1000);
+        if (frozen && gcMonitor != null && gcMonitor.isBlockingGcDuring(startNanos, System.nanoTime())) {
+            eventAggregator.recordFrozenFrameWithBlockingGc();
+        }
+    }
+
+    /**
+     * @return Distribution of the frame durations recorded since the histogram was last read
+     */
+    @NonNull
+    public FrameHistogram getHistogram() {
+        return histogram;
+    }
+
+    void setRefreshRate(float refreshRate) {
+        frameBudgetNanos = frameBudgetNanos(refreshRate);
+    }
+
+    private void updateFrameBudget() {
+        Display current = display;
+        setRefreshRate(current != null ? current.getRefreshRate() : DEFAULT_REFRESH_RATE);
+    }
+
+    /**
+     * @param refreshRate Display refresh rate, in Hz
+     * @return Time available to draw one frame, in nanoseconds
+     */
+    static long frameBudgetNanos(float refreshRate) {
+        float rate = refreshRate >= 1f ? refreshRate : DEFAULT_REFRESH_RATE;
+        return (long) (NANOSECONDS_IN_SECOND / rate);
+    }
+
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private static Display findDisplay(@NonNull Window window) {
+        try {
+            View decorView = window.getDecorView();
+            Display decorDisplay = decorView != null ? decorView.getDisplay() : null;
+            if (decorDisplay != null) {
+                return decorDisplay;
+            }
+            return window.getWindowManager().getDefaultDisplay();
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting window display", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.grafana.faro;
+
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * GcMonitor measures ART garbage collection from the cumulative counters of
+ * {@link Debug#getRuntimeStat(String)}, available on API 23+. Every interval, on the
+ * {@link NativeScheduler} thread, it records the collections, the time spent in them, the blocking
+ * ones and the bytes allocated and freed since the previous read to the {@link EventAggregator}.
+ *
+ * <p>It also tells whether a blocking collection overlapped a frozen frame. The blocking counters
+ * are read when the frame ends and compared with the previous read: if the blocking time since
+ * then is longer than the gap between that read and the frame start, part of it had to fall
+ * within the frame. A collection that may have ended before the frame started is not counted.
+ */
+public class GcMonitor {
+    private static final String TAG = "GcMonitor";
+    static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    // Cumulative counters, see Debug#getRuntimeStat
+    static final int GC_COUNT = 0;
+    static final int GC_TIME_MS = 1;
+    static final int BLOCKING_GC_COUNT = 2;
+    static final int BLOCKING_GC_TIME_MS = 3;
+    static final int BYTES_ALLOCATED = 4;
+    static final int BYTES_FREED = 5;
+    private static final String[] STATS = {
+            "art.gc.gc-count",
+            "art.gc.gc-time",
+            "art.gc.blocking-gc-count",
+            "art.gc.blocking-gc-time",
+            "art.gc.bytes-allocated",
+            "art.gc.bytes-freed",
+    };
+
+    /**
+     * Source of the runtime statistics, {@link Debug#getRuntimeStat(String)} outside of tests
+     */
+    interface RuntimeStats {
+        @Nullable
+        String get(@NonNull String name);
+    }
+
+    private final EventAggregator eventAggregator;
+    private final NativeScheduler scheduler;
+    private final RuntimeStats runtimeStats;
+    private final boolean isSupported;
+    private @Nullable NativeScheduler.Timer pollTimer;
+
+    private final long[] current = new long[STATS.length];
+    private final long[] last = new long[STATS.length];
+    private long lastPollNanos = -1;
+
+    // Blocking counters at the previous read, by a poll or a frozen frame
+    private long blockingCount = -1;
+    private long blockingTimeMs = -1;
+    private long blockingReadNanos = -1;
+
+    public GcMonitor(@NonNull EventAggregator eventAggregator) {
+        this(eventAggregator, NativeScheduler.getInstance(),
+                isSupported() ? debugRuntimeStats() : name -> null, isSupported());
+    }
+
+    /**
+     * @param isSupported Whether the runtime statistics are available, see {@link #isSupported()}
+     */
+    GcMonitor(@NonNull EventAggregator eventAggregator, @NonNull NativeScheduler scheduler,
+              @NonNull RuntimeStats runtimeStats, boolean isSupported) {
+        this.eventAggregator = eventAggregator;
+        this.scheduler = scheduler;
+        this.runtimeStats = runtimeStats;
+        this.isSupported = isSupported;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    @NonNull
+    private static RuntimeStats debugRuntimeStats() {
+        return Debug::getRuntimeStat;
+    }
+
+    /**
+     * @return Whether the runtime statistics are available on this device
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    public synchronized boolean isRunning() {
+        return pollTimer != null;
+    }
+
+    /**
+     * Start polling. The first poll only records a baseline.
+     */
+    public synchronized void start() {
+        if (pollTimer != null || !isSupported) {
+            return;
+        }
+        lastPollNanos = -1;
+        pollTimer = scheduler.schedulePeriodic(() -> poll(System.nanoTime()), DEFAULT_INTERVAL_MS);
+        Log.d(TAG, "GC monitoring started");
+    }
+
+    /**
+     * Stop polling. Time spent stopped is not part of any interval.
+     */
+    public synchronized void stop() {
+        if (pollTimer != null) {
+            scheduler.cancel(pollTimer);
+            pollTimer = null;
+            Log.d(TAG, "GC monitoring stopped");
+        }
+    }
+
+    /**
+     * Record the activity since the previous poll. Runs on the scheduler thread.
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return false if the statistics are unavailable
+     */
+    synchronized boolean poll(long nowNanos) {
+        for (int i = 0; i < STATS.length; i++) {
+            current[i] = read(STATS[i]);
+            if (current[i] < 0) {
+                return false;
+            }
+        }
+        if (lastPollNanos >= 0 && nowNanos > lastPollNanos) {
+            eventAggregator.recordGc(
+                    (nowNanos - lastPollNanos) / 1_000_000L,
+                    (int) delta(GC_COUNT),
+                    delta(GC_TIME_MS),
+                    (int) delta(BLOCKING_GC_COUNT),
+                    delta(BLOCKING_GC_TIME_MS),
+                    delta(BYTES_ALLOCATED),
+                    delta(BYTES_FREED));
+        }
+        System.arraycopy(current, 0, last, 0, STATS.length);
+        lastPollNanos = nowNanos;
+        blockingCount = current[BLOCKING_GC_COUNT];
+        blockingTimeMs = current[BLOCKING_GC_TIME_MS];
+        blockingReadNanos = nowNanos;
+        return true;
+    }
+
+    /**
+     * Check whether a blocking collection overlapped a frame that just ended. Runs on the main thread.
+     * @param frameStartNanos {@link System#nanoTime()} at the start of the frame
+     * @param nowNanos Current {@link System#nanoTime()}, at the end of the frame
+     * @return Whether part of a blocking collection certainly happened during the frame
+     */
+    synchronized boolean isBlockingGcDuring(long frameStartNanos, long nowNanos) {
+        if (pollTimer == null) {
+            return false;
+        }
+        long count = read(STATS[BLOCKING_GC_COUNT]);
+        long timeMs = read(STATS[BLOCKING_GC_TIME_MS]);
+        if (count < 0 || timeMs < 0) {
+            return false;
+        }
+        boolean overlapped = false;
+        if (blockingReadNanos >= 0 && count > blockingCount) {
+            long gapNanos = frameStartNanos - blockingReadNanos;
+            overlapped = (timeMs - blockingTimeMs) * 1_000_000L > gapNanos;
+        }
+        blockingCount = count;
+        blockingTimeMs = timeMs;
+        blockingReadNanos = nowNanos;
+        return overlapped;
+    }
+
+    private long delta(int stat) {
+        return Math.max(0, current[stat] - last[stat]);
+    }
+
+    private long read(@NonNull String name) {
+        String value = runtimeStats.get(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
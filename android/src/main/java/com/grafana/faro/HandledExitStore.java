@@ -0,0 +1,205 @@
+package com.grafana.faro;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Remembers which application exits have already been reported, identified by timestamp and pid.
+ *
+ * <p>The system only returns its most recent exits, so once an exit is older than every exit it
+ * returns, it can never come back. Everything below that high-water mark counts as handled, and only
+ * the exits at or above it are kept, as (timestamp, pid) pairs in sorted primitive arrays. The store
+ * therefore stays as small as one system query and lookups are binary searches.
+ *
+ * <p>File format (little-endian): {@code magic | version | high-water mark (8) | count | count x
+ * (timestamp (8) | pid (4))}. Saving writes a temporary file that atomically replaces the store.
+ */
+public class HandledExitStore {
+    private static final String TAG = "HandledExitStore";
+    static final String FILE_NAME = "faro_handled_exits";
+    static final int MAGIC = 0x46415258; // "FARX"
+    static final int VERSION = 1;
+    static final int MAX_ENTRIES = 64;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int ENTRY_BYTES = 8 + 4;
+
+    private final File file;
+    private boolean isLoaded = false;
+    private boolean exists = false;
+    private boolean isDirty = false;
+    private long highWaterMark = Long.MIN_VALUE;
+    private final long[] timestamps = new long[MAX_ENTRIES];
+    private final int[] pids = new int[MAX_ENTRIES];
+    private int size = 0;
+
+    /**
+     * @param file Store file, created on the first save
+     */
+    public HandledExitStore(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return Whether the store was ever saved
+     */
+    public synchronized boolean exists() {
+        load();
+        return exists;
+    }
+
+    public synchronized boolean isHandled(long timestamp, int pid) {
+        load();
+        return timestamp < highWaterMark || indexOf(timestamp, pid) >= 0;
+    }
+
+    /**
+     * Record an exit as handled. When the store is full, the high-water mark moves past the oldest exit.
+     */
+    public synchronized void markHandled(long timestamp, int pid) {
+        load();
+        if (isHandled(timestamp, pid)) {
+            return;
+        }
+        if (size == MAX_ENTRIES) {
+            // Move the high-water mark past the oldest exit kept, or past this one if it is older
+            advanceTo(Math.min(timestamps[0], timestamp) + 1);
+            if (timestamp < highWaterMark) {
+                return;
+            }
+        }
+        int insertion = -indexOf(timestamp, pid) - 1;
+        System.arraycopy(timestamps, insertion, timestamps, insertion + 1, size - insertion);
+        System.arraycopy(pids, insertion, pids, insertion + 1, size - insertion);
+        timestamps[insertion] = timestamp;
+        pids[insertion] = pid;
+        size++;
+        isDirty = true;
+    }
+
+    /**
+     * Count every exit older than the given timestamp as handled and forget the exits kept below it
+     */
+    public synchronized void advanceTo(long timestamp) {
+        load();
+        if (timestamp <= highWaterMark) {
+            return;
+        }
+        highWaterMark = timestamp;
+        int drop = 0;
+        while (drop < size && timestamps[drop] < timestamp) {
+            drop++;
+        }
+        System.arraycopy(timestamps, drop, timestamps, 0, size - drop);
+        System.arraycopy(pids, drop, pids, 0, size - drop);
+        size -= drop;
+        isDirty = true;
+    }
+
+    /**
+     * Persist the store, if it changed since it was loaded or last saved
+     * @return Whether the store is persisted
+     */
+    public synchronized boolean save() {
+        if (!isDirty) {
+            return true;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + size * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(highWaterMark).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(timestamps[i]).putInt(pids[i]);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(buffer.array());
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing handled exits", e);
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Error replacing handled exits");
+            temp.delete();
+            return false;
+        }
+        exists = true;
+        isDirty = false;
+        return true;
+    }
+
+    synchronized long getHighWaterMark() {
+        load();
+        return highWaterMark;
+    }
+
+    synchronized int size() {
+        load();
+        return size;
+    }
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        exists = true;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length < HEADER_BYTES || length > HEADER_BYTES + (long) MAX_ENTRIES * ENTRY_BYTES) {
+                Log.w(TAG, "Ignoring handled exits file of unexpected size " + length);
+                return;
+            }
+            byte[] data = new byte[(int) length];
+            in.readFully(data);
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int count = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || count < 0 || length != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+                Log.w(TAG, "Ignoring corrupted handled exits file");
+                return;
+            }
+            highWaterMark = buffer.getLong(8);
+            buffer.position(HEADER_BYTES);
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = buffer.getLong();
+                pids[i] = buffer.getInt();
+            }
+            size = count;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading handled exits", e);
+        }
+    }
+
+    /**
+     * @return Index of the entry, or (-(insertion point) - 1) if it is not kept
+     */
+    private int indexOf(long timestamp, int pid) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = timestamps[middle] != timestamp
+                    ? Long.compare(timestamps[middle], timestamp)
+                    : Integer.compare(pids[middle], pid);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
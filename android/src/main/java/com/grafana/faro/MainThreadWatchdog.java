@@ -0,0 +1,328 @@
+package com.grafana.faro;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Printer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MainThreadWatchdog detects main thread stalls from the main Looper's message logging hook
+ * instead of polling. The Looper reports the start and end of every dispatched message, and a
+ * single deadline is armed on the {@link NativeScheduler} thread while a message is executing. Once the main
+ * thread is idle the deadline is not re-armed, so an idle app causes no wakeups at all.
+ *
+ * <p>A message crossing one of the stall thresholds is counted as a stall of that level; a
+ * message running longer than {@link ANRTracker#TIMEOUT} is also reported as an ANR.
+ *
+ * <p>Once a message crosses the first stall threshold, the main thread stack is sampled at a fixed
+ * interval into a {@link StallProfiler} until the message completes, and the resulting call tree
+ * is attached to the ANR if the stall turns into one. Nothing is sampled outside of stalls.
+ *
+ * <p>The Looper only has one message logging slot, and it formats a string for each message
+ * while a printer is installed. {@link #start()} replaces any printer installed by the app or
+ * another library, and a printer installed after it disables the watchdog. As the Looper cannot
+ * tell which printer is installed, {@link #stop()} leaves the slot alone and the watchdog removes
+ * itself on the next message only if it still receives it, so a printer installed since is kept.
+ */
+public class MainThreadWatchdog implements Printer {
+    private static final String TAG = "MainThreadWatchdog";
+    static final long[] DEFAULT_STALL_THRESHOLDS_MS = {200L, 1000L, 5000L};
+    static final int MAX_STALL_THRESHOLDS = EventAggregator.MAX_STALL_THRESHOLDS;
+    static final long DEFAULT_SAMPLING_INTERVAL_MS = 50L;
+    private static final long IDLE = -1L;
+
+    /**
+     * The main Looper's message logging slot
+     */
+    interface MessageLogging {
+        void setPrinter(@Nullable Printer printer);
+    }
+
+    private final EventAggregator eventAggregator;
+    private final long[] stallThresholdsMs;
+    private final long samplingIntervalMs;
+    private final @Nullable Thread mainThread;
+    private final AtomicBoolean isArmed = new AtomicBoolean(false);
+    private final Runnable checkTask = () -> check(SystemClock.uptimeMillis());
+    private final Runnable sampleTask = this::sample;
+    private final NativeScheduler scheduler;
+    private final MessageLogging messageLogging;
+    private @Nullable Handler watchdogHandler;
+    // Set when stopped while the printer may still be installed; it is removed on the next message
+    private volatile boolean isRemovalPending = false;
+
+    // Written on the main thread only
+    private volatile long dispatchStartMs = IDLE;
+    private volatile int dispatchSequence = 0;
+
+    // Accessed on the scheduler thread only
+    private int checkedSequence = -1;
+    private int reportedStalls = 0;
+    private boolean isAnrReported = false;
+    private final StallProfiler profiler = new StallProfiler();
+    private int profiledSequence = -1;
+
+    /**
+     * @param eventAggregator Aggregator stalls and ANRs are recorded to
+     * @param stallThresholdsMs Stall thresholds, in milliseconds. At most
+     *     {@link #MAX_STALL_THRESHOLDS} are used; an empty array only reports ANRs.
+     * @param samplingIntervalMs Interval between main thread stack samples during a stall,
+     *     in milliseconds, or 0 to disable sampling
+     */
+    public MainThreadWatchdog(
+            @NonNull EventAggregator eventAggregator,
+            @NonNull long[] stallThresholdsMs,
+            long samplingIntervalMs) {
+        this(eventAggregator, stallThresholdsMs, samplingIntervalMs, Looper.getMainLooper().getThread());
+    }
+
+    MainThreadWatchdog(
+            @NonNull EventAggregator eventAggregator,
+            @NonNull long[] stallThresholdsMs,
+            long samplingIntervalMs,
+            @Nullable Thread mainThread) {
+        this(eventAggregator, stallThresholdsMs, samplingIntervalMs, mainThread, NativeScheduler.getInstance());
+    }
+
+    MainThreadWatchdog(
+            @NonNull EventAggregator eventAggregator,
+            @NonNull long[] stallThresholdsMs,
+            long samplingIntervalMs,
+            @Nullable Thread mainThread,
+            @NonNull NativeScheduler scheduler) {
+        this(eventAggregator, stallThresholdsMs, samplingIntervalMs, mainThread, scheduler,
+                printer -> Looper.getMainLooper().setMessageLogging(printer));
+    }
+
+    MainThreadWatchdog(
+            @NonNull EventAggregator eventAggregator,
+            @NonNull long[] stallThresholdsMs,
+            long samplingIntervalMs,
+            @Nullable Thread mainThread,
+            @NonNull NativeScheduler scheduler,
+            @NonNull MessageLogging messageLogging) {
+        this.scheduler = scheduler;
+        this.messageLogging = messageLogging;
+        this.eventAggregator = eventAggregator;
+        this.stallThresholdsMs = normalize(stallThresholdsMs);
+        this.samplingIntervalMs = Math.max(0, samplingIntervalMs);
+        this.mainThread = mainThread;
+        eventAggregator.setStallThresholds(this.stallThresholdsMs);
+    }
+
+    /**
+     * Install the message logging hook on the main Looper, replacing any printer already installed.
+     * Calling this while running has no effect.
+     */
+    public synchronized void start() {
+        if (watchdogHandler != null) {
+            return;
+        }
+        watchdogHandler = scheduler.getHandler();
+        dispatchStartMs = IDLE;
+        isArmed.set(false);
+        isRemovalPending = false;
+        messageLogging.setPrinter(this);
+        Log.d(TAG, "Watchdog started, stall thresholds " + Arrays.toString(stallThresholdsMs) + "ms");
+    }
+
+    /**
+     * Remove the pending checks. The message logging hook is removed on the next message, unless
+     * another printer was installed since.
+     */
+    public synchronized void stop() {
+        if (watchdogHandler == null) {
+            return;
+        }
+        isRemovalPending = true;
+        watchdogHandler.removeCallbacks(checkTask);
+        watchdogHandler.removeCallbacks(sampleTask);
+        watchdogHandler = null;
+        Log.d(TAG, "Watchdog stopped");
+    }
+
+    public synchronized boolean isRunning() {
+        return watchdogHandler != null;
+    }
+
+    /**
+     * Called by the main Looper before and after each dispatched message
+     */
+    @Override
+    public void println(String x) {
+        if (x == null || x.isEmpty()) {
+            return;
+        }
+        if (isRemovalPending) {
+            removePrinter();
+            return;
+        }
+        char marker = x.charAt(0);
+        if (marker == '>') {
+            onDispatchStart(SystemClock.uptimeMillis());
+        } else if (marker == '<') {
+            onDispatchEnd();
+        }
+    }
+
+    /**
+     * Called from the printer, so it is still the one installed
+     */
+    private synchronized void removePrinter() {
+        // Restarted in the meantime
+        if (!isRemovalPending) {
+            return;
+        }
+        isRemovalPending = false;
+        dispatchStartMs = IDLE;
+        messageLogging.setPrinter(null);
+    }
+
+    void onDispatchStart(long nowMs) {
+        dispatchStartMs = nowMs;
+        dispatchSequence++;
+        // Only the first message after an idle period arms the deadline; while it is armed,
+        // the watchdog re-arms itself for whichever message is running when it fires
+        if (isArmed.compareAndSet(false, true)) {
+            arm(nowMs + firstDeadlineMs());
+        }
+    }
+
+    void onDispatchEnd() {
+        dispatchStartMs = IDLE;
+    }
+
+    /**
+     * Check the running message against the thresholds it has not crossed yet
+     * @param nowMs Current uptime, in milliseconds
+     * @return Uptime at which the next check is due, or -1 if the deadline was disarmed
+     */
+    long check(long nowMs) {
+        isArmed.set(false);
+        long startMs = dispatchStartMs;
+        int sequence = dispatchSequence;
+        if (startMs == IDLE) {
+            return -1;
+        }
+        if (sequence != checkedSequence) {
+            checkedSequence = sequence;
+            reportedStalls = 0;
+            isAnrReported = false;
+        }
+        long elapsedMs = nowMs - startMs;
+        while (reportedStalls < stallThresholdsMs.length && elapsedMs >= stallThresholdsMs[reportedStalls]) {
+            eventAggregator.recordStall(reportedStalls);
+            reportedStalls++;
+        }
+        if (reportedStalls > 0 && profiledSequence != sequence) {
+            startProfiling(sequence);
+        }
+        if (!isAnrReported && elapsedMs >= ANRTracker.TIMEOUT) {
+            isAnrReported = true;
+            reportAnr(sequence, elapsedMs);
+        }
+        long nextDeadlineMs = Long.MAX_VALUE;
+        if (reportedStalls < stallThresholdsMs.length) {
+            nextDeadlineMs = startMs + stallThresholdsMs[reportedStalls];
+        }
+        if (!isAnrReported) {
+            nextDeadlineMs = Math.min(nextDeadlineMs, startMs + ANRTracker.TIMEOUT);
+        }
+        if (nextDeadlineMs == Long.MAX_VALUE) {
+            // Everything was reported for this message; the next one re-arms the deadline
+            return -1;
+        }
+        if (!isArmed.compareAndSet(false, true)) {
+            // A new message armed its own deadline in the meantime
+            return -1;
+        }
+        arm(nextDeadlineMs);
+        return nextDeadlineMs;
+    }
+
+    private void startProfiling(int sequence) {
+        if (samplingIntervalMs == 0 || mainThread == null) {
+            return;
+        }
+        Handler handler = watchdogHandler;
+        if (handler != null) {
+            // Drop the sampling chain of a previous stall, if it is still pending
+            handler.removeCallbacks(sampleTask);
+        }
+        profiler.reset();
+        profiledSequence = sequence;
+        sample();
+    }
+
+    /**
+     * Take one stack sample of the stalled message and schedule the next one
+     * @return Whether the message is still running and sampling continues
+     */
+    boolean sample() {
+        if (mainThread == null || dispatchStartMs == IDLE || dispatchSequence != profiledSequence) {
+            return false;
+        }
+        profiler.addSample(mainThread.getStackTrace());
+        Handler handler = watchdogHandler;
+        if (handler != null) {
+            handler.postDelayed(sampleTask, samplingIntervalMs);
+        }
+        return true;
+    }
+
+    private void reportAnr(int sequence, long elapsedMs) {
+        if (mainThread == null) {
+            return;
+        }
+        JSONObject profile = null;
+        if (profiledSequence == sequence && profiler.getSampleCount() > 0) {
+            try {
+                profile = profiler.toJson(samplingIntervalMs);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error exporting stall profile", e);
+            }
+        }
+        ANRTracker.reportAnr(mainThread, elapsedMs, profile, eventAggregator);
+    }
+
+    @NonNull
+    StallProfiler getProfiler() {
+        return profiler;
+    }
+
+    private long firstDeadlineMs() {
+        return stallThresholdsMs.length > 0
+                ? Math.min(stallThresholdsMs[0], ANRTracker.TIMEOUT)
+                : ANRTracker.TIMEOUT;
+    }
+
+    private void arm(long deadlineMs) {
+        Handler handler = watchdogHandler;
+        if (handler != null) {
+            handler.postAtTime(checkTask, deadlineMs);
+        }
+    }
+
+    @NonNull
+    private static long[] normalize(@NonNull long[] thresholdsMs) {
+        long[] sorted = thresholdsMs.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (long threshold : sorted) {
+            if (threshold > 0 && (count == 0 || threshold != sorted[count - 1]) && count < MAX_STALL_THRESHOLDS) {
+                sorted[count++] = threshold;
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+}
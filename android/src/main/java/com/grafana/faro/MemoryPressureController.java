@@ -0,0 +1,158 @@
+package com.grafana.faro;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * MemoryPressureController listens to the system memory signals, {@code onTrimMemory} and
+ * {@code onLowMemory}, records each of them with the current RSS to the {@link EventAggregator},
+ * and tells its listener when the app enters or leaves memory pressure, so that the SDK releases
+ * buffers and samples less instead of adding to the pressure that could get the process killed.
+ *
+ * <p>Trim levels map to {@link #PRESSURE_ELEVATED} or {@link #PRESSURE_CRITICAL}; the UI hidden
+ * level is a visibility change rather than pressure and is ignored. The system does not signal
+ * the end of the pressure, so it is considered over once {@link #RELIEF_DELAY_MS} pass without a
+ * new signal.
+ */
+public class MemoryPressureController implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryPressure";
+    static final int PRESSURE_NONE = 0;
+    static final int PRESSURE_ELEVATED = 1;
+    static final int PRESSURE_CRITICAL = 2;
+    static final long RELIEF_DELAY_MS = 60_000L;
+    private static final long RELIEF_TOLERANCE_MS = 5_000L;
+
+    /**
+     * Notified on the thread of the signal, or on the scheduler thread for the relief
+     */
+    interface Listener {
+        void onMemoryPressureChanged(int level);
+    }
+
+    /**
+     * Source of the RSS recorded with each signal, {@link MemoryUsageInfo#readRssKb()} outside of tests
+     */
+    interface RssReader {
+        /**
+         * @return Resident set size of the process, in kB, or -1 if unknown
+         */
+        long readRssKb();
+    }
+
+    private final @Nullable EventAggregator eventAggregator;
+    private final NativeScheduler scheduler;
+    private final Listener listener;
+    private final RssReader rssReader;
+    private int level = PRESSURE_NONE;
+    private @Nullable NativeScheduler.Timer reliefTimer;
+    private final Runnable reliefTask = this::relieve;
+
+    public MemoryPressureController(@Nullable EventAggregator eventAggregator, @NonNull Listener listener) {
+        this(eventAggregator, NativeScheduler.getInstance(), listener, MemoryUsageInfo::readRssKb);
+    }
+
+    MemoryPressureController(@Nullable EventAggregator eventAggregator, @NonNull NativeScheduler scheduler,
+                             @NonNull Listener listener, @NonNull RssReader rssReader) {
+        this.eventAggregator = eventAggregator;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.rssReader = rssReader;
+    }
+
+    @Override
+    public void onTrimMemory(int trimLevel) {
+        int pressure = pressureOf(trimLevel);
+        if (pressure == PRESSURE_NONE) {
+            return;
+        }
+        Log.d(TAG, "Trim memory level " + trimLevel);
+        record(trimLevel);
+        raise(pressure);
+    }
+
+    // Deprecated in favor of onTrimMemory, but ComponentCallbacks still declares it abstract, and the
+    // system still calls it along with its low memory broadcast, so it is handled like a critical trim
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onLowMemory() {
+        Log.d(TAG, "Low memory");
+        record(0);
+        raise(PRESSURE_CRITICAL);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Not needed for our purposes
+    }
+
+    /**
+     * @return The current pressure, one of the PRESSURE_ constants
+     */
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param trimLevel Level passed to onTrimMemory
+     * @return The pressure it signals
+     */
+    @SuppressWarnings("deprecation")
+    static int pressureOf(int trimLevel) {
+        if (trimLevel >= TRIM_MEMORY_COMPLETE || trimLevel == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return PRESSURE_CRITICAL;
+        }
+        if (trimLevel == TRIM_MEMORY_UI_HIDDEN || trimLevel < TRIM_MEMORY_RUNNING_MODERATE) {
+            return PRESSURE_NONE;
+        }
+        // Running moderate or low, or in the background LRU list, where the process may be killed
+        return PRESSURE_ELEVATED;
+    }
+
+    /**
+     * End the pressure. Runs on the scheduler thread once no signal arrived for the relief delay.
+     */
+    void relieve() {
+        synchronized (this) {
+            reliefTimer = null;
+            if (level == PRESSURE_NONE) {
+                return;
+            }
+            level = PRESSURE_NONE;
+        }
+        Log.d(TAG, "Memory pressure relieved");
+        notifyListener(PRESSURE_NONE);
+    }
+
+    private void raise(int pressure) {
+        boolean isChanged;
+        synchronized (this) {
+            scheduler.cancel(reliefTimer);
+            reliefTimer = scheduler.scheduleOnce(reliefTask, RELIEF_DELAY_MS, RELIEF_TOLERANCE_MS);
+            isChanged = pressure > level;
+            if (isChanged) {
+                level = pressure;
+            }
+        }
+        if (isChanged) {
+            notifyListener(pressure);
+        }
+    }
+
+    private void record(int trimLevel) {
+        if (eventAggregator != null) {
+            eventAggregator.recordMemoryPressure(trimLevel, rssReader.readRssKb());
+        }
+    }
+
+    private void notifyListener(int pressure) {
+        try {
+            listener.onMemoryPressureChanged(pressure);
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying memory pressure level " + pressure, e);
+        }
+    }
+}
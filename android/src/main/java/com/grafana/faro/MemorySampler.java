@@ -0,0 +1,222 @@
+package com.grafana.faro;
+
+import android.os.Build;
+import android.os.Debug;
+import android.system.Os;
+import android.system.OsConstants;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MemorySampler reads the memory usage of the process in two tiers, so a Java heap leak, Dart or
+ * native heap growth and graphics buffers can be told apart without paying for a full breakdown
+ * on every sample.
+ *
+ * <p>The cheap tier runs on every sample: the Java heap from {@link Runtime}, the native heap from
+ * {@link Debug#getNativeHeapAllocatedSize()} and the RSS from /proc/self/statm. The expensive tier,
+ * {@link Debug#getMemoryInfo(Debug.MemoryInfo)}, takes several milliseconds as it walks the memory
+ * maps, so it only runs every Nth sample, or as soon as the RSS grew past a threshold since the
+ * previous breakdown. The breakdown with the highest total PSS is kept until the next read.
+ * {@link #sample(long)} and the getters are called from one sampler thread, and
+ * {@link #drainBreakdown()} from any thread.
+ */
+public class MemorySampler {
+    static final int DEFAULT_DETAILED_EVERY = 30;
+    static final long DEFAULT_RSS_JUMP_KB = 32 * 1024L;
+    // Fields of /proc/<pid>/statm, in pages, see proc(5)
+    private static final int STATM_RESIDENT = 1;
+
+    // Breakdown categories, from Debug.MemoryInfo#getMemoryStat
+    static final int JAVA_HEAP = 0;
+    static final int NATIVE_HEAP = 1;
+    static final int GRAPHICS = 2;
+    static final int CODE = 3;
+    static final int STACK = 4;
+    static final int TOTAL_PSS = 5;
+    private static final String[] MEMORY_STATS = {
+            "summary.java-heap",
+            "summary.native-heap",
+            "summary.graphics",
+            "summary.code",
+            "summary.stack",
+            "summary.total-pss",
+    };
+    private static final String[] BREAKDOWN_KEYS = {
+            "javaHeapKb",
+            "nativeHeapKb",
+            "graphicsKb",
+            "codeKb",
+            "stackKb",
+            "totalPssKb",
+    };
+
+    private final ProcStatReader statmReader;
+    private final long pageSizeKb;
+    private final int detailedEvery;
+    private final long rssJumpKb;
+    private final Debug.MemoryInfo memoryInfo = new Debug.MemoryInfo();
+
+    // Cheap tier values of the last sample, in kB, -1 if unavailable
+    private long rssKb = -1;
+    private long javaHeapKb = -1;
+    private long nativeHeapKb = -1;
+
+    private volatile boolean isBreakdownEnabled = true;
+    private int samplesSinceDetailed = 0;
+    private boolean hasBreakdown = false;
+    private long lastDetailedRssKb = -1;
+    private final long[] breakdown = new long[MEMORY_STATS.length];
+    private final long[] peakBreakdown = new long[MEMORY_STATS.length];
+    private long peakTimestampMs = -1;
+    private int periodicCount = 0;
+    private int rssJumpCount = 0;
+
+    public MemorySampler() {
+        this(new File("/proc/self/statm"), pageSizeKb(), DEFAULT_DETAILED_EVERY, DEFAULT_RSS_JUMP_KB);
+    }
+
+    /**
+     * @param statmFile The /proc/self/statm file
+     * @param pageSizeKb Size of a memory page, in kB
+     * @param detailedEvery Number of samples between two breakdowns
+     * @param rssJumpKb RSS growth since the previous breakdown that triggers a new one, in kB
+     */
+    MemorySampler(@NonNull File statmFile, long pageSizeKb, int detailedEvery, long rssJumpKb) {
+        this.statmReader = new ProcStatReader(statmFile, 128);
+        this.pageSizeKb = pageSizeKb;
+        this.detailedEvery = Math.max(1, detailedEvery);
+        this.rssJumpKb = rssJumpKb;
+    }
+
+    /**
+     * Take one sample, with a breakdown if one is due
+     * @param timestampMs Wall clock time of the sample, in milliseconds
+     * @return Whether the expensive tier ran
+     */
+    public boolean sample(long timestampMs) {
+        Runtime runtime = Runtime.getRuntime();
+        javaHeapKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+        nativeHeapKb = Debug.getNativeHeapAllocatedSize() / 1024;
+        long resident = statmReader.refresh() ? statmReader.longAt(STATM_RESIDENT) : -1;
+        rssKb = resident >= 0 ? resident * pageSizeKb : -1;
+
+        samplesSinceDetailed++;
+        boolean isRssJump = rssKb >= 0 && lastDetailedRssKb >= 0 && rssKb - lastDetailedRssKb >= rssJumpKb;
+        // The first sample always takes a breakdown, as the baseline for RSS jumps
+        boolean isPeriodic = !hasBreakdown || samplesSinceDetailed >= detailedEvery;
+        if ((!isRssJump && !isPeriodic) || !isBreakdownEnabled) {
+            return false;
+        }
+        samplesSinceDetailed = 0;
+        hasBreakdown = true;
+        lastDetailedRssKb = rssKb;
+        readBreakdown();
+        synchronized (this) {
+            if (isRssJump) {
+                rssJumpCount++;
+            } else {
+                periodicCount++;
+            }
+            if (peakTimestampMs < 0 || breakdown[TOTAL_PSS] > peakBreakdown[TOTAL_PSS]) {
+                System.arraycopy(breakdown, 0, peakBreakdown, 0, breakdown.length);
+                peakTimestampMs = timestampMs;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Enable or disable the expensive tier, which allocates while it walks the memory maps.
+     * Once enabled again, the breakdown is taken on its usual schedule.
+     */
+    public void setBreakdownEnabled(boolean enabled) {
+        isBreakdownEnabled = enabled;
+    }
+
+    /**
+     * @return RSS of the last sample, in kB, or -1 if /proc/self/statm is unreadable
+     */
+    public long getRssKb() {
+        return rssKb;
+    }
+
+    /**
+     * @return Java heap in use at the last sample, in kB
+     */
+    public long getJavaHeapKb() {
+        return javaHeapKb;
+    }
+
+    /**
+     * @return Native heap allocated at the last sample, in kB
+     */
+    public long getNativeHeapKb() {
+        return nativeHeapKb;
+    }
+
+    /**
+     * Get the breakdown with the highest total PSS since the previous call, and start a new window
+     * @return Map of the PSS per category in kB, -1 when unknown, with the time of the breakdown
+     * and the number of breakdowns taken per trigger, or null if none was taken
+     */
+    @Nullable
+    public synchronized Map<String, Object> drainBreakdown() {
+        if (peakTimestampMs < 0) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < BREAKDOWN_KEYS.length; i++) {
+            result.put(BREAKDOWN_KEYS[i], peakBreakdown[i]);
+        }
+        result.put("timestamp", peakTimestampMs);
+        result.put("periodicCount", periodicCount);
+        result.put("rssJumpCount", rssJumpCount);
+        peakTimestampMs = -1;
+        periodicCount = 0;
+        rssJumpCount = 0;
+        return result;
+    }
+
+    private void readBreakdown() {
+        Debug.getMemoryInfo(memoryInfo);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            for (int i = 0; i < MEMORY_STATS.length; i++) {
+                breakdown[i] = parseKb(memoryInfo.getMemoryStat(MEMORY_STATS[i]));
+            }
+            return;
+        }
+        // Only the Dalvik and native PSS are broken down before Android 6
+        for (int i = 0; i < breakdown.length; i++) {
+            breakdown[i] = -1;
+        }
+        breakdown[JAVA_HEAP] = memoryInfo.dalvikPss;
+        breakdown[NATIVE_HEAP] = memoryInfo.nativePss;
+        breakdown[TOTAL_PSS] = memoryInfo.getTotalPss();
+    }
+
+    private static long parseKb(@Nullable String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long pageSizeKb() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            long pageSize = Os.sysconf(OsConstants._SC_PAGESIZE);
+            if (pageSize >= 1024) {
+                return pageSize / 1024;
+            }
+        }
+        return 4;
+    }
+}
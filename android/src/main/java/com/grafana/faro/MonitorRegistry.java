@@ -0,0 +1,164 @@
+package com.grafana.faro;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MonitorRegistry drives every native monitor (ANR, frames, vitals...) from one foreground/background
+ * state machine, instead of each activity and engine callback starting and stopping them itself.
+ *
+ * <p>States are {@link #STATE_STOPPED}, {@link #STATE_BACKGROUND} and {@link #STATE_FOREGROUND}.
+ * Entering the foreground starts the monitors, going to the background pauses them, and stopping
+ * releases them. Transitions are serialized and idempotent: a transition to the current state,
+ * like the resume that follows a config change reattach, does nothing and is counted as skipped.
+ * The time each transition spends in the monitors is recorded to the {@link EventAggregator}.
+ */
+public class MonitorRegistry {
+    private static final String TAG = "MonitorRegistry";
+    static final int STATE_STOPPED = 0;
+    static final int STATE_BACKGROUND = 1;
+    static final int STATE_FOREGROUND = 2;
+
+    /**
+     * A monitor driven by the registry. Callbacks run on the thread of the transition, one at a time.
+     */
+    interface Monitor {
+        /**
+         * The app entered the foreground
+         */
+        void start();
+
+        /**
+         * The app went to the background; the monitor may be started again
+         */
+        void pause();
+
+        /**
+         * The activity or engine went away
+         */
+        void stop();
+    }
+
+    private final @Nullable EventAggregator eventAggregator;
+    private final List<Monitor> monitors = new ArrayList<>();
+    private volatile int state = STATE_STOPPED;
+
+    /**
+     * @param eventAggregator Aggregator transition latencies are recorded to, if any
+     */
+    public MonitorRegistry(@Nullable EventAggregator eventAggregator) {
+        this.eventAggregator = eventAggregator;
+    }
+
+    /**
+     * Add a monitor, started right away if the app is in the foreground
+     */
+    public synchronized void register(@NonNull Monitor monitor) {
+        if (monitors.contains(monitor)) {
+            return;
+        }
+        monitors.add(monitor);
+        if (state == STATE_FOREGROUND) {
+            start(monitor);
+        }
+    }
+
+    public synchronized void unregister(@NonNull Monitor monitor) {
+        if (monitors.remove(monitor)) {
+            stop(monitor);
+        }
+    }
+
+    /**
+     * Restart a monitor whose configuration changed, if the app is in the foreground
+     */
+    public synchronized void refresh(@NonNull Monitor monitor) {
+        if (state != STATE_FOREGROUND || !monitors.contains(monitor)) {
+            return;
+        }
+        pause(monitor);
+        start(monitor);
+    }
+
+    /**
+     * @return Whether the transition happened, false if the app already was in the foreground
+     */
+    public boolean moveToForeground() {
+        return transitionTo(STATE_FOREGROUND);
+    }
+
+    /**
+     * @return Whether the transition happened, false if the app was not in the foreground
+     */
+    public boolean moveToBackground() {
+        return transitionTo(STATE_BACKGROUND);
+    }
+
+    /**
+     * @return Whether the transition happened, false if the monitors were already stopped
+     */
+    public boolean stopAll() {
+        return transitionTo(STATE_STOPPED);
+    }
+
+    int getState() {
+        return state;
+    }
+
+    private synchronized boolean transitionTo(int target) {
+        // Only a running app can go to the background
+        if (state == target || (target == STATE_BACKGROUND && state == STATE_STOPPED)) {
+            if (eventAggregator != null) {
+                eventAggregator.recordSkippedMonitorTransition();
+            }
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < monitors.size(); i++) {
+            Monitor monitor = monitors.get(i);
+            if (target == STATE_FOREGROUND) {
+                start(monitor);
+            } else if (target == STATE_BACKGROUND) {
+                pause(monitor);
+            } else {
+                stop(monitor);
+            }
+        }
+        state = target;
+        long latencyNanos = System.nanoTime() - startNanos;
+        if (eventAggregator != null) {
+            eventAggregator.recordMonitorTransition(latencyNanos);
+        }
+        Log.d(TAG, "Moved to state " + target + " in " + latencyNanos / 1000 + "us");
+        return true;
+    }
+
+    private static void start(@NonNull Monitor monitor) {
+        try {
+            monitor.start();
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting monitor", e);
+        }
+    }
+
+    private static void pause(@NonNull Monitor monitor) {
+        try {
+            monitor.pause();
+        } catch (Exception e) {
+            Log.e(TAG, "Error pausing monitor", e);
+        }
+    }
+
+    private static void stop(@NonNull Monitor monitor) {
+        try {
+            monitor.stop();
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping monitor", e);
+        }
+    }
+}
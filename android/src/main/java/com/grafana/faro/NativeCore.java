@@ -0,0 +1,438 @@
+package com.grafana.faro;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Process;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.Log;
+import io.flutter.plugin.common.BasicMessageChannel;
+
+/**
+ * NativeCore owns the process-wide native state of the SDK: the monitors and their registry, the
+ * event aggregator, the crash handler and the background executor. Each {@link FaroPlugin} instance,
+ * one per Flutter engine, only subscribes to it, so an app running several engines (add-to-app,
+ * FlutterEngineGroup) measures, samples and buffers everything once, and event batches are sent
+ * to one attached engine, so they are reported once.
+ *
+ * <p>Monitors follow the activities the engines are attached to: they run while one of them is in
+ * the foreground, and frames are measured on the window of the most recently attached one.
+ *
+ * <p>While the system reports memory pressure, pending ANRs and the frame dictionary are trimmed,
+ * exit traces are read with a lower limit, and the vitals are sampled less often.
+ *
+ * <p>The core is created when the first engine attaches the SDK, which is one of the milestones
+ * of the app start along with the first activity, its first resume and its first frame. Later
+ * returns to the foreground are measured as warm or hot starts from the activity lifecycle.
+ */
+public final class NativeCore {
+    private static final String TAG = "NativeCore";
+    private static final int MAX_PENDING_BACKGROUND_TASKS = 16;
+    private static final long BACKGROUND_KEEP_ALIVE_SECONDS = 30L;
+    // Limits applied while under memory pressure
+    private static final int PRESSURE_MAX_PENDING_ANRS = 2;
+    private static final int ELEVATED_PRESSURE_MAX_TRACE_BYTES = 256 * 1024;
+    private static final int CRITICAL_PRESSURE_MAX_TRACE_BYTES = 64 * 1024;
+
+    private static @Nullable NativeCore instance;
+
+    private final Context applicationContext;
+    private final EventAggregator eventAggregator = new EventAggregator();
+    private final AppStartTracker appStartTracker = new AppStartTracker();
+    private final WarmStartTracker warmStartTracker = new WarmStartTracker(eventAggregator);
+    private final GcMonitor gcMonitor = new GcMonitor(eventAggregator);
+    private final FrameTimingMonitor frameTimingMonitor = new FrameTimingMonitor(eventAggregator, gcMonitor);
+    private final VitalsSampler vitalsSampler = new VitalsSampler();
+    private final ThreadCpuSampler threadCpuSampler = new ThreadCpuSampler();
+    private final MonitorRegistry monitorRegistry = new MonitorRegistry(eventAggregator);
+    private final MemoryPressureController memoryPressureController =
+            new MemoryPressureController(eventAggregator, this::applyMemoryPressure);
+    // Single thread for disk-bound calls, which also keeps them in order; it exits when idle
+    private final ThreadPoolExecutor backgroundExecutor = createBackgroundExecutor();
+    private @Nullable ExitInfoHelper exitInfoHelper;
+
+    private int engineCount = 0;
+    private final List<WeakReference<Activity>> activities = new ArrayList<>();
+    private @Nullable Application application;
+    private volatile @Nullable Window window;
+    private @Nullable ANRTracker anrTracker;
+    private volatile @Nullable MainThreadWatchdog mainThreadWatchdog;
+    private volatile boolean isVitalsSamplerEnabled = false;
+    private volatile boolean isThreadCpuSamplerEnabled = false;
+
+    // ANR detection, through the message dispatch watchdog once configured
+    private final MonitorRegistry.Monitor anrMonitor = new MonitorRegistry.Monitor() {
+        @Override
+        public void start() {
+            MainThreadWatchdog watchdog = mainThreadWatchdog;
+            if (watchdog != null) {
+                watchdog.start();
+                return;
+            }
+            // The tracker is a timer on the shared scheduler, so it is kept across resumes
+            if (anrTracker == null) {
+                anrTracker = new ANRTracker(eventAggregator);
+            }
+            anrTracker.start();
+        }
+
+        @Override
+        public void pause() {
+            stop();
+        }
+
+        @Override
+        public void stop() {
+            MainThreadWatchdog watchdog = mainThreadWatchdog;
+            if (watchdog != null) {
+                watchdog.stop();
+            }
+            if (anrTracker != null) {
+                anrTracker.stopTracking();
+            }
+        }
+    };
+
+    private final MonitorRegistry.Monitor frameMonitor = new MonitorRegistry.Monitor() {
+        @Override
+        public void start() {
+            Window currentWindow = window;
+            if (currentWindow != null) {
+                frameTimingMonitor.start(currentWindow);
+            }
+        }
+
+        @Override
+        public void pause() {
+            stop();
+        }
+
+        @Override
+        public void stop() {
+            // Frames already counted are still sent with the next batch
+            frameTimingMonitor.stop();
+        }
+    };
+
+    // Garbage collections, polled while the frames they may freeze are measured
+    private final MonitorRegistry.Monitor garbageCollectionMonitor = new MonitorRegistry.Monitor() {
+        @Override
+        public void start() {
+            gcMonitor.start();
+        }
+
+        @Override
+        public void pause() {
+            stop();
+        }
+
+        @Override
+        public void stop() {
+            gcMonitor.stop();
+        }
+    };
+
+    private final MonitorRegistry.Monitor vitalsMonitor = new MonitorRegistry.Monitor() {
+        @Override
+        public void start() {
+            if (isVitalsSamplerEnabled) {
+                vitalsSampler.start();
+            }
+            // Scanning every thread is skipped while memory is critical
+            if (isThreadCpuSamplerEnabled
+                    && memoryPressureController.getLevel() < MemoryPressureController.PRESSURE_CRITICAL) {
+                threadCpuSampler.start();
+            }
+        }
+
+        @Override
+        public void pause() {
+            stop();
+        }
+
+        @Override
+        public void stop() {
+            vitalsSampler.stop();
+            threadCpuSampler.stop();
+        }
+    };
+
+    private final Application.ActivityLifecycleCallbacks activityLifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            warmStartTracker.onActivityCreated();
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            warmStartTracker.onActivityStarted();
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            Log.d(TAG, "Activity resumed (foreground)");
+            appStartTracker.onActivityResumed();
+            warmStartTracker.onActivityResumed(activity);
+            monitorRegistry.moveToForeground();
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            Log.d(TAG, "Activity paused (background)");
+            monitorRegistry.moveToBackground();
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            warmStartTracker.onActivityStopped(activity);
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            // Not needed for our purposes
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            // Not needed for our purposes
+        }
+    };
+
+    private NativeCore(@NonNull Context applicationContext) {
+        this.applicationContext = applicationContext;
+        appStartTracker.onPluginAttached();
+        monitorRegistry.register(anrMonitor);
+        monitorRegistry.register(frameMonitor);
+        monitorRegistry.register(garbageCollectionMonitor);
+        monitorRegistry.register(vitalsMonitor);
+        // Events produced while no engine is attached are spooled until the next start
+        eventAggregator.setSpool(TelemetrySpool.getInstance(applicationContext));
+        ANRTracker.setSpool(TelemetrySpool.getInstance(applicationContext));
+        // Installed once per process, so engines do not chain handlers
+        new ExceptionHandler(CrashJournal.getInstance(applicationContext)).install(backgroundExecutor);
+        applicationContext.registerComponentCallbacks(memoryPressureController);
+    }
+
+    /**
+     * @return The process-wide core, created and its crash handler installed on first use
+     */
+    @NonNull
+    public static synchronized NativeCore getInstance(@NonNull Context context) {
+        if (instance == null) {
+            Context applicationContext = context.getApplicationContext();
+            instance = new NativeCore(applicationContext != null ? applicationContext : context);
+        }
+        return instance;
+    }
+
+    /**
+     * Subscribe an engine to event batches
+     */
+    public synchronized void attachEngine(@NonNull BasicMessageChannel<ByteBuffer> eventChannel) {
+        engineCount++;
+        eventAggregator.addChannel(eventChannel);
+        ANRTracker.setSpool(null);
+    }
+
+    /**
+     * Unsubscribe an engine. Once no engine is left, events are spooled for the next start.
+     */
+    public synchronized void detachEngine(@NonNull BasicMessageChannel<ByteBuffer> eventChannel) {
+        eventAggregator.removeChannel(eventChannel);
+        engineCount = Math.max(0, engineCount - 1);
+        if (engineCount == 0) {
+            ANRTracker.setSpool(TelemetrySpool.getInstance(applicationContext));
+        }
+    }
+
+    /**
+     * An engine was attached to an activity, which is visible to the user
+     */
+    public synchronized void attachActivity(@NonNull Activity activity) {
+        activities.add(new WeakReference<>(activity));
+        Application activityApplication = activity.getApplication();
+        if (application == null && activityApplication != null) {
+            // The activity was created before the callbacks were registered
+            warmStartTracker.onActivityCreated();
+            // The callbacks are application-wide, so they are registered once for all engines
+            application = activityApplication;
+            application.registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
+        }
+        Window activityWindow = activity.getWindow();
+        appStartTracker.onActivityAttached(activityWindow);
+        updateWindow(activityWindow);
+        monitorRegistry.moveToForeground();
+    }
+
+    /**
+     * An engine was detached from its activity
+     * @param isConfigChange Whether the activity is being recreated and the engine reattached
+     */
+    public synchronized void detachActivity(@NonNull Activity activity, boolean isConfigChange) {
+        for (int i = activities.size() - 1; i >= 0; i--) {
+            Activity attached = activities.get(i).get();
+            if (attached == null || attached == activity) {
+                activities.remove(i);
+            }
+        }
+        if (!activities.isEmpty()) {
+            // Another engine's activity is still in the foreground
+            Activity last = activities.get(activities.size() - 1).get();
+            updateWindow(last != null ? last.getWindow() : null);
+            return;
+        }
+        if (isConfigChange) {
+            // The window goes away with the activity
+            monitorRegistry.moveToBackground();
+            return;
+        }
+        monitorRegistry.stopAll();
+        if (application != null) {
+            application.unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
+            application = null;
+        }
+        window = null;
+    }
+
+    /**
+     * Configure and enable vitals sampling, restarting the samplers if they are running
+     * @param threadCpuTopCount Number of threads reported in the per-thread CPU breakdown,
+     * or 0 to not scan threads
+     */
+    public void configureVitalsSampler(long intervalMs, int windowSize, int threadCpuTopCount) {
+        vitalsSampler.configure(intervalMs, windowSize);
+        if (threadCpuTopCount > 0) {
+            // Scanning every thread costs more than one sample, so it runs at most every few seconds
+            threadCpuSampler.configure(
+                    Math.max(intervalMs, ThreadCpuSampler.DEFAULT_INTERVAL_MS), threadCpuTopCount);
+        }
+        isVitalsSamplerEnabled = true;
+        isThreadCpuSamplerEnabled = threadCpuTopCount > 0;
+        monitorRegistry.refresh(vitalsMonitor);
+    }
+
+    /**
+     * Get the vitals samples collected since the previous call, with the per-thread CPU
+     * breakdown under "threads" when enabled
+     */
+    @NonNull
+    public Map<String, Object> drainVitalsWindow() {
+        Map<String, Object> window = vitalsSampler.drainWindow();
+        Map<String, Object> threads = threadCpuSampler.drainTop();
+        if (threads != null) {
+            window.put("threads", threads);
+        }
+        return window;
+    }
+
+    /**
+     * Replace the polling ANR tracker with the message dispatch watchdog
+     */
+    public synchronized void configureAnrWatchdog(@NonNull long[] stallThresholdsMs, long samplingIntervalMs) {
+        anrMonitor.stop();
+        mainThreadWatchdog = new MainThreadWatchdog(eventAggregator, stallThresholdsMs, samplingIntervalMs);
+        monitorRegistry.refresh(anrMonitor);
+    }
+
+    @NonNull
+    public FrameTimingMonitor getFrameTimingMonitor() {
+        return frameTimingMonitor;
+    }
+
+    @NonNull
+    public AppStartTracker getAppStartTracker() {
+        return appStartTracker;
+    }
+
+    @NonNull
+    public VitalsSampler getVitalsSampler() {
+        return vitalsSampler;
+    }
+
+    @NonNull
+    public Context getApplicationContext() {
+        return applicationContext;
+    }
+
+    @NonNull
+    public synchronized ExitInfoHelper getExitInfoHelper() {
+        if (exitInfoHelper == null) {
+            exitInfoHelper = new ExitInfoHelper(applicationContext);
+            exitInfoHelper.setMaxTraceBytes(maxTraceBytes(memoryPressureController.getLevel()));
+        }
+        return exitInfoHelper;
+    }
+
+    @NonNull
+    public ThreadPoolExecutor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    /**
+     * Release memory and sample less while the app is under memory pressure, and restore the
+     * defaults once it is over
+     */
+    private void applyMemoryPressure(int level) {
+        boolean isUnderPressure = level != MemoryPressureController.PRESSURE_NONE;
+        Log.d(TAG, "Memory pressure level " + level);
+        if (isUnderPressure) {
+            ANRTracker.trimPending(PRESSURE_MAX_PENDING_ANRS);
+        }
+        // Frames already sent keep their ids, the dictionary only stops growing
+        FrameDictionary.setLimit(isUnderPressure ? FrameDictionary.size() : FrameDictionary.MAX_FRAMES);
+        synchronized (this) {
+            if (exitInfoHelper != null) {
+                exitInfoHelper.setMaxTraceBytes(maxTraceBytes(level));
+            }
+        }
+        vitalsSampler.setUnderMemoryPressure(isUnderPressure);
+        monitorRegistry.refresh(vitalsMonitor);
+    }
+
+    private static int maxTraceBytes(int pressureLevel) {
+        switch (pressureLevel) {
+            case MemoryPressureController.PRESSURE_CRITICAL:
+                return CRITICAL_PRESSURE_MAX_TRACE_BYTES;
+            case MemoryPressureController.PRESSURE_ELEVATED:
+                return ELEVATED_PRESSURE_MAX_TRACE_BYTES;
+            default:
+                return ExitInfoHelper.MAX_TRACE_BYTES;
+        }
+    }
+
+    private void updateWindow(@Nullable Window newWindow) {
+        if (newWindow == window) {
+            return;
+        }
+        window = newWindow;
+        // Measure frames on the new window
+        monitorRegistry.refresh(frameMonitor);
+    }
+
+    @NonNull
+    private static ThreadPoolExecutor createBackgroundExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, BACKGROUND_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_BACKGROUND_TASKS),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "faro-io"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,301 @@
+package com.grafana.faro;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NativeScheduler runs the SDK's periodic native work (ANR checks, vitals sampling, event flushes)
+ * on a single low-priority thread, instead of a thread or handler per feature.
+ *
+ * <p>Timers are kept in a hashed timer wheel of {@link #WHEEL_SLOTS} slots of {@link #TICK_MS}
+ * each. Their due ticks are aligned to a shared grid: a periodic timer fires on multiples of its
+ * period, and a one-shot timer on the latest multiple of its tolerance before its deadline. Timers
+ * with related periods therefore fire on the same wakeup, e.g. a 1 second sampler and a 5 second
+ * check wake the thread 60 times a minute rather than 72. The thread only wakes up for ticks with
+ * timers due, and not at all while no timer is registered.
+ *
+ * <p>Work that needs an exact deadline, such as the main thread stall checks, posts to
+ * {@link #getHandler()} directly and still shares the thread.
+ */
+public final class NativeScheduler {
+    private static final String TAG = "NativeScheduler";
+    static final long TICK_MS = 100L;
+    static final int WHEEL_SLOTS = 64;
+    private static final long NONE = -1L;
+
+    private static volatile @Nullable NativeScheduler instance;
+
+    /**
+     * Timer registered with a scheduler, until it fires or is cancelled
+     */
+    static final class Timer {
+        final Runnable task;
+        // 0 for one-shot timers
+        final long periodTicks;
+        long dueTick;
+        boolean isScheduled = false;
+        @Nullable Timer next;
+
+        Timer(@NonNull Runnable task, long periodTicks) {
+            this.task = task;
+            this.periodTicks = periodTicks;
+        }
+    }
+
+    private final Timer[] wheel = new Timer[WHEEL_SLOTS];
+    private int timerCount = 0;
+    private long processedTick = NONE;
+    private long wakeupTick = NONE;
+    private final List<Timer> dueTimers = new ArrayList<>();
+    private @Nullable Handler handler;
+    private final Runnable wakeupTask = () -> runDue(SystemClock.uptimeMillis());
+
+    NativeScheduler() {
+    }
+
+    /**
+     * @return The process-wide scheduler
+     */
+    @NonNull
+    public static NativeScheduler getInstance() {
+        NativeScheduler scheduler = instance;
+        if (scheduler == null) {
+            synchronized (NativeScheduler.class) {
+                scheduler = instance;
+                if (scheduler == null) {
+                    scheduler = new NativeScheduler();
+                    instance = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return Handler of the scheduler thread, started on first use
+     */
+    @NonNull
+    public synchronized Handler getHandler() {
+        if (handler == null) {
+            HandlerThread handlerThread = new HandlerThread("faro-scheduler", Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            handler = new Handler(handlerThread.getLooper());
+        }
+        return handler;
+    }
+
+    /**
+     * Run a task every period, on the scheduler thread. The first run happens within one period.
+     * @param task Task to run
+     * @param periodMs Time between runs, in milliseconds, rounded up to whole ticks
+     * @return The timer, to cancel it
+     */
+    @NonNull
+    public Timer schedulePeriodic(@NonNull Runnable task, long periodMs) {
+        return schedulePeriodic(task, periodMs, SystemClock.uptimeMillis());
+    }
+
+    synchronized Timer schedulePeriodic(@NonNull Runnable task, long periodMs, long nowMs) {
+        Timer timer = new Timer(task, toTicks(periodMs));
+        long nowTick = start(nowMs);
+        insert(timer, alignUp(nowTick + 1, timer.periodTicks));
+        updateWakeup();
+        return timer;
+    }
+
+    /**
+     * Run a task once, on the scheduler thread. It runs up to the tolerance early, so that it
+     * shares a wakeup with other timers.
+     * @param task Task to run
+     * @param delayMs Time until the task runs at the latest, in milliseconds
+     * @param toleranceMs How much earlier the task may run, in milliseconds
+     * @return The timer, to cancel it
+     */
+    @NonNull
+    public Timer scheduleOnce(@NonNull Runnable task, long delayMs, long toleranceMs) {
+        return scheduleOnce(task, delayMs, toleranceMs, SystemClock.uptimeMillis());
+    }
+
+    synchronized Timer scheduleOnce(@NonNull Runnable task, long delayMs, long toleranceMs, long nowMs) {
+        Timer timer = new Timer(task, 0);
+        long nowTick = start(nowMs);
+        long latestTick = nowTick + toTicks(delayMs);
+        long toleranceTicks = toTicks(toleranceMs);
+        long dueTick = latestTick / toleranceTicks * toleranceTicks;
+        insert(timer, dueTick > nowTick ? dueTick : latestTick);
+        updateWakeup();
+        return timer;
+    }
+
+    /**
+     * Cancel a timer. A task already collected for the current wakeup may still run once.
+     */
+    public synchronized void cancel(@Nullable Timer timer) {
+        if (timer == null || !timer.isScheduled) {
+            return;
+        }
+        remove(timer);
+        updateWakeup();
+    }
+
+    synchronized boolean isScheduled(@NonNull Timer timer) {
+        return timer.isScheduled;
+    }
+
+    /**
+     * @return Uptime of the next wakeup, in milliseconds, or -1 if no timer is registered
+     */
+    synchronized long getNextWakeupMs() {
+        return wakeupTick == NONE ? NONE : wakeupTick * TICK_MS;
+    }
+
+    /**
+     * Run the timers due at the given time, and reschedule the periodic ones.
+     * Runs on the scheduler thread.
+     * @param nowMs Current uptime, in milliseconds
+     * @return Number of tasks run
+     */
+    int runDue(long nowMs) {
+        List<Timer> due = collectDue(nowMs / TICK_MS);
+        int count = due.size();
+        for (int i = 0; i < count; i++) {
+            try {
+                due.get(i).task.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Error in scheduled task", e);
+            }
+        }
+        synchronized (this) {
+            due.clear();
+        }
+        return count;
+    }
+
+    @NonNull
+    private synchronized List<Timer> collectDue(long nowTick) {
+        wakeupTick = NONE;
+        if (processedTick == NONE || nowTick <= processedTick) {
+            updateWakeup();
+            return dueTimers;
+        }
+        // After a full revolution, every slot has been visited
+        long ticks = Math.min(nowTick - processedTick, WHEEL_SLOTS);
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            Timer timer = wheel[slot(tick)];
+            while (timer != null) {
+                Timer next = timer.next;
+                if (timer.dueTick <= nowTick) {
+                    remove(timer);
+                    dueTimers.add(timer);
+                }
+                timer = next;
+            }
+        }
+        processedTick = nowTick;
+        for (int i = 0; i < dueTimers.size(); i++) {
+            Timer timer = dueTimers.get(i);
+            if (timer.periodTicks > 0) {
+                // Runs missed while the thread was late are skipped, keeping the alignment
+                insert(timer, alignUp(nowTick + 1, timer.periodTicks));
+            }
+        }
+        updateWakeup();
+        return dueTimers;
+    }
+
+    private long start(long nowMs) {
+        long nowTick = nowMs / TICK_MS;
+        if (processedTick == NONE || timerCount == 0) {
+            processedTick = nowTick;
+        }
+        return Math.max(nowTick, processedTick);
+    }
+
+    private void insert(@NonNull Timer timer, long dueTick) {
+        int slot = slot(dueTick);
+        timer.dueTick = dueTick;
+        timer.next = wheel[slot];
+        timer.isScheduled = true;
+        wheel[slot] = timer;
+        timerCount++;
+    }
+
+    private void remove(@NonNull Timer timer) {
+        int slot = slot(timer.dueTick);
+        Timer previous = null;
+        Timer current = wheel[slot];
+        while (current != null && current != timer) {
+            previous = current;
+            current = current.next;
+        }
+        if (current == null) {
+            return;
+        }
+        if (previous == null) {
+            wheel[slot] = timer.next;
+        } else {
+            previous.next = timer.next;
+        }
+        timer.next = null;
+        timer.isScheduled = false;
+        timerCount--;
+    }
+
+    /**
+     * Post a wakeup for the earliest due tick, if it changed
+     */
+    private void updateWakeup() {
+        long nextTick = nextDueTick();
+        if (nextTick == wakeupTick) {
+            return;
+        }
+        Handler h = getHandler();
+        h.removeCallbacks(wakeupTask);
+        wakeupTick = nextTick;
+        if (nextTick != NONE) {
+            h.postAtTime(wakeupTask, nextTick * TICK_MS);
+        }
+    }
+
+    private long nextDueTick() {
+        if (timerCount == 0) {
+            return NONE;
+        }
+        // Timers due within one revolution are found in tick order
+        for (long tick = processedTick + 1; tick <= processedTick + WHEEL_SLOTS; tick++) {
+            for (Timer timer = wheel[slot(tick)]; timer != null; timer = timer.next) {
+                if (timer.dueTick == tick) {
+                    return tick;
+                }
+            }
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Timer slot : wheel) {
+            for (Timer timer = slot; timer != null; timer = timer.next) {
+                earliest = Math.min(earliest, timer.dueTick);
+            }
+        }
+        return earliest;
+    }
+
+    private static int slot(long tick) {
+        return (int) (tick & (WHEEL_SLOTS - 1));
+    }
+
+    private static long toTicks(long ms) {
+        return Math.max(1, (ms + TICK_MS - 1) / TICK_MS);
+    }
+
+    private static long alignUp(long tick, long gridTicks) {
+        return (tick + gridTicks - 1) / gridTicks * gridTicks;
+    }
+}
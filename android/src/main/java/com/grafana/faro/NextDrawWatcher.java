@@ -0,0 +1,117 @@
+package com.grafana.faro;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import io.flutter.Log;
+
+/**
+ * NextDrawWatcher reports the next frame drawn by a window once, then removes itself, so it costs
+ * nothing after that frame.
+ *
+ * <p>On API 26+ the frame comes from the window frame metrics, which give the end of the frame and
+ * whether it is the first one the window draws. Before that, a draw listener on the decor view
+ * reports the start of the draw pass. Times are on the {@link SystemClock#elapsedRealtimeNanos()}
+ * clock.
+ */
+final class NextDrawWatcher {
+    private static final String TAG = "NextDrawWatcher";
+
+    interface Callback {
+        /**
+         * @param drawnNanos {@link SystemClock#elapsedRealtimeNanos()} when the frame was drawn
+         * @param isFirstDraw Whether it is the first frame drawn by the window, always true
+         * before API 26 where this is unknown
+         */
+        void onDrawn(long drawnNanos, boolean isFirstDraw);
+    }
+
+    private NextDrawWatcher() {
+    }
+
+    /**
+     * Report the next frame of a window. Call from the main thread.
+     * @param window The window to watch
+     * @param callback Called once, on the scheduler thread on API 26+ and the main thread before
+     * @return false if the window has no view to watch yet
+     */
+    static boolean watch(@NonNull Window window, @NonNull Callback callback) {
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                watchFrameMetrics(window, callback);
+                return true;
+            }
+            return watchDraw(window, callback);
+        } catch (Exception e) {
+            Log.e(TAG, "Error watching the next frame", e);
+            return false;
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private static void watchFrameMetrics(@NonNull Window window, @NonNull Callback callback) {
+        Handler handler = NativeScheduler.getInstance().getHandler();
+        window.addOnFrameMetricsAvailableListener(new Window.OnFrameMetricsAvailableListener() {
+            private boolean isReported = false;
+
+            @Override
+            public void onFrameMetricsAvailable(Window frameWindow, FrameMetrics frameMetrics, int dropCount) {
+                if (isReported) {
+                    return;
+                }
+                isReported = true;
+                // Frame metrics are on the System.nanoTime() clock, which stops in deep sleep
+                long endNanos = frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP)
+                        + frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+                long drawnNanos = endNanos + SystemClock.elapsedRealtimeNanos() - System.nanoTime();
+                callback.onDrawn(drawnNanos, frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1);
+                // Listeners cannot be removed while they are being notified
+                handler.post(() -> remove(frameWindow, this));
+            }
+        }, handler);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private static void remove(@NonNull Window window, @NonNull Window.OnFrameMetricsAvailableListener listener) {
+        try {
+            window.removeOnFrameMetricsAvailableListener(listener);
+        } catch (Exception e) {
+            // Already removed along with the window
+        }
+    }
+
+    private static boolean watchDraw(@NonNull Window window, @NonNull Callback callback) {
+        View decorView = window.getDecorView();
+        if (decorView == null) {
+            return false;
+        }
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean isReported = false;
+
+            @Override
+            public void onDraw() {
+                if (isReported) {
+                    return;
+                }
+                isReported = true;
+                callback.onDrawn(SystemClock.elapsedRealtimeNanos(), true);
+                // Listeners cannot be removed while they are being notified
+                decorView.post(() -> {
+                    ViewTreeObserver observer = decorView.getViewTreeObserver();
+                    if (observer.isAlive()) {
+                        observer.removeOnDrawListener(this);
+                    }
+                });
+            }
+        });
+        return true;
+    }
+}
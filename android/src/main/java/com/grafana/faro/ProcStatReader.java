@@ -0,0 +1,268 @@
+package com.grafana.faro;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free reader for small procfs files such as /proc/<pid>/stat and /proc/<pid>/status.
+ * The file is kept open and re-read from offset 0 into a reusable byte buffer on every
+ * {@link #refresh()}, and fields are parsed straight from the bytes into primitive longs.
+ * Instances are not thread-safe; callers must serialize access.
+ */
+public class ProcStatReader implements Closeable {
+    private static final String TAG = "ProcStatReader";
+    static final long MISSING = -1L;
+
+    private final @Nullable File file;
+    private final byte[] buffer;
+    private int length = 0;
+    private @Nullable RandomAccessFile randomAccessFile;
+
+    /**
+     * @param file The procfs file to read
+     * @param bufferSize Size of the reusable buffer; content beyond it is ignored
+     */
+    public ProcStatReader(@NonNull File file, int bufferSize) {
+        this.file = file;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Create a reader that is only used with {@link #load(File)}
+     * @param bufferSize Size of the reusable buffer; content beyond it is ignored
+     */
+    public ProcStatReader(int bufferSize) {
+        this.file = null;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Encode a field key, such as "VmRSS:", once so lookups don't allocate
+     * @param key ASCII key as it appears at the start of a line
+     * @return The key bytes
+     */
+    @NonNull
+    public static byte[] key(@NonNull String key) {
+        return key.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Re-read the file content into the buffer
+     * @return true if any content was read, false if the file is unreadable
+     */
+    public boolean refresh() {
+        if (file == null) {
+            return false;
+        }
+        try {
+            if (randomAccessFile == null) {
+                randomAccessFile = new RandomAccessFile(file, "r");
+            }
+            randomAccessFile.seek(0);
+            int total = 0;
+            int read;
+            while (total < buffer.length
+                    && (read = randomAccessFile.read(buffer, total, buffer.length - total)) > 0) {
+                total += read;
+            }
+            length = total;
+            return total > 0;
+        } catch (IOException e) {
+            Log.w(TAG, "Error reading " + file + ": " + e.getMessage());
+            length = 0;
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Read another file of the same format into the buffer, without keeping it open.
+     * Lets one buffer scan many files, such as /proc/self/task/<tid>/stat.
+     * @param other The procfs file to read
+     * @return true if any content was read, false if the file is unreadable or gone
+     */
+    public boolean load(@NonNull File other) {
+        length = 0;
+        try (RandomAccessFile otherFile = new RandomAccessFile(other, "r")) {
+            int total = 0;
+            int read;
+            while (total < buffer.length
+                    && (read = otherFile.read(buffer, total, buffer.length - total)) > 0) {
+                total += read;
+            }
+            length = total;
+            return total > 0;
+        } catch (IOException e) {
+            // Threads exit between listing and reading, which is expected
+            return false;
+        }
+    }
+
+    /**
+     * Get the command name of a /proc/<pid>/stat style line, the field between parentheses.
+     * Unlike the numeric fields, this allocates a string.
+     * @return The name, or null if absent
+     */
+    @Nullable
+    public String statName() {
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '(') {
+                start = i + 1;
+                break;
+            }
+        }
+        int end = lastIndexOf((byte) ')');
+        if (start < 0 || end < start) {
+            return null;
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get a field of a /proc/<pid>/stat style line.
+     * Fields are located from the last ')' so process names containing spaces or
+     * parentheses don't shift them.
+     * @param field 1-based field number as documented in proc(5), e.g. 14 for utime
+     * @return The numeric field value, or {@link #MISSING} if absent or not numeric
+     */
+    public long statField(int field) {
+        if (field < 3) {
+            return field == 1 ? longAt(0) : MISSING;
+        }
+        int i = lastIndexOf((byte) ')');
+        if (i < 0) {
+            return MISSING;
+        }
+        i++;
+        int current = 2;
+        while (i < length) {
+            while (i < length && isSpace(buffer[i])) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            current++;
+            if (current == field) {
+                return parseLong(i);
+            }
+            while (i < length && !isSpace(buffer[i])) {
+                i++;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Get a field of a space-separated line such as /proc/<pid>/statm
+     * @param index 0-based field index
+     * @return The numeric field value, or {@link #MISSING} if absent or not numeric
+     */
+    public long longAt(int index) {
+        int i = 0;
+        int current = -1;
+        while (i < length) {
+            while (i < length && isSpace(buffer[i])) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            current++;
+            if (current == index) {
+                return parseLong(i);
+            }
+            while (i < length && !isSpace(buffer[i])) {
+                i++;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Get the number following a key at the start of a line, as in /proc/<pid>/status
+     * @param key Key bytes including the colon, see {@link #key(String)}
+     * @return The numeric value, or {@link #MISSING} if the key is not present
+     */
+    public long valueOf(@NonNull byte[] key) {
+        int lineStart = 0;
+        while (lineStart < length) {
+            if (startsWith(lineStart, key)) {
+                return parseLong(lineStart + key.length);
+            }
+            while (lineStart < length && buffer[lineStart] != '\n') {
+                lineStart++;
+            }
+            lineStart++;
+        }
+        return MISSING;
+    }
+
+    @Override
+    public void close() {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing " + file + ": " + e.getMessage());
+            }
+            randomAccessFile = null;
+        }
+    }
+
+    private long parseLong(int from) {
+        int i = from;
+        while (i < length && isSpace(buffer[i])) {
+            i++;
+        }
+        boolean negative = false;
+        if (i < length && buffer[i] == '-') {
+            negative = true;
+            i++;
+        }
+        int start = i;
+        long value = 0;
+        while (i < length && buffer[i] >= '0' && buffer[i] <= '9') {
+            value = value * 10 + (buffer[i] - '0');
+            i++;
+        }
+        if (i == start) {
+            return MISSING;
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean startsWith(int offset, @NonNull byte[] key) {
+        if (offset + key.length > length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lastIndexOf(byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n';
+    }
+}
@@ -0,0 +1,192 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StallProfiler aggregates main thread stack samples taken during a stall into a call tree,
+ * where each node counts the samples whose stack went through it (flame graph style).
+ * Frames are interned into a bounded table and nodes are stored in preallocated primitive arrays,
+ * so a profile has a fixed memory ceiling however long the stall lasts. Frames past the table
+ * capacity are attributed to an "(other)" frame; stacks past the node capacity are cut short.
+ *
+ * <p>Not thread-safe: samples are taken and the profile is read on the watchdog thread.
+ */
+public final class StallProfiler {
+    static final int DEFAULT_MAX_FRAMES = 512;
+    static final int DEFAULT_MAX_NODES = 2048;
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final int maxDepth;
+    private final Map<StackTraceElement, Integer> frameIds;
+    private final StackTraceElement[] frames;
+    private int frameCount = 0;
+    private int otherFrameId = NONE;
+
+    // Node 0 is the root; children are linked lists through nextSibling
+    private final int[] nodeFrame;
+    private final int[] nodeCount;
+    private final int[] nodeFirstChild;
+    private final int[] nodeNextSibling;
+    private int nodeCountUsed = 1;
+    private int sampleCount = 0;
+
+    public StallProfiler() {
+        this(DEFAULT_MAX_FRAMES, DEFAULT_MAX_NODES, ANRTracker.MAX_STACK_FRAMES);
+    }
+
+    /**
+     * @param maxFrames Maximum number of distinct frames
+     * @param maxNodes Maximum number of call tree nodes, including the root
+     * @param maxDepth Maximum number of frames kept per sample, from the outermost frame
+     */
+    StallProfiler(int maxFrames, int maxNodes, int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.frameIds = new HashMap<>(maxFrames * 2);
+        this.frames = new StackTraceElement[maxFrames];
+        this.nodeFrame = new int[maxNodes];
+        this.nodeCount = new int[maxNodes];
+        this.nodeFirstChild = new int[maxNodes];
+        this.nodeNextSibling = new int[maxNodes];
+        reset();
+    }
+
+    /**
+     * Discard the current profile
+     */
+    public void reset() {
+        frameIds.clear();
+        Arrays.fill(frames, 0, frameCount, null);
+        frameCount = 0;
+        otherFrameId = NONE;
+        nodeCountUsed = 1;
+        nodeFrame[ROOT] = NONE;
+        nodeCount[ROOT] = 0;
+        nodeFirstChild[ROOT] = NONE;
+        nodeNextSibling[ROOT] = NONE;
+        sampleCount = 0;
+    }
+
+    /**
+     * Add one stack sample to the profile
+     * @param stackTrace Stack trace, innermost frame first, as returned by {@link Thread#getStackTrace()}
+     */
+    public void addSample(@NonNull StackTraceElement[] stackTrace) {
+        sampleCount++;
+        nodeCount[ROOT]++;
+        int node = ROOT;
+        int depth = Math.min(stackTrace.length, maxDepth);
+        for (int i = stackTrace.length - 1; i >= stackTrace.length - depth; i--) {
+            int child = childFor(node, internFrame(stackTrace[i]));
+            if (child == NONE) {
+                return;
+            }
+            nodeCount[child]++;
+            node = child;
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @param path Frames from the outermost inwards
+     * @return Number of samples whose stack starts with the path, or 0 if there are none
+     */
+    int getCount(@NonNull StackTraceElement... path) {
+        int node = ROOT;
+        for (StackTraceElement element : path) {
+            Integer frameId = frameIds.get(element);
+            node = frameId != null ? findChild(node, frameId) : NONE;
+            if (node == NONE) {
+                return 0;
+            }
+        }
+        return nodeCount[node];
+    }
+
+    /**
+     * Export the profile as a frame table and a call tree of
+     * {@code {"frame": index, "count": samples, "children": [...]}} nodes.
+     * The frame table holds {@link FrameDictionary} ids, or {@link FrameDictionary#UNKNOWN}
+     * for frames attributed to "(other)".
+     * @param intervalMs Sampling interval the profile was taken with, in milliseconds
+     */
+    @NonNull
+    public JSONObject toJson(long intervalMs) throws JSONException {
+        JSONArray frameTable = new JSONArray();
+        for (int i = 0; i < frameCount; i++) {
+            frameTable.put(i == otherFrameId ? FrameDictionary.UNKNOWN : FrameDictionary.intern(frames[i]));
+        }
+        JSONObject profile = new JSONObject();
+        profile.put("intervalMs", intervalMs);
+        profile.put("samples", sampleCount);
+        profile.put("frameIds", frameTable);
+        profile.put("tree", childrenToJson(ROOT));
+        return profile;
+    }
+
+    @NonNull
+    private JSONArray childrenToJson(int node) throws JSONException {
+        JSONArray children = new JSONArray();
+        for (int child = nodeFirstChild[node]; child != NONE; child = nodeNextSibling[child]) {
+            JSONObject json = new JSONObject();
+            json.put("frame", nodeFrame[child]);
+            json.put("count", nodeCount[child]);
+            if (nodeFirstChild[child] != NONE) {
+                json.put("children", childrenToJson(child));
+            }
+            children.put(json);
+        }
+        return children;
+    }
+
+    private int internFrame(@NonNull StackTraceElement element) {
+        Integer id = frameIds.get(element);
+        if (id != null) {
+            return id;
+        }
+        // Keep the last slot for frames that no longer fit
+        if (frameCount < frames.length - 1) {
+            frames[frameCount] = element;
+            frameIds.put(element, frameCount);
+            return frameCount++;
+        }
+        if (otherFrameId == NONE) {
+            otherFrameId = frameCount++;
+        }
+        return otherFrameId;
+    }
+
+    private int childFor(int parent, int frameId) {
+        int child = findChild(parent, frameId);
+        if (child != NONE || nodeCountUsed == nodeFrame.length) {
+            return child;
+        }
+        child = nodeCountUsed++;
+        nodeFrame[child] = frameId;
+        nodeCount[child] = 0;
+        nodeFirstChild[child] = NONE;
+        nodeNextSibling[child] = nodeFirstChild[parent];
+        nodeFirstChild[parent] = child;
+        return child;
+    }
+
+    private int findChild(int parent, int frameId) {
+        for (int child = nodeFirstChild[parent]; child != NONE; child = nodeNextSibling[child]) {
+            if (nodeFrame[child] == frameId) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+}
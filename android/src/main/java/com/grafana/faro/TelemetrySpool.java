@@ -0,0 +1,262 @@
+package com.grafana.faro;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Circular spool of native telemetry, kept in a memory-mapped file so it survives process death.
+ * Events produced while no Flutter engine is attached are appended here, and Dart drains the whole
+ * spool in one call on its next start.
+ *
+ * <p>Appends are O(1) writes into the mapping, with no per-event fsync: the kernel writes dirty pages
+ * back on its own, and they are not lost when the process dies, only when the device does.
+ * Once the spool is full, the oldest records are dropped and counted.
+ *
+ * <p>File layout (little-endian): a header of {@code magic | version | capacity | head | tail | dropped}
+ * followed by the ring of records, each made of an int32 payload length, a type byte and the payload.
+ * A record never wraps around: when it does not fit before the end of the ring, a wrap marker is left
+ * and it starts over at offset 0. The record is written first and published by moving the tail, so a
+ * record torn by a dying process is never visible. Records are only ever released by moving the head,
+ * and an empty spool keeps its position instead of rewinding to 0: moving both pointers would take
+ * two writes, and a process dying between them would bring released records back.
+ */
+public class TelemetrySpool {
+    private static final String TAG = "TelemetrySpool";
+    static final String FILE_NAME = "faro_telemetry_spool";
+    static final int DEFAULT_CAPACITY = 256 * 1024;
+    static final int MAGIC = 0x46415253; // "FARS"
+    static final int VERSION = 1;
+
+    /** Event batch in the {@link EventAggregator} format */
+    public static final byte RECORD_EVENT_BATCH = 1;
+    /** ANR as a self-contained JSON string */
+    public static final byte RECORD_ANR = 2;
+
+    static final int HEADER_BYTES = 6 * 4;
+    private static final int HEAD_OFFSET = 12;
+    private static final int TAIL_OFFSET = 16;
+    private static final int DROPPED_OFFSET = 20;
+    static final int RECORD_HEADER_BYTES = 4 + 1;
+    private static final int WRAP = -1;
+
+    private static @Nullable TelemetrySpool instance;
+
+    private final File file;
+    private final int capacity;
+    private @Nullable MappedByteBuffer map;
+    private int head;
+    private int tail;
+    private int dropped;
+
+    /**
+     * A spooled record
+     */
+    public static final class Record {
+        public final byte type;
+        public final byte[] data;
+
+        Record(byte type, @NonNull byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param context Any context of the application
+     * @return The process-wide spool, stored in the application's cache directory
+     */
+    @NonNull
+    public static synchronized TelemetrySpool getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new TelemetrySpool(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME), DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * @param file Spool file, created when first used
+     * @param capacity Size of the record ring, in bytes
+     */
+    public TelemetrySpool(@NonNull File file, int capacity) {
+        if (capacity <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("capacity must leave room for a record");
+        }
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Append a record, dropping the oldest ones if the spool is full
+     * @param type Record type
+     * @param payload Buffer whose remaining bytes are the record content
+     * @return Whether the record was written
+     */
+    public synchronized boolean append(byte type, @NonNull ByteBuffer payload) {
+        int length = payload.remaining();
+        int size = RECORD_HEADER_BYTES + length;
+        MappedByteBuffer buffer = open();
+        if (buffer == null || size > capacity - 1) {
+            return false;
+        }
+        int wasted;
+        while (true) {
+            // A record that does not fit before the end of the ring starts over at 0
+            wasted = capacity - tail < size ? capacity - tail : 0;
+            if (capacity - 1 - used() >= wasted + size) {
+                break;
+            }
+            dropOldest(buffer);
+        }
+        // Release the dropped records before their space is reused
+        buffer.putInt(HEAD_OFFSET, head);
+        buffer.putInt(DROPPED_OFFSET, dropped);
+        int position = tail;
+        if (wasted > 0) {
+            if (wasted >= 4) {
+                buffer.putInt(HEADER_BYTES + position, WRAP);
+            }
+            position = 0;
+        }
+        buffer.putInt(HEADER_BYTES + position, length);
+        buffer.put(HEADER_BYTES + position + 4, type);
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_BYTES + position + RECORD_HEADER_BYTES);
+        target.put(payload.duplicate());
+        // Publish the record
+        tail = (position + size) % capacity;
+        buffer.putInt(TAIL_OFFSET, tail);
+        return true;
+    }
+
+    /**
+     * Append a record, dropping the oldest ones if the spool is full
+     * @param type Record type
+     * @param payload Record content
+     * @return Whether the record was written
+     */
+    public boolean append(byte type, @NonNull String payload) {
+        return append(type, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Move every spooled record to the given list, oldest first
+     * @param out List the records are added to
+     * @return Number of records dropped because the spool was full since the previous drain
+     */
+    public synchronized int drainTo(@NonNull List<Record> out) {
+        MappedByteBuffer buffer = open();
+        if (buffer == null) {
+            return 0;
+        }
+        int position = head;
+        while (position != tail) {
+            if (isWrap(buffer, position)) {
+                position = 0;
+                continue;
+            }
+            int length = buffer.getInt(HEADER_BYTES + position);
+            if (length < 0 || position + RECORD_HEADER_BYTES + length > capacity) {
+                Log.w(TAG, "Discarding corrupted telemetry spool");
+                break;
+            }
+            byte[] data = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(HEADER_BYTES + position + RECORD_HEADER_BYTES);
+            source.get(data);
+            out.add(new Record(buffer.get(HEADER_BYTES + position + 4), data));
+            position = (position + RECORD_HEADER_BYTES + length) % capacity;
+        }
+        int drainedDropped = dropped;
+        // Release the records in one write, the tail stays where it is
+        head = tail;
+        buffer.putInt(HEAD_OFFSET, head);
+        dropped = 0;
+        buffer.putInt(DROPPED_OFFSET, 0);
+        return drainedDropped;
+    }
+
+    /**
+     * Map the spool file, validating its header, or return the existing mapping
+     */
+    @Nullable
+    private MappedByteBuffer open() {
+        if (map != null) {
+            return map;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long fileSize = HEADER_BYTES + (long) capacity;
+            boolean isNew = raf.length() != fileSize;
+            if (isNew) {
+                raf.setLength(fileSize);
+            }
+            // The mapping stays valid once the file is closed
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            head = buffer.getInt(HEAD_OFFSET);
+            tail = buffer.getInt(TAIL_OFFSET);
+            dropped = buffer.getInt(DROPPED_OFFSET);
+            if (isNew || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != capacity || head < 0 || head >= capacity
+                    || tail < 0 || tail >= capacity || dropped < 0) {
+                reset(buffer);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, capacity);
+            }
+            map = buffer;
+            return buffer;
+        } catch (IOException e) {
+            Log.e(TAG, "Error mapping telemetry spool", e);
+            return null;
+        }
+    }
+
+    private int used() {
+        return (tail - head + capacity) % capacity;
+    }
+
+    /**
+     * Move the head past the oldest record, or past the wrap marker it points at
+     */
+    private void dropOldest(@NonNull MappedByteBuffer buffer) {
+        if (isWrap(buffer, head)) {
+            head = 0;
+            return;
+        }
+        int length = buffer.getInt(HEADER_BYTES + head);
+        if (length < 0 || head + RECORD_HEADER_BYTES + length > capacity) {
+            // Corrupted: nothing before the tail can be trusted
+            head = tail;
+        } else {
+            head = (head + RECORD_HEADER_BYTES + length) % capacity;
+        }
+        dropped++;
+    }
+
+    private boolean isWrap(@NonNull MappedByteBuffer buffer, int position) {
+        return capacity - position < RECORD_HEADER_BYTES || buffer.getInt(HEADER_BYTES + position) == WRAP;
+    }
+
+    private void reset(@NonNull MappedByteBuffer buffer) {
+        head = 0;
+        tail = 0;
+        dropped = 0;
+        buffer.putInt(HEAD_OFFSET, 0);
+        buffer.putInt(TAIL_OFFSET, 0);
+        buffer.putInt(DROPPED_OFFSET, 0);
+    }
+}
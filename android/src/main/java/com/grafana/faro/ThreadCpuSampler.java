@@ -0,0 +1,306 @@
+package com.grafana.faro;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ThreadCpuSampler breaks the CPU time of the process down by thread, so a regression can be
+ * attributed to the Dart UI or raster thread, the GC daemons, our own threads or a native library.
+ *
+ * <p>Every few seconds it lists /proc/self/task and reads the utime and stime of each
+ * /proc/self/task/&lt;tid&gt;/stat through one reusable buffer. The thread name is taken from the
+ * same file, the comm field between parentheses, and only when a thread is first seen. State is
+ * kept in parallel primitive arrays sorted by tid, so a scan only allocates the directory listing.
+ * The CPU time consumed since the previous read is reported for the top consumers.
+ */
+public class ThreadCpuSampler {
+    private static final String TAG = "ThreadCpuSampler";
+    static final long DEFAULT_INTERVAL_MS = 5000L;
+    static final int DEFAULT_TOP_COUNT = 8;
+    static final int MAX_TOP_COUNT = 32;
+    // Field numbers in /proc/<pid>/task/<tid>/stat, see proc(5)
+    private static final int UTIME_FIELD = 14;
+    private static final int STIME_FIELD = 15;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_THREADS = 2048;
+
+    private final File taskDir;
+    private final long clockTicksPerSecond;
+    private final NativeScheduler scheduler;
+    private final ProcStatReader statReader = new ProcStatReader(512);
+    private @Nullable NativeScheduler.Timer scanTimer;
+    private volatile long intervalMs = DEFAULT_INTERVAL_MS;
+    private volatile int topCount = DEFAULT_TOP_COUNT;
+
+    // Per-thread state, sorted by tid
+    private int size = 0;
+    private int[] tids = new int[INITIAL_CAPACITY];
+    private long[] lastTicks = new long[INITIAL_CAPACITY];
+    private long[] windowTicks = new long[INITIAL_CAPACITY];
+    private int[] seenScans = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private File[] statFiles = new File[INITIAL_CAPACITY];
+
+    private int scanCount = 0;
+    private boolean hasBaseline = false;
+    private long lastScanRealtimeMs = -1;
+    // Time covered by the scans of the current window; time spent stopped is not counted
+    private long windowMs = 0;
+
+    public ThreadCpuSampler() {
+        this(new File("/proc/self/task"),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? CPUInfo.clockTicksPerSecond() : 100L,
+                NativeScheduler.getInstance());
+    }
+
+    ThreadCpuSampler(@NonNull File taskDir, long clockTicksPerSecond, @NonNull NativeScheduler scheduler) {
+        this.taskDir = taskDir;
+        this.clockTicksPerSecond = clockTicksPerSecond > 0 ? clockTicksPerSecond : 100L;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param intervalMs Time between scans, in milliseconds
+     * @param topCount Number of threads reported per window
+     */
+    public void configure(long intervalMs, int topCount) {
+        this.intervalMs = Math.max(VitalsSampler.MIN_INTERVAL_MS, intervalMs);
+        this.topCount = Math.max(1, Math.min(MAX_TOP_COUNT, topCount));
+    }
+
+    public synchronized boolean isRunning() {
+        return scanTimer != null;
+    }
+
+    /**
+     * Start scanning. The first scan only records a baseline.
+     */
+    public synchronized void start() {
+        if (scanTimer != null) {
+            return;
+        }
+        hasBaseline = false;
+        scanTimer = scheduler.schedulePeriodic(() -> scan(SystemClock.elapsedRealtime()), intervalMs);
+    }
+
+    /**
+     * Stop scanning. CPU time already accounted is kept until the next read.
+     */
+    public synchronized void stop() {
+        if (scanTimer != null) {
+            scheduler.cancel(scanTimer);
+            scanTimer = null;
+        }
+    }
+
+    /**
+     * Account the CPU time each thread consumed since the previous scan
+     * @param realtimeMs Current elapsed realtime, in milliseconds
+     * @return false if the task directory is unreadable
+     */
+    synchronized boolean scan(long realtimeMs) {
+        String[] entries = taskDir.list();
+        if (entries == null) {
+            Log.w(TAG, "Cannot list " + taskDir);
+            return false;
+        }
+        scanCount++;
+        for (String entry : entries) {
+            int tid = parseTid(entry);
+            if (tid < 0) {
+                continue;
+            }
+            int index = indexOf(tid);
+            if (index < 0) {
+                if (size == MAX_THREADS) {
+                    continue;
+                }
+                index = insertAt(-(index + 1), tid, entry);
+            }
+            if (!statReader.load(statFiles[index])) {
+                continue;
+            }
+            long utime = statReader.statField(UTIME_FIELD);
+            long stime = statReader.statField(STIME_FIELD);
+            if (utime < 0 || stime < 0) {
+                continue;
+            }
+            long ticks = utime + stime;
+            long last = lastTicks[index];
+            if (last < 0 || ticks < last) {
+                // A new thread, or a tid reused by a thread that started since the previous scan
+                names[index] = statReader.statName();
+                if (hasBaseline) {
+                    windowTicks[index] += ticks;
+                }
+            } else if (hasBaseline) {
+                windowTicks[index] += ticks - last;
+            }
+            lastTicks[index] = ticks;
+            seenScans[index] = scanCount;
+        }
+        removeExitedThreads();
+        if (hasBaseline && realtimeMs > lastScanRealtimeMs) {
+            windowMs += realtimeMs - lastScanRealtimeMs;
+        }
+        hasBaseline = true;
+        lastScanRealtimeMs = realtimeMs;
+        return true;
+    }
+
+    /**
+     * Get the top CPU consumers since the previous call, and start a new window
+     * @return Map with the window duration and the "threads" list, each with its tid, name,
+     * CPU time in milliseconds and usage in percent of one core, or null if nothing was accounted
+     */
+    @Nullable
+    public synchronized Map<String, Object> drainTop() {
+        if (windowMs <= 0) {
+            return null;
+        }
+        List<Map<String, Object>> threads = new ArrayList<>();
+        long totalTicks = 0;
+        for (int i = 0; i < size; i++) {
+            totalTicks += windowTicks[i];
+        }
+        // Selection by descending ticks, ties broken by index, without sorting the arrays
+        int previous = -1;
+        for (int n = 0; n < topCount; n++) {
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                if (windowTicks[i] <= 0 || (previous >= 0 && !isRankedAfter(i, previous))) {
+                    continue;
+                }
+                if (best < 0 || isRankedAfter(best, i)) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            double cpuMs = windowTicks[best] * 1000.0 / clockTicksPerSecond;
+            Map<String, Object> thread = new HashMap<>();
+            thread.put("tid", tids[best]);
+            thread.put("name", names[best] != null ? names[best] : String.valueOf(tids[best]));
+            thread.put("cpuMs", cpuMs);
+            thread.put("cpuUsage", 100 * cpuMs / windowMs);
+            threads.add(thread);
+            previous = best;
+        }
+        Map<String, Object> window = new HashMap<>();
+        window.put("windowMs", windowMs);
+        window.put("threadCount", size);
+        window.put("totalCpuMs", totalTicks * 1000.0 / clockTicksPerSecond);
+        window.put("threads", threads);
+        for (int i = 0; i < size; i++) {
+            windowTicks[i] = 0;
+        }
+        windowMs = 0;
+        return window;
+    }
+
+    private boolean isRankedAfter(int index, int other) {
+        return windowTicks[index] < windowTicks[other]
+                || (windowTicks[index] == windowTicks[other] && index > other);
+    }
+
+    /**
+     * Drop the threads missing from the last scan, once their CPU time has been read
+     */
+    private void removeExitedThreads() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (seenScans[i] != scanCount) {
+                if (windowTicks[i] == 0) {
+                    continue;
+                }
+                // Exited with CPU time not read yet; a thread reusing the tid starts over
+                lastTicks[i] = -1;
+            }
+            if (kept != i) {
+                tids[kept] = tids[i];
+                lastTicks[kept] = lastTicks[i];
+                windowTicks[kept] = windowTicks[i];
+                seenScans[kept] = seenScans[i];
+                names[kept] = names[i];
+                statFiles[kept] = statFiles[i];
+            }
+            kept++;
+        }
+        for (int i = kept; i < size; i++) {
+            names[i] = null;
+            statFiles[i] = null;
+        }
+        size = kept;
+    }
+
+    private int indexOf(int tid) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tids[mid] < tid) {
+                low = mid + 1;
+            } else if (tids[mid] > tid) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int insertAt(int index, int tid, @NonNull String entry) {
+        if (size == tids.length) {
+            int capacity = Math.min(MAX_THREADS, tids.length * 2);
+            tids = Arrays.copyOf(tids, capacity);
+            lastTicks = Arrays.copyOf(lastTicks, capacity);
+            windowTicks = Arrays.copyOf(windowTicks, capacity);
+            seenScans = Arrays.copyOf(seenScans, capacity);
+            names = Arrays.copyOf(names, capacity);
+            statFiles = Arrays.copyOf(statFiles, capacity);
+        }
+        int moved = size - index;
+        System.arraycopy(tids, index, tids, index + 1, moved);
+        System.arraycopy(lastTicks, index, lastTicks, index + 1, moved);
+        System.arraycopy(windowTicks, index, windowTicks, index + 1, moved);
+        System.arraycopy(seenScans, index, seenScans, index + 1, moved);
+        System.arraycopy(names, index, names, index + 1, moved);
+        System.arraycopy(statFiles, index, statFiles, index + 1, moved);
+        tids[index] = tid;
+        lastTicks[index] = -1;
+        windowTicks[index] = 0;
+        seenScans[index] = 0;
+        names[index] = null;
+        statFiles[index] = new File(new File(taskDir, entry), "stat");
+        size++;
+        return index;
+    }
+
+    private static int parseTid(@NonNull String entry) {
+        int tid = 0;
+        int length = entry.length();
+        if (length == 0 || length > 9) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = entry.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            tid = tid * 10 + (c - '0');
+        }
+        return tid;
+    }
+}
@@ -0,0 +1,465 @@
+package com.grafana.faro;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * TombstoneDecoder reads the protobuf tombstone returned for native crashes by
+ * {@code ApplicationExitInfo.getTraceInputStream()} on API 31+, as defined by
+ * {@code system/core/debuggerd/proto/tombstone.proto}.
+ *
+ * <p>It is a minimal streaming decoder without a protobuf runtime: it walks the wire format, keeps
+ * the signal, the abort message and the crashing thread's backtrace, and skips everything else
+ * without buffering it. Tombstone fields are serialized in field number order, so reading stops
+ * as soon as the crashing thread has been decoded, before the memory maps and logs that make up
+ * most of the file. Strings and the number of frames are capped.
+ */
+final class TombstoneDecoder {
+    static final int MAX_FRAMES = 64;
+    static final int MAX_STRING_BYTES = 512;
+
+    // Tombstone
+    private static final int TOMBSTONE_ARCH = 1;
+    private static final int TOMBSTONE_PID = 5;
+    private static final int TOMBSTONE_TID = 6;
+    private static final int TOMBSTONE_SIGNAL_INFO = 10;
+    private static final int TOMBSTONE_ABORT_MESSAGE = 14;
+    private static final int TOMBSTONE_THREADS = 16;
+    // Signal
+    private static final int SIGNAL_NUMBER = 1;
+    private static final int SIGNAL_NAME = 2;
+    private static final int SIGNAL_CODE = 3;
+    private static final int SIGNAL_CODE_NAME = 4;
+    private static final int SIGNAL_HAS_FAULT_ADDRESS = 8;
+    private static final int SIGNAL_FAULT_ADDRESS = 9;
+    // Map entry of Tombstone.threads
+    private static final int ENTRY_KEY = 1;
+    private static final int ENTRY_VALUE = 2;
+    // Thread
+    private static final int THREAD_NAME = 2;
+    private static final int THREAD_CURRENT_BACKTRACE = 4;
+    // BacktraceFrame
+    private static final int FRAME_REL_PC = 1;
+    private static final int FRAME_FUNCTION_NAME = 4;
+    private static final int FRAME_FUNCTION_OFFSET = 5;
+    private static final int FRAME_FILE_NAME = 6;
+    private static final int FRAME_BUILD_ID = 8;
+
+    private static final int ARCH_ARM32 = 0;
+    private static final int ARCH_X86 = 2;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    /**
+     * One frame of the crashing thread's backtrace
+     */
+    static final class Frame {
+        long relPc;
+        @Nullable String functionName;
+        long functionOffset;
+        @Nullable String fileName;
+        @Nullable String buildId;
+    }
+
+    /**
+     * Fields extracted from a tombstone
+     */
+    static final class Tombstone {
+        int arch = ARCH_ARM32;
+        int pid = -1;
+        int tid = -1;
+        int signalNumber = -1;
+        @Nullable String signalName;
+        int signalCode;
+        @Nullable String signalCodeName;
+        boolean hasFaultAddress;
+        long faultAddress;
+        @Nullable String abortMessage;
+        @Nullable String threadName;
+        final List<Frame> backtrace = new ArrayList<>();
+        int truncatedFrames = 0;
+        boolean hasCrashingThread = false;
+
+        @NonNull
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("pid", pid);
+            json.put("tid", tid);
+            if (threadName != null) {
+                json.put("threadName", threadName);
+            }
+            json.put("signal", signalNumber);
+            if (signalName != null) {
+                json.put("signalName", signalName);
+            }
+            json.put("code", signalCode);
+            if (signalCodeName != null) {
+                json.put("codeName", signalCodeName);
+            }
+            if (hasFaultAddress) {
+                json.put("faultAddress", hex(faultAddress, pcWidth()));
+            }
+            if (abortMessage != null) {
+                json.put("abortMessage", abortMessage);
+            }
+            JSONArray frames = new JSONArray();
+            for (Frame frame : backtrace) {
+                JSONObject frameJson = new JSONObject();
+                frameJson.put("relPc", hex(frame.relPc, pcWidth()));
+                if (frame.fileName != null) {
+                    frameJson.put("file", frame.fileName);
+                }
+                if (frame.functionName != null) {
+                    frameJson.put("function", frame.functionName);
+                    frameJson.put("functionOffset", frame.functionOffset);
+                }
+                if (frame.buildId != null) {
+                    frameJson.put("buildId", frame.buildId);
+                }
+                frames.put(frameJson);
+            }
+            json.put("backtrace", frames);
+            if (truncatedFrames > 0) {
+                json.put("truncatedFrames", truncatedFrames);
+            }
+            return json;
+        }
+
+        /**
+         * @return The crash in the text tombstone layout
+         */
+        @NonNull
+        String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("signal ").append(signalNumber).append(" (").append(signalName).append("), code ")
+                    .append(signalCode).append(" (").append(signalCodeName).append(")");
+            sb.append(", fault addr ").append(hasFaultAddress ? hex(faultAddress, pcWidth()) : "--------");
+            sb.append('\n');
+            if (abortMessage != null) {
+                sb.append("Abort message: '").append(abortMessage).append("'\n");
+            }
+            sb.append("backtrace:\n");
+            for (int i = 0; i < backtrace.size(); i++) {
+                Frame frame = backtrace.get(i);
+                sb.append("      #").append(i < 10 ? "0" : "").append(i)
+                        .append(" pc ").append(hex(frame.relPc, pcWidth()).substring(2))
+                        .append("  ").append(frame.fileName != null ? frame.fileName : "<unknown>");
+                if (frame.functionName != null && !frame.functionName.isEmpty()) {
+                    sb.append(" (").append(frame.functionName).append('+').append(frame.functionOffset).append(')');
+                }
+                if (frame.buildId != null && !frame.buildId.isEmpty()) {
+                    sb.append(" (BuildId: ").append(frame.buildId).append(')');
+                }
+                sb.append('\n');
+            }
+            if (truncatedFrames > 0) {
+                sb.append("      ... ").append(truncatedFrames).append(" more frames truncated\n");
+            }
+            return sb.toString();
+        }
+
+        private int pcWidth() {
+            return arch == ARCH_ARM32 || arch == ARCH_X86 ? 8 : 16;
+        }
+    }
+
+    private final InputStream in;
+    private final long maxBytes;
+    private long position = 0;
+    private final byte[] scratch = new byte[MAX_STRING_BYTES];
+    private final Tombstone tombstone = new Tombstone();
+
+    private TombstoneDecoder(@NonNull InputStream in, long maxBytes) {
+        this.in = in;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Decode a protobuf tombstone, reading no further than the crashing thread
+     * @param in Tombstone content; not closed
+     * @param maxBytes Maximum number of bytes to read
+     * @return The decoded crash, or null if the content is not a tombstone
+     */
+    @Nullable
+    static Tombstone decode(@NonNull InputStream in, long maxBytes) {
+        TombstoneDecoder decoder = new TombstoneDecoder(in, maxBytes);
+        try {
+            decoder.readTombstone();
+        } catch (IOException e) {
+            // Malformed, truncated or not a protobuf tombstone at all: keep what was decoded
+        }
+        Tombstone tombstone = decoder.tombstone;
+        return tombstone.signalNumber >= 0 && tombstone.hasCrashingThread ? tombstone : null;
+    }
+
+    private void readTombstone() throws IOException {
+        int tag;
+        while (!tombstone.hasCrashingThread && (tag = readTag(Long.MAX_VALUE)) != -1) {
+            switch (tag >>> 3) {
+                case TOMBSTONE_ARCH:
+                    tombstone.arch = (int) readVarint(tag);
+                    break;
+                case TOMBSTONE_PID:
+                    tombstone.pid = (int) readVarint(tag);
+                    break;
+                case TOMBSTONE_TID:
+                    tombstone.tid = (int) readVarint(tag);
+                    break;
+                case TOMBSTONE_SIGNAL_INFO:
+                    readSignal(readLengthEnd(tag));
+                    break;
+                case TOMBSTONE_ABORT_MESSAGE:
+                    tombstone.abortMessage = readString(tag);
+                    break;
+                case TOMBSTONE_THREADS:
+                    readThreadEntry(readLengthEnd(tag));
+                    break;
+                default:
+                    skipField(tag);
+            }
+        }
+    }
+
+    private void readSignal(long end) throws IOException {
+        int tag;
+        while ((tag = readTag(end)) != -1) {
+            switch (tag >>> 3) {
+                case SIGNAL_NUMBER:
+                    tombstone.signalNumber = (int) readVarint(tag);
+                    break;
+                case SIGNAL_NAME:
+                    tombstone.signalName = readString(tag);
+                    break;
+                case SIGNAL_CODE:
+                    tombstone.signalCode = (int) readVarint(tag);
+                    break;
+                case SIGNAL_CODE_NAME:
+                    tombstone.signalCodeName = readString(tag);
+                    break;
+                case SIGNAL_HAS_FAULT_ADDRESS:
+                    tombstone.hasFaultAddress = readVarint(tag) != 0;
+                    break;
+                case SIGNAL_FAULT_ADDRESS:
+                    tombstone.faultAddress = readVarint(tag);
+                    break;
+                default:
+                    skipField(tag);
+            }
+        }
+        // proto3 leaves out zero values
+        if (tombstone.signalNumber < 0) {
+            tombstone.signalNumber = 0;
+        }
+    }
+
+    private void readThreadEntry(long end) throws IOException {
+        int key = -1;
+        int tag;
+        while ((tag = readTag(end)) != -1) {
+            int field = tag >>> 3;
+            if (field == ENTRY_KEY) {
+                key = (int) readVarint(tag);
+            } else if (field == ENTRY_VALUE && key == tombstone.tid && key >= 0) {
+                readThread(readLengthEnd(tag));
+                tombstone.hasCrashingThread = true;
+            } else {
+                skipField(tag);
+            }
+        }
+    }
+
+    private void readThread(long end) throws IOException {
+        int tag;
+        while ((tag = readTag(end)) != -1) {
+            int field = tag >>> 3;
+            if (field == THREAD_NAME) {
+                tombstone.threadName = readString(tag);
+            } else if (field == THREAD_CURRENT_BACKTRACE) {
+                if (tombstone.backtrace.size() < MAX_FRAMES) {
+                    tombstone.backtrace.add(readFrame(readLengthEnd(tag)));
+                } else {
+                    tombstone.truncatedFrames++;
+                    skipField(tag);
+                }
+            } else {
+                skipField(tag);
+            }
+        }
+    }
+
+    @NonNull
+    private Frame readFrame(long end) throws IOException {
+        Frame frame = new Frame();
+        int tag;
+        while ((tag = readTag(end)) != -1) {
+            switch (tag >>> 3) {
+                case FRAME_REL_PC:
+                    frame.relPc = readVarint(tag);
+                    break;
+                case FRAME_FUNCTION_NAME:
+                    frame.functionName = readString(tag);
+                    break;
+                case FRAME_FUNCTION_OFFSET:
+                    frame.functionOffset = readVarint(tag);
+                    break;
+                case FRAME_FILE_NAME:
+                    frame.fileName = readString(tag);
+                    break;
+                case FRAME_BUILD_ID:
+                    frame.buildId = readString(tag);
+                    break;
+                default:
+                    skipField(tag);
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * @return The next tag, or -1 at the end of the enclosing message
+     */
+    private int readTag(long end) throws IOException {
+        if (position >= end) {
+            if (position > end) {
+                throw new IOException("Field overruns its message");
+            }
+            return -1;
+        }
+        if (end == Long.MAX_VALUE) {
+            // Top level: the stream may end here
+            int b = readByteOrEnd();
+            if (b == -1) {
+                return -1;
+            }
+            return (int) readVarintFrom(b);
+        }
+        return (int) readVarintFrom(readByte());
+    }
+
+    private long readVarint(int tag) throws IOException {
+        if ((tag & 7) != WIRE_VARINT) {
+            throw new IOException("Unexpected wire type " + (tag & 7));
+        }
+        return readVarintFrom(readByte());
+    }
+
+    private long readVarintFrom(int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private long readLengthEnd(int tag) throws IOException {
+        if ((tag & 7) != WIRE_LENGTH_DELIMITED) {
+            throw new IOException("Unexpected wire type " + (tag & 7));
+        }
+        long length = readVarintFrom(readByte());
+        if (length < 0 || position + length > maxBytes) {
+            throw new IOException("Length out of range");
+        }
+        return position + length;
+    }
+
+    @NonNull
+    private String readString(int tag) throws IOException {
+        long end = readLengthEnd(tag);
+        int kept = (int) Math.min(end - position, scratch.length);
+        readFully(scratch, kept);
+        skipBytes(end - position);
+        return new String(scratch, 0, kept, StandardCharsets.UTF_8);
+    }
+
+    private void skipField(int tag) throws IOException {
+        switch (tag & 7) {
+            case WIRE_VARINT:
+                readVarintFrom(readByte());
+                break;
+            case WIRE_FIXED64:
+                skipBytes(8);
+                break;
+            case WIRE_LENGTH_DELIMITED:
+                skipBytes(readLengthEnd(tag) - position);
+                break;
+            case WIRE_FIXED32:
+                skipBytes(4);
+                break;
+            default:
+                throw new IOException("Unsupported wire type " + (tag & 7));
+        }
+    }
+
+    private int readByteOrEnd() throws IOException {
+        if (position >= maxBytes) {
+            return -1;
+        }
+        int b = in.read();
+        if (b != -1) {
+            position++;
+        }
+        return b;
+    }
+
+    private int readByte() throws IOException {
+        int b = readByteOrEnd();
+        if (b == -1) {
+            throw new IOException("Unexpected end of tombstone");
+        }
+        return b;
+    }
+
+    private void readFully(@NonNull byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of tombstone");
+            }
+            offset += read;
+            position += read;
+        }
+    }
+
+    private void skipBytes(long count) throws IOException {
+        if (position + count > maxBytes) {
+            throw new IOException("Length out of range");
+        }
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Unexpected end of tombstone");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            position += skipped;
+        }
+    }
+
+    @NonNull
+    private static String hex(long value, int width) {
+        return String.format(Locale.US, "0x%0" + width + "x", value);
+    }
+}
@@ -0,0 +1,132 @@
+package com.grafana.faro;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of timestamped vitals samples.
+ * Samples are stored in primitive arrays so recording a value never allocates or boxes;
+ * once the buffer is full the oldest sample is overwritten.
+ */
+public class VitalsRingBuffer {
+    private final long[] timestamps;
+    private final double[] values;
+    // Reused for percentile sorting so statistics don't allocate either
+    private final double[] scratch;
+    private int head = 0; // Index the next sample is written to
+    private int size = 0;
+
+    public VitalsRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.scratch = new double[capacity];
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Record a sample, overwriting the oldest one when the buffer is full
+     * @param timestampMs Wall clock time of the sample, in milliseconds
+     * @param value Sampled value
+     */
+    public synchronized void add(long timestampMs, double value) {
+        timestamps[head] = timestampMs;
+        values[head] = value;
+        head = (head + 1) % values.length;
+        if (size < values.length) {
+            size++;
+        }
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public synchronized double min() {
+        double min = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double v = values[i];
+            if (Double.isNaN(min) || v < min) {
+                min = v;
+            }
+        }
+        return min;
+    }
+
+    public synchronized double max() {
+        double max = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double v = values[i];
+            if (Double.isNaN(max) || v > max) {
+                max = v;
+            }
+        }
+        return max;
+    }
+
+    public synchronized double average() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum / size;
+    }
+
+    /**
+     * Nearest-rank percentile of the buffered samples
+     * @param percentile Percentile in the range (0, 100]
+     * @return The percentile value, or NaN if the buffer is empty
+     */
+    public synchronized double percentile(double percentile) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        System.arraycopy(values, 0, scratch, 0, size);
+        Arrays.sort(scratch, 0, size);
+        int rank = (int) Math.ceil(percentile / 100.0 * size);
+        int index = Math.max(0, Math.min(size - 1, rank - 1));
+        return scratch[index];
+    }
+
+    /**
+     * Copy the buffered values, oldest first
+     * @return A new array holding the series in chronological order
+     */
+    public synchronized double[] copyValues() {
+        double[] result = new double[size];
+        int start = oldestIndex();
+        for (int i = 0; i < size; i++) {
+            result[i] = values[(start + i) % values.length];
+        }
+        return result;
+    }
+
+    /**
+     * Copy the buffered timestamps, oldest first
+     * @return A new array holding the sample times in chronological order
+     */
+    public synchronized long[] copyTimestamps() {
+        long[] result = new long[size];
+        int start = oldestIndex();
+        for (int i = 0; i < size; i++) {
+            result[i] = timestamps[(start + i) % timestamps.length];
+        }
+        return result;
+    }
+
+    private int oldestIndex() {
+        return size < values.length ? 0 : head;
+    }
+}
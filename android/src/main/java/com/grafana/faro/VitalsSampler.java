@@ -0,0 +1,203 @@
+package com.grafana.faro;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * VitalsSampler periodically samples CPU and memory usage on the {@link NativeScheduler} thread.
+ * Samples are kept in fixed-size ring buffers so Dart can fetch a whole window of
+ * high-resolution samples, together with summary statistics, in a single method call.
+ * Memory is read through a {@link MemorySampler}, which adds the Java and native heaps to every
+ * sample and a PSS breakdown to some of them.
+ */
+public class VitalsSampler {
+    private static final String TAG = "VitalsSampler";
+    static final long DEFAULT_INTERVAL_MS = 1000L;
+    static final long MIN_INTERVAL_MS = 100L;
+    static final int DEFAULT_WINDOW_SIZE = 120;
+    static final int MAX_WINDOW_SIZE = 3600;
+    // Sampling slows down by this factor while the app is under memory pressure
+    static final int MEMORY_PRESSURE_INTERVAL_FACTOR = 4;
+
+    private VitalsRingBuffer cpuSamples = new VitalsRingBuffer(DEFAULT_WINDOW_SIZE);
+    private VitalsRingBuffer memorySamples = new VitalsRingBuffer(DEFAULT_WINDOW_SIZE);
+    private VitalsRingBuffer javaHeapSamples = new VitalsRingBuffer(DEFAULT_WINDOW_SIZE);
+    private VitalsRingBuffer nativeHeapSamples = new VitalsRingBuffer(DEFAULT_WINDOW_SIZE);
+    private volatile long intervalMs = DEFAULT_INTERVAL_MS;
+    private volatile boolean isUnderMemoryPressure = false;
+
+    private final NativeScheduler scheduler;
+    private final MemorySampler memorySampler;
+    private @Nullable NativeScheduler.Timer sampleTimer;
+
+    // CPU usage is derived from the delta between two consecutive readings
+    private long lastCpuTicks = -1;
+    private long lastSampleRealtimeMs = -1;
+
+    public VitalsSampler() {
+        this(NativeScheduler.getInstance());
+    }
+
+    VitalsSampler(@NonNull NativeScheduler scheduler) {
+        this(scheduler, new MemorySampler());
+    }
+
+    VitalsSampler(@NonNull NativeScheduler scheduler, @NonNull MemorySampler memorySampler) {
+        this.scheduler = scheduler;
+        this.memorySampler = memorySampler;
+    }
+
+    /**
+     * Configure the sampling rate and the number of samples kept per window.
+     * Changing the window size discards the samples collected so far.
+     * @param intervalMs Time between samples, in milliseconds
+     * @param windowSize Maximum number of samples kept between two reads
+     */
+    public synchronized void configure(long intervalMs, int windowSize) {
+        this.intervalMs = Math.max(MIN_INTERVAL_MS, intervalMs);
+        int size = Math.max(1, Math.min(MAX_WINDOW_SIZE, windowSize));
+        if (size != cpuSamples.capacity()) {
+            cpuSamples = new VitalsRingBuffer(size);
+            memorySamples = new VitalsRingBuffer(size);
+            javaHeapSamples = new VitalsRingBuffer(size);
+            nativeHeapSamples = new VitalsRingBuffer(size);
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return sampleTimer != null;
+    }
+
+    /**
+     * Start sampling. Calling this while already running has no effect.
+     */
+    public synchronized void start() {
+        if (sampleTimer != null) {
+            return;
+        }
+        lastCpuTicks = -1;
+        lastSampleRealtimeMs = -1;
+        long effectiveIntervalMs = getEffectiveIntervalMs();
+        sampleTimer = scheduler.schedulePeriodic(this::sample, effectiveIntervalMs);
+        Log.d(TAG, "Sampling started every " + effectiveIntervalMs + "ms");
+    }
+
+    /**
+     * Stop sampling. Samples already collected are kept until the next read.
+     */
+    public synchronized void stop() {
+        if (sampleTimer != null) {
+            scheduler.cancel(sampleTimer);
+            sampleTimer = null;
+            Log.d(TAG, "Sampling stopped");
+        }
+    }
+
+    /**
+     * Sample less often and skip the memory breakdown while the app is under memory pressure.
+     * A new interval applies from the next start.
+     */
+    public void setUnderMemoryPressure(boolean underPressure) {
+        isUnderMemoryPressure = underPressure;
+        memorySampler.setBreakdownEnabled(!underPressure);
+    }
+
+    /**
+     * @return Time between samples, in milliseconds, slowed down under memory pressure
+     */
+    long getEffectiveIntervalMs() {
+        return isUnderMemoryPressure ? intervalMs * MEMORY_PRESSURE_INTERVAL_FACTOR : intervalMs;
+    }
+
+    /**
+     * Take one CPU and memory sample. Runs on the scheduler thread.
+     */
+    void sample() {
+        long now = System.currentTimeMillis();
+        VitalsRingBuffer cpu;
+        VitalsRingBuffer memory;
+        VitalsRingBuffer javaHeap;
+        VitalsRingBuffer nativeHeap;
+        synchronized (this) {
+            cpu = cpuSamples;
+            memory = memorySamples;
+            javaHeap = javaHeapSamples;
+            nativeHeap = nativeHeapSamples;
+        }
+        memorySampler.sample(now);
+        long rssKb = memorySampler.getRssKb();
+        if (rssKb >= 0) {
+            memory.add(now, rssKb);
+        }
+        javaHeap.add(now, memorySampler.getJavaHeapKb());
+        nativeHeap.add(now, memorySampler.getNativeHeapKb());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            long cpuTicks = CPUInfo.readCpuTicks();
+            long realtimeMs = SystemClock.elapsedRealtime();
+            if (cpuTicks >= 0) {
+                if (lastCpuTicks >= 0 && realtimeMs > lastSampleRealtimeMs) {
+                    double cpuMs = (cpuTicks - lastCpuTicks) * 1000.0 / CPUInfo.clockTicksPerSecond();
+                    cpu.add(now, 100 * cpuMs / (realtimeMs - lastSampleRealtimeMs));
+                }
+                lastCpuTicks = cpuTicks;
+                lastSampleRealtimeMs = realtimeMs;
+            }
+        }
+    }
+
+    /**
+     * Get the samples collected since the previous call, and start a new window
+     * @return Map with per-metric statistics and raw series, keyed by "cpu", "memory", "javaHeap"
+     * and "nativeHeap", and the PSS breakdown under "memoryBreakdown" if one was taken
+     */
+    @NonNull
+    public Map<String, Object> drainWindow() {
+        VitalsRingBuffer cpu;
+        VitalsRingBuffer memory;
+        VitalsRingBuffer javaHeap;
+        VitalsRingBuffer nativeHeap;
+        synchronized (this) {
+            cpu = cpuSamples;
+            memory = memorySamples;
+            javaHeap = javaHeapSamples;
+            nativeHeap = nativeHeapSamples;
+        }
+        Map<String, Object> window = new HashMap<>();
+        window.put("intervalMs", getEffectiveIntervalMs());
+        putSeries(window, "cpu", cpu);
+        putSeries(window, "memory", memory);
+        putSeries(window, "javaHeap", javaHeap);
+        putSeries(window, "nativeHeap", nativeHeap);
+        Map<String, Object> breakdown = memorySampler.drainBreakdown();
+        if (breakdown != null) {
+            window.put("memoryBreakdown", breakdown);
+        }
+        return window;
+    }
+
+    private static void putSeries(
+            @NonNull Map<String, Object> window, @NonNull String key, @NonNull VitalsRingBuffer buffer) {
+        synchronized (buffer) {
+            if (buffer.size() == 0) {
+                return;
+            }
+            Map<String, Object> series = new HashMap<>();
+            series.put("count", buffer.size());
+            series.put("min", buffer.min());
+            series.put("max", buffer.max());
+            series.put("avg", buffer.average());
+            series.put("p95", buffer.percentile(95));
+            series.put("values", buffer.copyValues());
+            series.put("timestamps", buffer.copyTimestamps());
+            buffer.clear();
+            window.put(key, series);
+        }
+    }
+}
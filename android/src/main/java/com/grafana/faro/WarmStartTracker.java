@@ -0,0 +1,146 @@
+package com.grafana.faro;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+
+/**
+ * WarmStartTracker measures the warm and hot starts of the app from the activity lifecycle. A start
+ * begins when the app returns to the foreground after all its activities were stopped: with a new
+ * activity for a warm start, or an existing one for a hot start. It ends with the next frame the
+ * resumed activity's window draws, so the native time before the Flutter engine resumes is included.
+ *
+ * <p>Between starts the lifecycle callbacks only count the started activities, and the window is
+ * only watched until that frame, so nothing else runs. Timestamps are on the
+ * {@link SystemClock#elapsedRealtimeNanos()} clock. The first start of the process is measured by
+ * {@link AppStartTracker}, so starts are only measured once the app has been in the background. An
+ * activity recreated for a configuration change never leaves the foreground and is not a start.
+ */
+public class WarmStartTracker {
+    static final byte START_TYPE_WARM = 2;
+    static final byte START_TYPE_HOT = 3;
+
+    private final EventAggregator eventAggregator;
+    private int startedActivities = 0;
+    private boolean hasBeenInBackground = false;
+    private boolean isRecreating = false;
+
+    // Start being measured, -1 when none
+    private long createdNanos = -1;
+    private long startedNanos = -1;
+    private long resumedNanos = -1;
+    // Increases with every start, so the frame of an abandoned start is ignored
+    private int generation = 0;
+
+    public WarmStartTracker(@NonNull EventAggregator eventAggregator) {
+        this.eventAggregator = eventAggregator;
+    }
+
+    /**
+     * An activity was created, or an engine attached to it if the callbacks were not registered yet
+     */
+    public void onActivityCreated() {
+        created(SystemClock.elapsedRealtimeNanos());
+    }
+
+    public void onActivityStarted() {
+        started(SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * An activity was resumed. During a start, its window is watched until the next frame.
+     * Call from the main thread.
+     */
+    public void onActivityResumed(@NonNull Activity activity) {
+        int startGeneration = resumed(SystemClock.elapsedRealtimeNanos());
+        if (startGeneration < 0) {
+            return;
+        }
+        Window window = activity.getWindow();
+        if (window == null
+                || !NextDrawWatcher.watch(window, (drawnNanos, isFirstDraw) -> drawn(startGeneration, drawnNanos))) {
+            abandon(startGeneration);
+        }
+    }
+
+    public void onActivityStopped(@NonNull Activity activity) {
+        stopped(activity.isChangingConfigurations());
+    }
+
+    synchronized void created(long nowNanos) {
+        if (isStarting() && createdNanos < 0) {
+            createdNanos = nowNanos;
+        }
+    }
+
+    synchronized void started(long nowNanos) {
+        if (isStarting()) {
+            startedNanos = nowNanos;
+            resumedNanos = -1;
+            generation++;
+        }
+        isRecreating = false;
+        startedActivities++;
+    }
+
+    /**
+     * @return Generation of the start the resume is part of, or -1 if none is being measured
+     */
+    synchronized int resumed(long nowNanos) {
+        if (startedNanos < 0 || resumedNanos >= 0) {
+            return -1;
+        }
+        resumedNanos = nowNanos;
+        return generation;
+    }
+
+    /**
+     * The window drew a frame after the resume. Records the start if it is still being measured.
+     * @return Whether the start was recorded
+     */
+    synchronized boolean drawn(int startGeneration, long drawnNanos) {
+        if (startGeneration != generation || resumedNanos < 0) {
+            return false;
+        }
+        boolean isWarm = createdNanos >= 0;
+        eventAggregator.recordAppStart(
+                isWarm ? START_TYPE_WARM : START_TYPE_HOT,
+                isWarm ? startedNanos - createdNanos : -1,
+                resumedNanos - startedNanos,
+                Math.max(0, drawnNanos - resumedNanos));
+        reset();
+        return true;
+    }
+
+    synchronized void stopped(boolean isChangingConfigurations) {
+        startedActivities = Math.max(0, startedActivities - 1);
+        if (startedActivities > 0) {
+            return;
+        }
+        if (isChangingConfigurations) {
+            isRecreating = true;
+            return;
+        }
+        hasBeenInBackground = true;
+        // A start left before its first frame is not measured
+        reset();
+    }
+
+    private synchronized void abandon(int startGeneration) {
+        if (startGeneration == generation) {
+            reset();
+        }
+    }
+
+    private boolean isStarting() {
+        return hasBeenInBackground && startedActivities == 0 && !isRecreating;
+    }
+
+    private void reset() {
+        createdNanos = -1;
+        startedNanos = -1;
+        resumedNanos = -1;
+    }
+}
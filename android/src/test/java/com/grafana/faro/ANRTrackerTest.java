@@ -1,6 +1,7 @@
 package com.grafana.faro;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -8,11 +9,27 @@ import static org.junit.Assert.assertTrue;
 import org.junit.After;
 import org.junit.Test;
 
+import java.util.List;
+
 public class ANRTrackerTest {
 
     @After
     public void tearDown() {
-        ANRTracker.resetANR();
+        ANRTracker.drainANRStatus(0);
+    }
+
+    @Test
+    public void check_reportsOncePerBlockedPeriod() {
+        ANRTracker tracker = new ANRTracker(null, new NativeScheduler(), Thread.currentThread());
+
+        // The first check posts a task, which never runs here
+        assertFalse(tracker.check(1_000L));
+        assertTrue(tracker.check(6_000L));
+        assertFalse(tracker.check(11_000L));
+
+        List<String> statuses = ANRTracker.drainANRStatus(0);
+        assertNotNull(statuses);
+        assertEquals(1, statuses.size());
     }
 
     // --- buildStackTraceString tests ---
@@ -85,11 +102,24 @@ public class ANRTrackerTest {
                 result);
     }
 
-    // --- anrList bounding tests ---
+    // --- ANR queue tests ---
 
     @Test
-    public void getANRStatus_returnsNullWhenEmpty() {
-        assertNull(ANRTracker.getANRStatus());
+    public void drainANRStatus_returnsNullWhenEmpty() {
+        assertNull(ANRTracker.drainANRStatus(0));
+    }
+
+    @Test
+    public void drainANRStatus_keepsMostRecentEntriesAndEmptiesQueue() {
+        for (int i = 0; i < ANRTracker.MAX_ANR_ENTRIES + 2; i++) {
+            ANRTracker.reportAnr(Thread.currentThread(), ANRTracker.TIMEOUT, null, null);
+        }
+
+        List<String> drained = ANRTracker.drainANRStatus(0);
+
+        assertNotNull(drained);
+        assertEquals(ANRTracker.MAX_ANR_ENTRIES, drained.size());
+        assertNull(ANRTracker.drainANRStatus(0));
     }
 
     // --- helpers ---
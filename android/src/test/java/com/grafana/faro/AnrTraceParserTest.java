@@ -0,0 +1,121 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AnrTraceParserTest {
+
+    private static final String TRACE = ""
+            + "\n"
+            + "----- pid 4321 at 2024-05-01 10:00:00.000 -----\n"
+            + "Cmd line: com.example.app\n"
+            + "Build fingerprint: 'google/sdk/emu:14/UE1A/1:userdebug/dev-keys'\n"
+            + "\n"
+            + "DALVIK THREADS (3):\n"
+            + "\"main\" prio=5 tid=1 Blocked\n"
+            + "  | group=\"main\" sCount=1 ucsCount=0 flags=1 obj=0x72d4c2a0 self=0xb400\n"
+            + "  | sysTid=4321 nice=-10 cgrp=top-app sched=0/0 handle=0x7f\n"
+            + "  at com.example.app.Repository.load(Repository.java:42)\n"
+            + "  - waiting to lock <0x0a1b2c3d> (a java.lang.Object) held by thread 22\n"
+            + "  at com.example.app.MainActivity.onResume(MainActivity.java:17)\n"
+            + "  at android.app.Activity.performResume(Activity.java:8000)\n"
+            + "\n"
+            + "\"Signal Catcher\" daemon prio=10 tid=2 Runnable\n"
+            + "  | group=\"system\" sCount=0 ucsCount=0 flags=0 obj=0x12c40000 self=0xb401\n"
+            + "  native: #00 pc 0004b1b8  /apex/com.android.runtime/lib64/bionic/libc.so (syscall+24)\n"
+            + "\n"
+            + "\"DiskWorker\" prio=5 tid=22 Sleeping\n"
+            + "  | group=\"main\" sCount=1 ucsCount=0 flags=1 obj=0x12c80000 self=0xb402\n"
+            + "  at java.lang.Thread.sleep(Native method)\n"
+            + "  at com.example.app.Repository.refresh(Repository.java:88)\n"
+            + "  - locked <0x0a1b2c3d> (a java.lang.Object)\n"
+            + "\n"
+            + "\"Unrelated\" prio=5 tid=30 Waiting\n"
+            + "  at java.lang.Object.wait(Native method)\n"
+            + "\n"
+            + "----- end 4321 -----\n";
+
+    @Test
+    public void parse_keepsMainThreadAndLockHolder() throws IOException {
+        AnrTraceParser.Result result = parse(TRACE, 50);
+
+        assertEquals(4321, result.pid);
+        assertEquals(2, result.threads.size());
+
+        AnrTraceParser.ThreadStack main = result.threads.get(0);
+        assertEquals("main", main.name);
+        assertEquals(1, main.tid);
+        assertEquals("Blocked", main.state);
+        assertEquals(Arrays.asList(
+                "com.example.app.Repository.load(Repository.java:42)",
+                "com.example.app.MainActivity.onResume(MainActivity.java:17)",
+                "android.app.Activity.performResume(Activity.java:8000)"), main.frames);
+        assertEquals("<0x0a1b2c3d> (a java.lang.Object)", main.waitingToLock);
+        assertEquals(22, main.heldByTid);
+
+        AnrTraceParser.ThreadStack holder = result.threads.get(1);
+        assertEquals("DiskWorker", holder.name);
+        assertEquals(22, holder.tid);
+        assertEquals("Sleeping", holder.state);
+        assertEquals(Collections.singletonList("<0x0a1b2c3d> (a java.lang.Object)"), holder.lockedMonitors);
+        assertNull(holder.waitingToLock);
+    }
+
+    @Test
+    public void parse_stopsReadingOnceBlockingThreadsAreFound() throws IOException {
+        AnrTraceParser.Result result = parse(TRACE + repeat("\"filler\" prio=5 tid=99 Native\n", 10_000), 50);
+
+        assertEquals(2, result.threads.size());
+        assertTrue(result.bytesRead < TRACE.length() + 8 * 1024);
+    }
+
+    @Test
+    public void parse_truncatesFramesAndLongLines() throws IOException {
+        String longFrame = "com.example." + repeat("x", 2000) + ".run(X.java:1)";
+        String trace = "\"main\" prio=5 tid=1 Native\n"
+                + "  at " + longFrame + "\n"
+                + "  at a.B.c(B.java:1)\n"
+                + "  at a.B.d(B.java:2)\n"
+                + "\n";
+
+        AnrTraceParser.Result result = parse(trace, 2);
+
+        AnrTraceParser.ThreadStack main = result.threads.get(0);
+        assertEquals(2, main.frames.size());
+        assertEquals(1, main.truncatedFrames);
+        assertTrue(main.frames.get(0).length() < AnrTraceParser.MAX_LINE_BYTES);
+    }
+
+    @Test
+    public void format_rendersKeptThreads() throws IOException {
+        String formatted = parse(TRACE, 1).format();
+
+        assertTrue(formatted.startsWith("\"main\" tid=1 Blocked\n"
+                + "  at com.example.app.Repository.load(Repository.java:42)\n"
+                + "  ... 2 more frames truncated\n"
+                + "  - waiting to lock <0x0a1b2c3d> (a java.lang.Object) held by thread 22\n"));
+        assertTrue(formatted.contains("\"DiskWorker\" tid=22 Sleeping\n"));
+    }
+
+    private static AnrTraceParser.Result parse(String trace, int maxFrames) throws IOException {
+        return AnrTraceParser.parse(
+                new ByteArrayInputStream(trace.getBytes(StandardCharsets.UTF_8)), 1024 * 1024, maxFrames);
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder sb = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+}
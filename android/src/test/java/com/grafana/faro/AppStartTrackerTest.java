@@ -0,0 +1,115 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.ApplicationStartInfo;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AppStartTrackerTest {
+    private static final long MS = 1_000_000L;
+
+    private final AppStartTracker tracker = new AppStartTracker();
+
+    @Test
+    public void report_coldStartHasPhasesFromProcessStart() {
+        markAll(1000, 1300, 1350, 1400, 1500, 1800);
+
+        Map<String, Object> report = tracker.report();
+
+        assertEquals(AppStartTracker.START_TYPE_COLD, report.get("startType"));
+        assertEquals(800L, report.get("appStartDuration"));
+        Map<?, ?> phases = (Map<?, ?>) report.get("phases");
+        assertEquals(5, phases.size());
+        assertEquals(300.0, phases.get("processStartToPluginAttach"));
+        assertEquals(50.0, phases.get("pluginAttachToActivityAttach"));
+        assertEquals(50.0, phases.get("activityAttachToResume"));
+        assertEquals(100.0, phases.get("resumeToFirstDraw"));
+        assertEquals(300.0, phases.get("firstDrawToFlutterFrame"));
+    }
+
+    @Test
+    public void report_warmStartBeginsAtTheActivity() {
+        tracker.setForegroundAtAttach(false);
+        markAll(1000, 1300, 60_000, 60_050, 60_150, 60_400);
+
+        Map<String, Object> report = tracker.report();
+
+        assertEquals(AppStartTracker.START_TYPE_WARM, report.get("startType"));
+        assertEquals(400L, report.get("appStartDuration"));
+        Map<?, ?> phases = (Map<?, ?>) report.get("phases");
+        assertEquals(3, phases.size());
+        assertFalse(phases.containsKey("processStartToPluginAttach"));
+        assertFalse(phases.containsKey("pluginAttachToActivityAttach"));
+    }
+
+    @Test
+    public void report_skipsPhasesOfMissingMilestones() {
+        tracker.mark(AppStartTracker.PROCESS_START, 1000 * MS);
+        tracker.mark(AppStartTracker.PLUGIN_ATTACH, 1200 * MS);
+        tracker.mark(AppStartTracker.ACTIVITY_ATTACH, 1250 * MS);
+        tracker.mark(AppStartTracker.ACTIVITY_RESUME, 1300 * MS);
+        tracker.mark(AppStartTracker.FLUTTER_FIRST_FRAME, 1700 * MS);
+
+        Map<String, Object> report = tracker.report();
+
+        assertEquals(700L, report.get("appStartDuration"));
+        Map<?, ?> phases = (Map<?, ?>) report.get("phases");
+        assertEquals(3, phases.size());
+        assertFalse(phases.containsKey("resumeToFirstDraw"));
+        assertFalse(phases.containsKey("firstDrawToFlutterFrame"));
+    }
+
+    @Test
+    public void mark_keepsTheFirstOccurrence() {
+        assertTrue(tracker.mark(AppStartTracker.ACTIVITY_RESUME, 100 * MS));
+        assertFalse(tracker.mark(AppStartTracker.ACTIVITY_RESUME, 900 * MS));
+        tracker.mark(AppStartTracker.FIRST_DRAW, 150 * MS);
+
+        Map<?, ?> phases = (Map<?, ?>) tracker.report().get("phases");
+
+        assertEquals(50.0, phases.get("resumeToFirstDraw"));
+    }
+
+    @Test
+    public void report_usesTheSystemStartRecord() {
+        markAll(1000, 1300, 1350, 1400, 1500, 1800);
+        Map<Integer, Long> timestamps = new HashMap<>();
+        timestamps.put(ApplicationStartInfo.START_TIMESTAMP_LAUNCH, 900 * MS);
+        timestamps.put(ApplicationStartInfo.START_TIMESTAMP_FORK, 1000 * MS);
+        timestamps.put(ApplicationStartInfo.START_TIMESTAMP_BIND_APPLICATION, 1020 * MS);
+        timestamps.put(ApplicationStartInfo.START_TIMESTAMP_APPLICATION_ONCREATE, 1100 * MS);
+        timestamps.put(ApplicationStartInfo.START_TIMESTAMP_FIRST_FRAME, 1520 * MS);
+        tracker.setSystemStart(ApplicationStartInfo.START_TYPE_COLD, timestamps);
+
+        Map<?, ?> phases = (Map<?, ?>) tracker.report().get("phases");
+
+        assertEquals(100.0, phases.get("launchToFork"));
+        assertEquals(20.0, phases.get("forkToBindApplication"));
+        assertEquals(80.0, phases.get("bindApplicationToApplicationOnCreate"));
+        assertEquals(420.0, phases.get("applicationOnCreateToFirstFrame"));
+        assertFalse(phases.containsKey("firstFrameToFullyDrawn"));
+    }
+
+    @Test
+    public void report_systemStartTypeOverridesTheForegroundGuess() {
+        markAll(1000, 1300, 1350, 1400, 1500, 1800);
+        tracker.setSystemStart(ApplicationStartInfo.START_TYPE_WARM, null);
+
+        Map<String, Object> report = tracker.report();
+
+        assertEquals(AppStartTracker.START_TYPE_WARM, report.get("startType"));
+        assertEquals(450L, report.get("appStartDuration"));
+    }
+
+    private void markAll(long... milestonesMs) {
+        for (int i = 0; i < milestonesMs.length; i++) {
+            tracker.mark(i, milestonesMs[i] * MS);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CrashJournalTest {
+
+    private File file;
+    private CrashJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("crash", "journal");
+        file.delete();
+        journal = new CrashJournal(file, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+        file.delete();
+    }
+
+    @Test
+    public void read_pagesThroughRecordsWithCursor() {
+        journal.append("one");
+        journal.append("two");
+        journal.append("three");
+
+        CrashJournal.Page first = journal.read(0, 2);
+        assertEquals(Arrays.asList("one", "two"), first.records);
+        assertTrue(first.hasMore);
+
+        CrashJournal.Page second = journal.read(first.cursor, 2);
+        assertEquals(Collections.singletonList("three"), second.records);
+        assertFalse(second.hasMore);
+    }
+
+    @Test
+    public void read_survivesReopening() {
+        journal.append("before restart");
+        journal.close();
+
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        reopened.append("after restart");
+
+        assertEquals(Arrays.asList("before restart", "after restart"), reopened.read(0, 10).records);
+        reopened.close();
+    }
+
+    @Test
+    public void append_evictsOldestRecordsPastSizeCap() {
+        String payload = repeat('x', 200);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(journal.append(i + payload));
+        }
+
+        CrashJournal.Page page = journal.read(0, 100);
+        assertTrue(journal.size() <= 1024);
+        assertEquals(1024 / (CrashJournal.HEADER_BYTES + 201), page.records.size());
+        assertTrue(page.records.get(page.records.size() - 1).startsWith("9"));
+    }
+
+    @Test
+    public void append_rejectsRecordLargerThanJournal() {
+        assertFalse(journal.append(repeat('x', 2000)));
+        assertTrue(journal.read(0, 10).records.isEmpty());
+    }
+
+    @Test
+    public void read_skipsTornTailAndAppendsAfterIt() throws IOException {
+        journal.append("complete");
+        journal.append("torn record");
+        journal.close();
+        // Simulate a process dying in the middle of the second write
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        assertEquals(Collections.singletonList("complete"), reopened.read(0, 10).records);
+        reopened.append("next");
+
+        assertEquals(Arrays.asList("complete", "next"), reopened.read(0, 10).records);
+        reopened.close();
+    }
+
+    @Test
+    public void read_skipsCorruptedRecord() throws IOException {
+        journal.append("first");
+        journal.append("second");
+        journal.append("third");
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Flip a payload byte of the second record
+            long secondPayload = 2L * CrashJournal.HEADER_BYTES + "first".length();
+            raf.seek(secondPayload);
+            raf.write('S');
+        }
+
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        assertEquals(Arrays.asList("first", "third"), reopened.read(0, 10).records);
+        reopened.close();
+    }
+
+    @Test
+    public void acknowledge_removesDeliveredRecords() {
+        journal.append("one");
+        journal.append("two");
+        CrashJournal.Page page = journal.read(0, 1);
+
+        journal.acknowledge(page.cursor);
+
+        assertEquals(Collections.singletonList("two"), journal.read(0, 10).records);
+        journal.append("three");
+        assertEquals(Arrays.asList("two", "three"), journal.read(0, 10).records);
+    }
+
+    @Test
+    public void append_afterAcknowledgeDoesNotReopen() throws IOException {
+        journal.prepare(64);
+        journal.append("one");
+        journal.append("two");
+
+        journal.acknowledge(journal.read(0, 1).cursor);
+        // A journal reopened from the path would read this one instead
+        File replacement = File.createTempFile("crash", "journal");
+        replacement.delete();
+        CrashJournal other = new CrashJournal(replacement, 1024);
+        other.append("other");
+        other.close();
+        File kept = new File(file.getPath() + ".kept");
+        assertTrue(file.renameTo(kept));
+        assertTrue(replacement.renameTo(file));
+        journal.append("three");
+
+        assertEquals(Arrays.asList("two", "three"), journal.read(0, 10).records);
+        assertTrue(file.delete());
+        assertTrue(kept.renameTo(file));
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        assertEquals(Arrays.asList("two", "three"), reopened.read(0, 10).records);
+        reopened.close();
+    }
+
+    @Test
+    public void openFile_leavesScanToFirstAppend() {
+        journal.append("one");
+        journal.append("two");
+        journal.close();
+
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        reopened.openFile();
+        reopened.append("three");
+
+        CrashJournal.Page page = reopened.read(0, 10);
+        assertEquals(Arrays.asList("one", "two", "three"), page.records);
+        assertEquals(3L, page.sequences[2]);
+        reopened.close();
+    }
+
+    @Test
+    public void acknowledge_beforeReadingContinuesSequence() {
+        journal.append("one");
+        journal.append("two");
+        journal.close();
+
+        CrashJournal reopened = new CrashJournal(file, 1024);
+        reopened.acknowledge(1L);
+        reopened.append("three");
+
+        assertEquals(Collections.singletonList("three"), reopened.read(2L, 10).records);
+        reopened.close();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,126 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class CrashWriterTest {
+
+    private static final long TIMESTAMP_MS = 1_700_000_000_123L;
+    private static final int PID = 4321;
+
+    private final CrashWriter writer = new CrashWriter(CrashWriter.DEFAULT_CAPACITY);
+
+    @Test
+    public void write_serializesTypeMessageAndFrames() {
+        IllegalStateException exception = new IllegalStateException("boom");
+        exception.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.example.Foo", "bar", "Foo.java", 42),
+                new StackTraceElement("com.example.Foo", "run", null, -1),
+        });
+
+        String record = write(exception);
+
+        assertEquals("{\"timestamp\":1700000000123,\"pid\":4321,"
+                + "\"type\":\"java.lang.IllegalStateException\",\"value\":\"boom\","
+                + "\"stacktrace\":\"java.lang.IllegalStateException: boom\\n"
+                + "\\tat com.example.Foo.bar(Foo.java:42)\\n"
+                + "\\tat com.example.Foo.run(Unknown Source)\\n\","
+                + "\"truncated\":false}", record);
+    }
+
+    @Test
+    public void write_includesCausesAndSuppressedExceptions() {
+        RuntimeException exception = new RuntimeException("outer", new IOException("disk"));
+        exception.addSuppressed(new IllegalArgumentException("cleanup"));
+
+        String record = write(exception);
+
+        assertTrue(record.contains("\\nCaused by: java.io.IOException: disk\\n"));
+        assertTrue(record.contains("\\n\\tSuppressed: java.lang.IllegalArgumentException: cleanup\\n"));
+        // Frames shared with the enclosing trace are collapsed
+        assertTrue(record.contains(" more\\n"));
+        assertTrue(record.endsWith("\"truncated\":false}"));
+    }
+
+    @Test
+    public void write_stopsAtCircularReferences() {
+        RuntimeException first = new RuntimeException("first");
+        RuntimeException second = new RuntimeException("second", first);
+        first.initCause(second);
+
+        String record = write(first);
+
+        assertTrue(record.contains("Caused by: [CIRCULAR REFERENCE: java.lang.RuntimeException]"));
+        assertTrue(record.endsWith("\"truncated\":false}"));
+    }
+
+    @Test
+    public void write_escapesAndEncodesMessage() {
+        String record = write(new RuntimeException("q\"b\\s\u0001 \u00e9 \uD83D\uDE00"));
+
+        assertTrue(record.contains("\"value\":\"q\\\"b\\\\s\\u0001 \u00e9 \uD83D\uDE00\""));
+    }
+
+    @Test
+    public void write_truncatesOnWholeCharactersWhenBufferIsFull() {
+        CrashWriter small = new CrashWriter(200);
+        RuntimeException exception = new RuntimeException(repeat('\u00e9', 150));
+
+        int length = small.write(exception, TIMESTAMP_MS, PID);
+        String record = new String(small.buffer(), 0, length, StandardCharsets.UTF_8);
+
+        assertTrue(length <= 200);
+        assertTrue(record.startsWith("{\"timestamp\":1700000000123,\"pid\":4321,\"type\":\"java.lang.RuntimeException\",\"value\":\"\u00e9\u00e9"));
+        assertTrue(record.endsWith("\u00e9\",\"truncated\":true}"));
+    }
+
+    @Test
+    public void uncaughtException_writesRecordWithinTimeBound() throws IOException {
+        File file = File.createTempFile("crash", "journal");
+        file.delete();
+        CrashJournal journal = new CrashJournal(file, CrashJournal.DEFAULT_MAX_BYTES);
+        ExceptionHandler handler = new ExceptionHandler(journal);
+        handler.install(Runnable::run);
+        try {
+            RuntimeException exception = new RuntimeException("deep", new IllegalStateException("cause"));
+            StackTraceElement[] trace = new StackTraceElement[1000];
+            for (int i = 0; i < trace.length; i++) {
+                trace[i] = new StackTraceElement("com.example.Recursive", "call" + i, "Recursive.java", i);
+            }
+            exception.setStackTrace(trace);
+
+            long startNanos = System.nanoTime();
+            handler.uncaughtException(Thread.currentThread(), exception);
+            long captureNanos = System.nanoTime() - startNanos;
+
+            List<String> records = journal.read(0, 10).records;
+            assertEquals(1, records.size());
+            assertTrue(records.get(0).contains("com.example.Recursive.call999(Recursive.java:999)"));
+            assertTrue(records.get(0).contains("Caused by: java.lang.IllegalStateException: cause"));
+            assertTrue("capture took " + captureNanos + "ns", captureNanos < 250_000_000L);
+        } finally {
+            handler.uninstall();
+            journal.close();
+            file.delete();
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private String write(Throwable throwable) {
+        int length = writer.write(throwable, TIMESTAMP_MS, PID);
+        return new String(writer.buffer(), 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,203 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
+
+public class EventAggregatorTest {
+
+    private static final long BUDGET_60_HZ = FrameTimingMonitor.frameBudgetNanos(60f);
+
+    @Test
+    public void drain_returnsNullWhenNothingRecorded() {
+        EventAggregator aggregator = new EventAggregator();
+
+        assertNull(aggregator.drain());
+    }
+
+    @Test
+    public void drain_coalescesFramesIntoOneRecord() {
+        EventAggregator aggregator = new EventAggregator();
+        aggregator.recordFrame(10_000_000L, BUDGET_60_HZ, false);
+        aggregator.recordFrame(40_000_000L, BUDGET_60_HZ, false);
+        aggregator.recordFrame(150_000_000L, BUDGET_60_HZ, true);
+
+        ByteBuffer batch = read(aggregator.drain());
+
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_FRAMES, batch.get());
+        assertEquals(20, batch.getShort());
+        assertEquals(3, batch.getInt());
+        assertEquals(2, batch.getInt());
+        assertEquals(1, batch.getInt());
+        // 1 + 3 + 9 vsync intervals
+        assertEquals(13 * BUDGET_60_HZ, batch.getLong());
+        assertEquals(EventAggregator.RECORD_FRAME_BUDGET_HISTOGRAM, batch.get());
+        assertEquals(21, batch.getShort());
+        assertEquals(EventAggregator.FRAME_BUDGET_BUCKETS, batch.get());
+        assertEquals(1, batch.getInt()); // on time
+        assertEquals(0, batch.getInt()); // 1 missed
+        assertEquals(1, batch.getInt()); // 2-3 missed
+        assertEquals(0, batch.getInt()); // 4-7 missed
+        assertEquals(1, batch.getInt()); // 8+ missed
+        assertEquals(0, batch.remaining());
+    }
+
+    @Test
+    public void recordFrame_judgesSlowFramesAgainstDisplayBudget() {
+        EventAggregator aggregator = new EventAggregator();
+        long budget120Hz = FrameTimingMonitor.frameBudgetNanos(120f);
+
+        // 12ms is on time at 60 Hz but misses a vsync at 120 Hz
+        aggregator.recordFrame(12_000_000L, budget120Hz, false);
+
+        ByteBuffer batch = read(aggregator.drain());
+        batch.position(1 + 3 + 4);
+        assertEquals(1, batch.getInt());
+    }
+
+    @Test
+    public void frameBudgetBucket_groupsMissedVsyncsByPowersOfTwo() {
+        assertEquals(0, EventAggregator.frameBudgetBucket(0));
+        assertEquals(1, EventAggregator.frameBudgetBucket(1));
+        assertEquals(2, EventAggregator.frameBudgetBucket(2));
+        assertEquals(2, EventAggregator.frameBudgetBucket(3));
+        assertEquals(3, EventAggregator.frameBudgetBucket(7));
+        assertEquals(4, EventAggregator.frameBudgetBucket(8));
+        assertEquals(4, EventAggregator.frameBudgetBucket(1000));
+    }
+
+    @Test
+    public void drain_includesAnrRecord() {
+        EventAggregator aggregator = new EventAggregator();
+        aggregator.recordAnr();
+        aggregator.recordAnr();
+
+        ByteBuffer batch = read(aggregator.drain());
+
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_ANR, batch.get());
+        assertEquals(4, batch.getShort());
+        assertEquals(2, batch.getInt());
+        assertEquals(0, batch.remaining());
+    }
+
+    @Test
+    public void drain_resetsCounters() {
+        EventAggregator aggregator = new EventAggregator();
+        aggregator.recordFrame(16_000_000L, BUDGET_60_HZ, false);
+
+        aggregator.drain();
+
+        assertNull(aggregator.drain());
+    }
+
+    @Test
+    public void flush_spoolsBatchWhileNoChannelIsSet() throws IOException {
+        File file = File.createTempFile("telemetry", "spool");
+        TelemetrySpool spool = new TelemetrySpool(file, 1024);
+        EventAggregator aggregator = new EventAggregator();
+        aggregator.setSpool(spool);
+        aggregator.recordAnr();
+
+        aggregator.flush();
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        spool.drainTo(records);
+        assertEquals(1, records.size());
+        assertEquals(TelemetrySpool.RECORD_EVENT_BATCH, records.get(0).type);
+        ByteBuffer batch = ByteBuffer.wrap(records.get(0).data).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_ANR, batch.get());
+        assertNull(aggregator.drain());
+        file.delete();
+    }
+
+    @Test
+    public void flush_sendsBatchToMostRecentChannelOnly() {
+        EventAggregator aggregator = new EventAggregator();
+        RecordingChannel first = new RecordingChannel();
+        RecordingChannel second = new RecordingChannel();
+        aggregator.addChannel(first);
+        aggregator.addChannel(second);
+        aggregator.addChannel(second);
+        aggregator.recordAnr();
+
+        aggregator.flush();
+
+        assertEquals(0, first.batches.size());
+        assertEquals(1, second.batches.size());
+        assertEquals(EventAggregator.RECORD_ANR, read(second.batches.get(0)).get(1));
+    }
+
+    @Test
+    public void flush_fallsBackToPreviousChannelOnRemoval() {
+        EventAggregator aggregator = new EventAggregator();
+        RecordingChannel first = new RecordingChannel();
+        RecordingChannel second = new RecordingChannel();
+        aggregator.addChannel(first);
+        aggregator.addChannel(second);
+        aggregator.removeChannel(second);
+        aggregator.recordAnr();
+
+        aggregator.flush();
+
+        assertEquals(1, first.batches.size());
+        assertEquals(0, second.batches.size());
+    }
+
+    @Test
+    public void removeChannel_spoolsPendingEventsOnceNoChannelIsLeft() throws IOException {
+        File file = File.createTempFile("telemetry", "spool");
+        TelemetrySpool spool = new TelemetrySpool(file, 1024);
+        EventAggregator aggregator = new EventAggregator();
+        aggregator.setSpool(spool);
+        RecordingChannel first = new RecordingChannel();
+        RecordingChannel second = new RecordingChannel();
+        aggregator.addChannel(first);
+        aggregator.addChannel(second);
+        aggregator.recordAnr();
+
+        aggregator.removeChannel(first);
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        spool.drainTo(records);
+        assertEquals(0, records.size());
+
+        aggregator.removeChannel(second);
+        spool.drainTo(records);
+        assertEquals(1, records.size());
+        assertNull(aggregator.drain());
+        file.delete();
+    }
+
+    private static final class RecordingChannel extends BasicMessageChannel<ByteBuffer> {
+        final List<ByteBuffer> batches = new ArrayList<>();
+
+        RecordingChannel() {
+            super(null, EventAggregator.CHANNEL_NAME, BinaryCodec.INSTANCE);
+        }
+
+        @Override
+        public void send(ByteBuffer message) {
+            batches.add(message);
+        }
+    }
+
+    private static ByteBuffer read(ByteBuffer batch) {
+        // Batches are handed to Flutter with the position at the end of the data
+        ByteBuffer copy = batch.duplicate();
+        copy.flip();
+        return copy.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,136 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+public class EventRingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveCapacity() {
+        new EventRingBuffer<String>(0);
+    }
+
+    @Test
+    public void drainTo_returnsEventsOldestFirstAndEmptiesBuffer() {
+        EventRingBuffer<String> buffer = new EventRingBuffer<>(4);
+        buffer.offer("a");
+        buffer.offer("b");
+
+        List<String> out = new ArrayList<>();
+        assertEquals(0, buffer.drainTo(out));
+
+        assertEquals(Arrays.asList("a", "b"), out);
+        assertTrue(buffer.isEmpty());
+        out.clear();
+        buffer.drainTo(out);
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    public void trimTo_keepsNewestEventsAndReportsDroppedOnNextDrain() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+
+        assertEquals(3, buffer.trimTo(2));
+        assertEquals(0, buffer.trimTo(2));
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(out));
+        assertEquals(Arrays.asList(3, 4), out);
+        assertEquals(3, buffer.getDroppedCount());
+        buffer.offer(5);
+        out.clear();
+        assertEquals(0, buffer.drainTo(out));
+        assertEquals(Arrays.asList(5), out);
+    }
+
+    @Test
+    public void offer_dropsOldestEventsWhenFull() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> out = new ArrayList<>();
+        int dropped = buffer.drainTo(out);
+
+        assertEquals(Arrays.asList(2, 3, 4), out);
+        assertEquals(2, dropped);
+        assertEquals(2, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void drainTo_countsDropsAcrossDrains() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(2);
+        buffer.offer(0);
+        buffer.drainTo(new ArrayList<>());
+        for (int i = 1; i <= 4; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(2, buffer.drainTo(out));
+        assertEquals(Arrays.asList(3, 4), out);
+        assertEquals(2, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void publish_neverOverwritesNewerLap() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(2);
+        long delayed = buffer.claim();
+        buffer.offer(1);
+        buffer.offer(2);
+
+        buffer.publish(delayed, 0);
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(1, buffer.drainTo(out));
+        assertEquals(Arrays.asList(1, 2), out);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void offer_concurrentProducersLoseNothingBelowCapacity() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 250;
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(producers * perProducer);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.offer(base + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(0, buffer.drainTo(out));
+
+        Set<Integer> unique = new HashSet<>(out);
+        assertEquals(producers * perProducer, unique.size());
+    }
+}
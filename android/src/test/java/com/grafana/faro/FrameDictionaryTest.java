@@ -0,0 +1,89 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FrameDictionaryTest {
+
+    private static final StackTraceElement LOOP =
+            new StackTraceElement("android.os.Looper", "loop", "Looper.java", 205);
+    private static final StackTraceElement READ =
+            new StackTraceElement("com.example.Db", "read", "Db.java", 42);
+
+    @Before
+    @After
+    public void clearDictionary() {
+        FrameDictionary.clear();
+    }
+
+    @Test
+    public void intern_assignsDenseIdsOncePerFrame() {
+        assertEquals(0, FrameDictionary.intern(READ));
+        assertEquals(1, FrameDictionary.intern(LOOP));
+        assertEquals(0, FrameDictionary.intern(
+                new StackTraceElement("com.example.Db", "read", "Db.java", 42)));
+        assertEquals(2, FrameDictionary.size());
+    }
+
+    @Test
+    public void intern_stackKeepsInnermostFrames() {
+        int[] frameIds = FrameDictionary.intern(new StackTraceElement[] {READ, LOOP, READ}, 2);
+
+        assertArrayEquals(new int[] {0, 1}, frameIds);
+    }
+
+    @Test
+    public void framesFrom_returnsOnlyFramesNotYetKnown() {
+        FrameDictionary.intern(READ);
+        FrameDictionary.intern(LOOP);
+
+        assertEquals(
+                Arrays.asList("com.example.Db.read(Db.java:42)", "android.os.Looper.loop(Looper.java:205)"),
+                framesFrom(0));
+        assertEquals(
+                Collections.singletonList("android.os.Looper.loop(Looper.java:205)"),
+                framesFrom(1));
+        assertEquals(Collections.emptyList(), framesFrom(2));
+    }
+
+    @Test
+    public void framesFrom_returnsIdOfFirstFrameCopied() {
+        FrameDictionary.intern(READ);
+        List<String> frames = new ArrayList<>();
+
+        assertEquals(1, FrameDictionary.framesFrom(5, frames));
+        assertTrue(frames.isEmpty());
+
+        FrameDictionary.intern(LOOP);
+        assertEquals(1, FrameDictionary.framesFrom(1, frames));
+        assertEquals(Collections.singletonList("android.os.Looper.loop(Looper.java:205)"), frames);
+    }
+
+    @Test
+    public void intern_returnsUnknownOnceFull() {
+        for (int i = 0; i < FrameDictionary.MAX_FRAMES; i++) {
+            FrameDictionary.intern(new StackTraceElement("C", "m" + i, "C.java", i));
+        }
+
+        assertEquals(FrameDictionary.UNKNOWN, FrameDictionary.intern(READ));
+        assertNull(FrameDictionary.intern(new StackTraceElement[] {READ}, 1));
+        assertEquals(0, FrameDictionary.intern(new StackTraceElement("C", "m0", "C.java", 0)));
+    }
+
+    private static List<String> framesFrom(int fromId) {
+        List<String> frames = new ArrayList<>();
+        FrameDictionary.framesFrom(fromId, frames);
+        return frames;
+    }
+}
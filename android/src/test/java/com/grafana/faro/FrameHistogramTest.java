@@ -0,0 +1,81 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class FrameHistogramTest {
+
+    @Test
+    public void bucketIndex_isContinuousAndMonotonic() {
+        int previous = FrameHistogram.bucketIndex(0);
+        for (long value = 1; value < 1_000_000L; value++) {
+            int index = FrameHistogram.bucketIndex(value);
+            assertTrue("Gap at " + value, index == previous || index == previous + 1);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void bucketUpperBound_isFirstValueOfNextBucket() {
+        int last = FrameHistogram.bucketIndex(FrameHistogram.MAX_VALUE_MICROS);
+        for (int index = 0; index < last; index++) {
+            long upperBound = FrameHistogram.bucketUpperBound(index);
+            assertEquals(index, FrameHistogram.bucketIndex(upperBound - 1));
+            assertEquals(index + 1, FrameHistogram.bucketIndex(upperBound));
+        }
+    }
+
+    @Test
+    public void getValueAtPercentile_staysWithinRelativeError() {
+        FrameHistogram histogram = new FrameHistogram();
+        for (long micros = 1; micros <= 100_000L; micros++) {
+            histogram.record(micros);
+        }
+
+        assertWithinError(50_000L, histogram.getValueAtPercentile(50));
+        assertWithinError(90_000L, histogram.getValueAtPercentile(90));
+        assertWithinError(99_000L, histogram.getValueAtPercentile(99));
+        assertEquals(100_000L, histogram.getValueAtPercentile(100));
+        assertEquals(100_000L, histogram.getMaxValue());
+    }
+
+    @Test
+    public void record_clampsValuesOutOfRange() {
+        FrameHistogram histogram = new FrameHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(FrameHistogram.MAX_VALUE_MICROS, histogram.getMaxValue());
+    }
+
+    @Test
+    public void snapshotAndReset_exportsNonEmptyBucketsAndResets() {
+        FrameHistogram histogram = new FrameHistogram();
+        histogram.record(8_000L);
+        histogram.record(8_100L);
+        histogram.record(33_000L);
+
+        Map<String, Object> snapshot = histogram.snapshotAndReset();
+
+        assertEquals(3L, snapshot.get("count"));
+        assertEquals(33_000L, snapshot.get("max"));
+        assertArrayEquals(new long[] {2, 1}, (long[]) snapshot.get("bucketCounts"));
+        long[] upperBounds = (long[]) snapshot.get("bucketUpperBounds");
+        assertEquals(2, upperBounds.length);
+        assertTrue(upperBounds[0] > 8_100L && upperBounds[1] > 33_000L);
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0L, histogram.snapshotAndReset().get("p99"));
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue("Expected ~" + expected + ", got " + actual, error <= 1.0 / 16);
+    }
+}
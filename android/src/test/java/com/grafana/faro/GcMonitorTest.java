@@ -0,0 +1,144 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GcMonitorTest {
+    private static final long MS = 1_000_000L;
+
+    private final Map<String, String> stats = new HashMap<>();
+    private final EventAggregator aggregator = new EventAggregator(new NativeScheduler());
+    private final GcMonitor monitor = new GcMonitor(aggregator, new NativeScheduler(), stats::get, true);
+
+    @Test
+    public void poll_recordsDeltasSinceBaseline() {
+        setStats(10, 200, 1, 30, 1_000_000, 500_000);
+        assertTrue(monitor.poll(0L));
+        assertNull(aggregator.drain());
+
+        setStats(13, 260, 2, 75, 9_000_000, 4_500_000);
+        assertTrue(monitor.poll(2000 * MS));
+
+        ByteBuffer gc = gcRecord(aggregator.drain());
+        assertEquals(3, gc.getInt());
+        assertEquals(1, gc.getInt());
+        assertEquals(0, gc.getInt());
+        assertEquals(60L, gc.getLong());
+        assertEquals(45L, gc.getLong());
+        assertEquals(8_000_000L, gc.getLong());
+        assertEquals(4_000_000L, gc.getLong());
+        assertEquals(2000L, gc.getLong());
+    }
+
+    @Test
+    public void poll_withoutCollectionIsSentWithNextBatch() {
+        setStats(10, 200, 1, 30, 1_000_000, 500_000);
+        monitor.poll(0L);
+        setStats(10, 200, 1, 30, 3_000_000, 500_000);
+        monitor.poll(1000 * MS);
+
+        assertNull(aggregator.drain());
+
+        aggregator.recordAnr();
+        ByteBuffer batch = aggregator.drain();
+        ByteBuffer gc = gcRecord(batch);
+        assertEquals(0, gc.getInt());
+        gc.position(gc.position() + 4 + 4 + 8 + 8);
+        assertEquals(2_000_000L, gc.getLong());
+    }
+
+    @Test
+    public void poll_failsWithoutRuntimeStats() {
+        assertFalse(monitor.poll(0L));
+    }
+
+    @Test
+    public void isBlockingGcDuring_requiresBlockingTimeWithinFrame() {
+        monitor.start();
+        setStats(10, 200, 1, 30, 0, 0);
+        monitor.poll(0L);
+
+        // 50ms of blocking GC since the poll, but the frame started 400ms after it
+        setStats(11, 250, 2, 80, 0, 0);
+        assertFalse(monitor.isBlockingGcDuring(400 * MS, 600 * MS));
+
+        // 150ms of blocking GC since the previous frame ended 50ms before this one started
+        setStats(12, 400, 3, 230, 0, 0);
+        assertTrue(monitor.isBlockingGcDuring(650 * MS, 900 * MS));
+
+        // No new blocking GC
+        assertFalse(monitor.isBlockingGcDuring(950 * MS, 1100 * MS));
+        monitor.stop();
+    }
+
+    @Test
+    public void start_hasNoEffectWithoutRuntimeStats() {
+        GcMonitor unsupported = new GcMonitor(aggregator, new NativeScheduler(), stats::get, false);
+        unsupported.start();
+
+        assertFalse(unsupported.isRunning());
+    }
+
+    @Test
+    public void isBlockingGcDuring_isFalseWhileStopped() {
+        setStats(10, 200, 1, 30, 0, 0);
+        monitor.poll(0L);
+        setStats(11, 400, 2, 230, 0, 0);
+
+        assertFalse(monitor.isBlockingGcDuring(10 * MS, 300 * MS));
+    }
+
+    @Test
+    public void frozenFrame_isTaggedWhenBlockingGcOverlaps() {
+        FrameTimingMonitor frames = new FrameTimingMonitor(aggregator, monitor);
+        monitor.start();
+        setStats(10, 200, 1, 30, 0, 0);
+        monitor.poll(System.nanoTime());
+        setStats(11, 400, 2, 230, 0, 0);
+
+        frames.recordFrame(System.nanoTime(), 250 * MS);
+        monitor.stop();
+
+        ByteBuffer gc = gcRecord(aggregator.drain());
+        gc.position(gc.position() + 8);
+        assertEquals(1, gc.getInt());
+    }
+
+    private void setStats(long count, long timeMs, long blockingCount, long blockingTimeMs,
+                          long bytesAllocated, long bytesFreed) {
+        stats.put("art.gc.gc-count", String.valueOf(count));
+        stats.put("art.gc.gc-time", String.valueOf(timeMs));
+        stats.put("art.gc.blocking-gc-count", String.valueOf(blockingCount));
+        stats.put("art.gc.blocking-gc-time", String.valueOf(blockingTimeMs));
+        stats.put("art.gc.bytes-allocated", String.valueOf(bytesAllocated));
+        stats.put("art.gc.bytes-freed", String.valueOf(bytesFreed));
+    }
+
+    /**
+     * @return The batch positioned at the GC record payload
+     */
+    private static ByteBuffer gcRecord(ByteBuffer batch) {
+        batch.flip();
+        batch.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        while (batch.remaining() >= 3) {
+            byte type = batch.get();
+            int length = batch.getShort() & 0xffff;
+            if (type == EventAggregator.RECORD_GC) {
+                assertEquals(52, length);
+                return batch;
+            }
+            batch.position(batch.position() + length);
+        }
+        throw new AssertionError("No GC record");
+    }
+}
@@ -0,0 +1,100 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class HandledExitStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("handled", "exits");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void isHandled_matchesTimestampAndPid() {
+        HandledExitStore store = new HandledExitStore(file);
+        store.markHandled(1000L, 42);
+
+        assertTrue(store.isHandled(1000L, 42));
+        assertFalse(store.isHandled(1000L, 43));
+        assertFalse(store.isHandled(1001L, 42));
+    }
+
+    @Test
+    public void save_persistsAcrossInstances() {
+        HandledExitStore store = new HandledExitStore(file);
+        assertFalse(store.exists());
+        store.markHandled(3000L, 3);
+        store.markHandled(1000L, 1);
+        store.advanceTo(500L);
+        assertTrue(store.save());
+
+        HandledExitStore reloaded = new HandledExitStore(file);
+        assertTrue(reloaded.exists());
+        assertEquals(500L, reloaded.getHighWaterMark());
+        assertTrue(reloaded.isHandled(1000L, 1));
+        assertTrue(reloaded.isHandled(3000L, 3));
+        assertTrue(reloaded.isHandled(100L, 7));
+        assertFalse(reloaded.isHandled(2000L, 2));
+    }
+
+    @Test
+    public void advanceTo_forgetsExitsBelowHighWaterMark() {
+        HandledExitStore store = new HandledExitStore(file);
+        store.markHandled(1000L, 1);
+        store.markHandled(2000L, 2);
+        store.markHandled(2000L, 3);
+
+        store.advanceTo(2000L);
+
+        assertEquals(2, store.size());
+        assertTrue(store.isHandled(1000L, 1));
+        assertTrue(store.isHandled(2000L, 3));
+        assertFalse(store.isHandled(2000L, 4));
+    }
+
+    @Test
+    public void markHandled_staysBoundedWhenFull() {
+        HandledExitStore store = new HandledExitStore(file);
+        for (int i = 0; i < HandledExitStore.MAX_ENTRIES * 2; i++) {
+            store.markHandled(1000L + i, i);
+        }
+
+        assertEquals(HandledExitStore.MAX_ENTRIES, store.size());
+        for (int i = 0; i < HandledExitStore.MAX_ENTRIES * 2; i++) {
+            assertTrue(store.isHandled(1000L + i, i));
+        }
+        assertFalse(store.isHandled(1000L + HandledExitStore.MAX_ENTRIES * 2, 0));
+    }
+
+    @Test
+    public void load_ignoresCorruptedFile() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+        }
+
+        HandledExitStore store = new HandledExitStore(file);
+
+        assertFalse(store.isHandled(1000L, 1));
+        store.markHandled(1000L, 1);
+        assertTrue(store.save());
+        assertTrue(new HandledExitStore(file).isHandled(1000L, 1));
+    }
+}
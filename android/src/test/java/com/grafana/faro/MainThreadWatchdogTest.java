@@ -0,0 +1,184 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Printer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class MainThreadWatchdogTest {
+
+    private static final long[] THRESHOLDS_MS = {200L, 1000L, 5000L};
+
+    @Test
+    public void check_disarmsWhileMainThreadIsIdle() {
+        EventAggregator aggregator = new EventAggregator();
+        MainThreadWatchdog watchdog = new MainThreadWatchdog(aggregator, THRESHOLDS_MS, 50L, null);
+
+        watchdog.onDispatchStart(1_000L);
+        watchdog.onDispatchEnd();
+
+        assertEquals(-1L, watchdog.check(1_200L));
+        assertNull(aggregator.drain());
+    }
+
+    @Test
+    public void check_reportsEachCrossedThresholdOnce() {
+        EventAggregator aggregator = new EventAggregator();
+        MainThreadWatchdog watchdog = new MainThreadWatchdog(aggregator, THRESHOLDS_MS, 50L, null);
+
+        watchdog.onDispatchStart(1_000L);
+        assertEquals(2_000L, watchdog.check(1_250L));
+        assertEquals(6_000L, watchdog.check(2_100L));
+        watchdog.onDispatchEnd();
+
+        int[] counts = stallCounts(aggregator.drain());
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(0, counts[2]);
+    }
+
+    @Test
+    public void check_rearmsForMessageStartedAfterPreviousOne() {
+        EventAggregator aggregator = new EventAggregator();
+        MainThreadWatchdog watchdog = new MainThreadWatchdog(aggregator, THRESHOLDS_MS, 50L, null);
+
+        watchdog.onDispatchStart(1_000L);
+        watchdog.onDispatchEnd();
+        watchdog.onDispatchStart(1_150L);
+
+        // The deadline armed for the first message fires while the second one is running
+        assertEquals(1_350L, watchdog.check(1_200L));
+        assertNull(aggregator.drain());
+    }
+
+    @Test
+    public void constructor_sortsAndDeduplicatesThresholds() {
+        EventAggregator aggregator = new EventAggregator();
+        MainThreadWatchdog watchdog = new MainThreadWatchdog(aggregator, new long[] {1000L, 0L, 200L, 1000L}, 50L, null);
+
+        watchdog.onDispatchStart(0L);
+        watchdog.check(300L);
+
+        ByteBuffer batch = read(aggregator.drain());
+        batch.position(1 + 3);
+        assertEquals(2, batch.get());
+        assertEquals(200, batch.getInt());
+        assertEquals(1, batch.getInt());
+        assertEquals(1000, batch.getInt());
+        assertEquals(0, batch.getInt());
+    }
+
+    @Test
+    public void check_startsSamplingOnceFirstThresholdIsCrossed() {
+        EventAggregator aggregator = new EventAggregator();
+        MainThreadWatchdog watchdog =
+                new MainThreadWatchdog(aggregator, THRESHOLDS_MS, 50L, Thread.currentThread());
+
+        watchdog.onDispatchStart(1_000L);
+        assertFalse(watchdog.sample());
+        assertEquals(0, watchdog.getProfiler().getSampleCount());
+
+        watchdog.check(1_200L);
+        assertEquals(1, watchdog.getProfiler().getSampleCount());
+        assertTrue(watchdog.sample());
+        assertEquals(2, watchdog.getProfiler().getSampleCount());
+
+        watchdog.onDispatchEnd();
+        assertFalse(watchdog.sample());
+        assertEquals(2, watchdog.getProfiler().getSampleCount());
+    }
+
+    @Test
+    public void stop_removesPrinterOnNextMessage() {
+        FakeMessageLogging looper = new FakeMessageLogging();
+        MainThreadWatchdog watchdog = watchdogOn(looper);
+
+        watchdog.start();
+        assertSame(watchdog, looper.printer);
+        watchdog.stop();
+        assertSame(watchdog, looper.printer);
+
+        looper.dispatch();
+        assertNull(looper.printer);
+    }
+
+    @Test
+    public void stop_keepsPrinterInstalledSinceStart() {
+        FakeMessageLogging looper = new FakeMessageLogging();
+        MainThreadWatchdog watchdog = watchdogOn(looper);
+        Printer other = x -> { };
+
+        watchdog.start();
+        looper.setPrinter(other);
+        watchdog.stop();
+        looper.dispatch();
+
+        assertSame(other, looper.printer);
+    }
+
+    @Test
+    public void start_afterStopKeepsPrinterInstalled() {
+        FakeMessageLogging looper = new FakeMessageLogging();
+        MainThreadWatchdog watchdog = watchdogOn(looper);
+
+        watchdog.start();
+        watchdog.stop();
+        watchdog.start();
+        looper.dispatch();
+
+        assertSame(watchdog, looper.printer);
+        assertTrue(watchdog.isRunning());
+    }
+
+    private static MainThreadWatchdog watchdogOn(FakeMessageLogging looper) {
+        return new MainThreadWatchdog(
+                new EventAggregator(), THRESHOLDS_MS, 50L, null, new NativeScheduler(), looper);
+    }
+
+    /**
+     * Main Looper message logging slot, calling the installed printer like Looper.loop()
+     */
+    private static class FakeMessageLogging implements MainThreadWatchdog.MessageLogging {
+        Printer printer;
+
+        @Override
+        public void setPrinter(Printer printer) {
+            this.printer = printer;
+        }
+
+        void dispatch() {
+            Printer logging = printer;
+            if (logging != null) {
+                logging.println(">>>>> Dispatching to Handler (android.os.Handler) {0} null: 0");
+                logging.println("<<<<< Finished to Handler (android.os.Handler) {0} null");
+            }
+        }
+    }
+
+    private static int[] stallCounts(ByteBuffer drained) {
+        ByteBuffer batch = read(drained);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_STALLS, batch.get());
+        batch.getShort();
+        int[] counts = new int[batch.get()];
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(THRESHOLDS_MS[i], batch.getInt());
+            counts[i] = batch.getInt();
+        }
+        return counts;
+    }
+
+    private static ByteBuffer read(ByteBuffer batch) {
+        ByteBuffer copy = batch.duplicate();
+        copy.flip();
+        return copy.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
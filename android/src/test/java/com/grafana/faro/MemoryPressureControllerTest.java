@@ -0,0 +1,87 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MemoryPressureControllerTest {
+    private static final long RSS_KB = 183_500L;
+
+    private final List<Integer> levels = new ArrayList<>();
+    private final EventAggregator aggregator = new EventAggregator(new NativeScheduler());
+    private final MemoryPressureController controller =
+            new MemoryPressureController(aggregator, new NativeScheduler(), levels::add, () -> RSS_KB);
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void pressureOf_mapsTrimLevels() {
+        assertEquals(MemoryPressureController.PRESSURE_NONE,
+                MemoryPressureController.pressureOf(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryPressureController.PRESSURE_ELEVATED,
+                MemoryPressureController.pressureOf(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(MemoryPressureController.PRESSURE_ELEVATED,
+                MemoryPressureController.pressureOf(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(MemoryPressureController.PRESSURE_CRITICAL,
+                MemoryPressureController.pressureOf(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(MemoryPressureController.PRESSURE_CRITICAL,
+                MemoryPressureController.pressureOf(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void signals_onlyNotifyWhenPressureRises() {
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        controller.onLowMemory();
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertEquals(Arrays.asList(
+                MemoryPressureController.PRESSURE_ELEVATED,
+                MemoryPressureController.PRESSURE_CRITICAL), levels);
+        assertEquals(MemoryPressureController.PRESSURE_CRITICAL, controller.getLevel());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void relieve_restoresOnce() {
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+
+        controller.relieve();
+        controller.relieve();
+
+        assertEquals(Arrays.asList(
+                MemoryPressureController.PRESSURE_CRITICAL,
+                MemoryPressureController.PRESSURE_NONE), levels);
+        assertEquals(MemoryPressureController.PRESSURE_NONE, controller.getLevel());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void signals_areRecordedWithRss() {
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        controller.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        controller.onLowMemory();
+
+        ByteBuffer batch = aggregator.drain();
+        batch.flip();
+        batch.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_MEMORY_PRESSURE, batch.get());
+        assertEquals(20, batch.getShort());
+        assertEquals(2, batch.getInt());
+        assertEquals(1, batch.getInt());
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, batch.getInt());
+        assertEquals(RSS_KB, batch.getLong());
+        assertEquals(0, batch.remaining());
+    }
+}
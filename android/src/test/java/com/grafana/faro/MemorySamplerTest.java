@@ -0,0 +1,99 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class MemorySamplerTest {
+    private static final long PAGE_SIZE_KB = 4L;
+
+    private File statm;
+
+    @Before
+    public void setUp() throws IOException {
+        statm = File.createTempFile("statm", "");
+    }
+
+    @After
+    public void tearDown() {
+        statm.delete();
+    }
+
+    @Test
+    public void sample_readsRssFromStatmPages() throws IOException {
+        MemorySampler sampler = new MemorySampler(statm, PAGE_SIZE_KB, 10, 1024L);
+        writeResidentPages(2500);
+
+        sampler.sample(1000L);
+
+        assertEquals(10_000L, sampler.getRssKb());
+        assertTrue(sampler.getJavaHeapKb() > 0);
+    }
+
+    @Test
+    public void sample_takesBreakdownOnFirstAndEveryNthSample() throws IOException {
+        MemorySampler sampler = new MemorySampler(statm, PAGE_SIZE_KB, 3, 1024L);
+        writeResidentPages(1000);
+
+        assertTrue(sampler.sample(0L));
+        assertFalse(sampler.sample(1L));
+        assertFalse(sampler.sample(2L));
+        assertTrue(sampler.sample(3L));
+        assertFalse(sampler.sample(4L));
+
+        Map<String, Object> breakdown = sampler.drainBreakdown();
+        assertEquals(2, breakdown.get("periodicCount"));
+        assertEquals(0, breakdown.get("rssJumpCount"));
+        assertNull(sampler.drainBreakdown());
+    }
+
+    @Test
+    public void sample_takesBreakdownWhenRssJumps() throws IOException {
+        MemorySampler sampler = new MemorySampler(statm, PAGE_SIZE_KB, 100, 1024L);
+        writeResidentPages(1000);
+        assertTrue(sampler.sample(0L));
+
+        // 1020 kB of growth stays below the threshold
+        writeResidentPages(1255);
+        assertFalse(sampler.sample(1L));
+        writeResidentPages(1256);
+        assertTrue(sampler.sample(2L));
+        // The threshold applies from the last breakdown
+        writeResidentPages(1300);
+        assertFalse(sampler.sample(3L));
+
+        Map<String, Object> breakdown = sampler.drainBreakdown();
+        assertEquals(1, breakdown.get("periodicCount"));
+        assertEquals(1, breakdown.get("rssJumpCount"));
+    }
+
+    @Test
+    public void sample_takesPeriodicBreakdownsWithoutStatm() {
+        MemorySampler sampler = new MemorySampler(
+                new File("/nonexistent/proc/self/statm"), PAGE_SIZE_KB, 2, 1024L);
+
+        assertTrue(sampler.sample(0L));
+        assertFalse(sampler.sample(1L));
+        assertTrue(sampler.sample(2L));
+
+        assertEquals(-1L, sampler.getRssKb());
+    }
+
+    private void writeResidentPages(long pages) throws IOException {
+        String content = "500000 " + pages + " 300 10 0 2000 0\n";
+        try (FileOutputStream out = new FileOutputStream(statm)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
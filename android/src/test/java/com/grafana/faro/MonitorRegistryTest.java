@@ -0,0 +1,138 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class MonitorRegistryTest {
+
+    private static class CountingMonitor implements MonitorRegistry.Monitor {
+        int starts = 0;
+        int pauses = 0;
+        int stops = 0;
+
+        @Override
+        public void start() {
+            starts++;
+        }
+
+        @Override
+        public void pause() {
+            pauses++;
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+    }
+
+    @Test
+    public void transitions_areIdempotent() {
+        MonitorRegistry registry = new MonitorRegistry(null);
+        CountingMonitor monitor = new CountingMonitor();
+        registry.register(monitor);
+
+        // A config change reattach, followed by the activity resume
+        assertTrue(registry.moveToForeground());
+        assertFalse(registry.moveToForeground());
+        assertTrue(registry.moveToBackground());
+        assertFalse(registry.moveToBackground());
+        assertTrue(registry.moveToForeground());
+        assertFalse(registry.moveToForeground());
+
+        assertEquals(2, monitor.starts);
+        assertEquals(1, monitor.pauses);
+        assertEquals(0, monitor.stops);
+        assertEquals(MonitorRegistry.STATE_FOREGROUND, registry.getState());
+    }
+
+    @Test
+    public void moveToBackground_isSkippedWhileStopped() {
+        MonitorRegistry registry = new MonitorRegistry(null);
+        CountingMonitor monitor = new CountingMonitor();
+        registry.register(monitor);
+
+        assertFalse(registry.moveToBackground());
+        assertFalse(registry.stopAll());
+
+        assertEquals(0, monitor.pauses + monitor.stops);
+        assertEquals(MonitorRegistry.STATE_STOPPED, registry.getState());
+    }
+
+    @Test
+    public void register_startsMonitorInForeground() {
+        MonitorRegistry registry = new MonitorRegistry(null);
+        registry.moveToForeground();
+        CountingMonitor monitor = new CountingMonitor();
+
+        registry.register(monitor);
+        registry.register(monitor);
+
+        assertEquals(1, monitor.starts);
+        registry.stopAll();
+        assertEquals(1, monitor.stops);
+    }
+
+    @Test
+    public void refresh_restartsOnlyInForeground() {
+        MonitorRegistry registry = new MonitorRegistry(null);
+        CountingMonitor monitor = new CountingMonitor();
+        registry.register(monitor);
+
+        registry.refresh(monitor);
+        assertEquals(0, monitor.starts);
+
+        registry.moveToForeground();
+        registry.refresh(monitor);
+        assertEquals(2, monitor.starts);
+        assertEquals(1, monitor.pauses);
+    }
+
+    @Test
+    public void transition_continuesPastFailingMonitor() {
+        MonitorRegistry registry = new MonitorRegistry(null);
+        registry.register(new CountingMonitor() {
+            @Override
+            public void start() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        CountingMonitor monitor = new CountingMonitor();
+        registry.register(monitor);
+
+        assertTrue(registry.moveToForeground());
+
+        assertEquals(1, monitor.starts);
+        assertEquals(MonitorRegistry.STATE_FOREGROUND, registry.getState());
+    }
+
+    @Test
+    public void transitions_areRecordedToAggregator() {
+        EventAggregator aggregator = new EventAggregator();
+        MonitorRegistry registry = new MonitorRegistry(aggregator);
+        registry.register(new CountingMonitor());
+
+        registry.moveToForeground();
+        registry.moveToForeground();
+        registry.moveToBackground();
+
+        ByteBuffer batch = aggregator.drain();
+        batch.flip();
+        batch.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        assertEquals(EventAggregator.RECORD_MONITOR_TRANSITIONS, batch.get());
+        assertEquals(24, batch.getShort());
+        assertEquals(2, batch.getInt());
+        assertEquals(1, batch.getInt());
+        long totalNanos = batch.getLong();
+        long maxNanos = batch.getLong();
+        assertTrue(maxNanos >= 0 && maxNanos <= totalNanos);
+        assertEquals(0, batch.remaining());
+    }
+}
@@ -0,0 +1,114 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NativeSchedulerTest {
+
+    @Test
+    public void schedulePeriodic_alignsRelatedPeriodsToSharedWakeups() {
+        NativeScheduler scheduler = new NativeScheduler();
+        int[] runs = new int[2];
+        scheduler.schedulePeriodic(() -> runs[0]++, 1000L, 10_050L);
+        scheduler.schedulePeriodic(() -> runs[1]++, 5000L, 10_320L);
+
+        int wakeups = runFor(scheduler, 70_500L);
+
+        assertEquals(60, runs[0]);
+        assertEquals(12, runs[1]);
+        assertEquals(60, wakeups);
+    }
+
+    @Test
+    public void scheduleOnce_runsWithinToleranceOnSharedGrid() {
+        NativeScheduler scheduler = new NativeScheduler();
+        NativeScheduler.Timer timer = scheduler.scheduleOnce(() -> { }, 5000L, 1000L, 12_340L);
+
+        assertEquals(17_000L, scheduler.getNextWakeupMs());
+        assertEquals(0, scheduler.runDue(16_999L));
+        assertEquals(1, scheduler.runDue(17_000L));
+        assertFalse(scheduler.isScheduled(timer));
+        assertEquals(-1L, scheduler.getNextWakeupMs());
+    }
+
+    @Test
+    public void scheduleOnce_keepsDeadlineWhenToleranceExceedsDelay() {
+        NativeScheduler scheduler = new NativeScheduler();
+        scheduler.scheduleOnce(() -> { }, 300L, 1000L, 12_340L);
+
+        assertEquals(12_600L, scheduler.getNextWakeupMs());
+    }
+
+    @Test
+    public void cancel_removesWakeupOnceNoTimerIsLeft() {
+        NativeScheduler scheduler = new NativeScheduler();
+        int[] runs = new int[1];
+        NativeScheduler.Timer first = scheduler.schedulePeriodic(() -> runs[0]++, 1000L, 0L);
+        NativeScheduler.Timer second = scheduler.schedulePeriodic(() -> runs[0]++, 3000L, 0L);
+
+        scheduler.cancel(first);
+        assertEquals(3000L, scheduler.getNextWakeupMs());
+        scheduler.cancel(second);
+
+        assertEquals(-1L, scheduler.getNextWakeupMs());
+        assertEquals(0, scheduler.runDue(10_000L));
+        assertEquals(0, runs[0]);
+    }
+
+    @Test
+    public void runDue_skipsRunsMissedWhileLate() {
+        NativeScheduler scheduler = new NativeScheduler();
+        int[] runs = new int[1];
+        scheduler.schedulePeriodic(() -> runs[0]++, 1000L, 0L);
+
+        assertEquals(1, scheduler.runDue(25_430L));
+
+        assertEquals(1, runs[0]);
+        assertEquals(26_000L, scheduler.getNextWakeupMs());
+    }
+
+    @Test
+    public void runDue_firesTimersBeyondOneWheelRevolution() {
+        NativeScheduler scheduler = new NativeScheduler();
+        long period = NativeScheduler.TICK_MS * NativeScheduler.WHEEL_SLOTS * 3;
+        int[] runs = new int[1];
+        scheduler.schedulePeriodic(() -> runs[0]++, period, 0L);
+
+        assertEquals(period, scheduler.getNextWakeupMs());
+        assertEquals(0, scheduler.runDue(period - NativeScheduler.TICK_MS));
+        assertEquals(1, scheduler.runDue(period));
+        assertEquals(2 * period, scheduler.getNextWakeupMs());
+    }
+
+    @Test
+    public void runDue_keepsRunningAfterFailingTask() {
+        NativeScheduler scheduler = new NativeScheduler();
+        int[] runs = new int[1];
+        NativeScheduler.Timer failing = scheduler.schedulePeriodic(() -> {
+            throw new IllegalStateException("boom");
+        }, 1000L, 0L);
+        scheduler.schedulePeriodic(() -> runs[0]++, 1000L, 0L);
+
+        assertEquals(2, scheduler.runDue(1000L));
+
+        assertEquals(1, runs[0]);
+        assertTrue(scheduler.isScheduled(failing));
+    }
+
+    /**
+     * Follow the wakeups a scheduler asks for, as its thread would, until the given uptime
+     * @return Number of wakeups
+     */
+    private static int runFor(NativeScheduler scheduler, long untilMs) {
+        int wakeups = 0;
+        long next;
+        while ((next = scheduler.getNextWakeupMs()) != -1L && next < untilMs) {
+            scheduler.runDue(next);
+            wakeups++;
+        }
+        return wakeups;
+    }
+}
@@ -0,0 +1,193 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Microbenchmark of {@link ProcStatReader} against the split and regex parsers it replaced. It is
+ * ignored in the unit test runs: remove the {@link Ignore} annotation locally to run it. The time and
+ * allocation per sample of each parser are written to {@link #REPORT}, and only the values read are
+ * asserted, since timings depend on the host.
+ */
+@Ignore("Microbenchmark, run manually")
+public class ProcStatReaderBenchmarkTest {
+    private static final File REPORT = new File("build/reports/benchmarks/ProcStatReaderBenchmark.txt");
+    private static final int WARMUP_SAMPLES = 2_000;
+    private static final int SAMPLES = 20_000;
+
+    // Process name without spaces, which the split parser would misread
+    private static final String STAT_LINE =
+            "1234 (com.example.app) S 1 1234 0 0 -1 4194560 24017 0 0 0 "
+                    + "4294967396 250 7 3 20 0 25 0 12345 1700000000 20000 "
+                    + "18446744073709551615\n";
+
+    private static final String STATUS =
+            "Name:\tcom.example.app\n"
+                    + "Umask:\t0077\n"
+                    + "State:\tS (sleeping)\n"
+                    + "Tgid:\t1234\n"
+                    + "Pid:\t1234\n"
+                    + "PPid:\t1\n"
+                    + "FDSize:\t256\n"
+                    + "VmPeak:\t 2000000 kB\n"
+                    + "VmSize:\t 1900000 kB\n"
+                    + "VmHWM:\t  130000 kB\n"
+                    + "VmRSS:\t  123456 kB\n"
+                    + "RssAnon:\t   50000 kB\n"
+                    + "RssFile:\t   70000 kB\n"
+                    + "Threads:\t42\n";
+
+    private static final Pattern RSS_PATTERN = Pattern.compile("VmRSS:\\s+(\\d+) kB");
+    private static final byte[] VM_RSS = ProcStatReader.key("VmRSS:");
+
+    private final List<File> files = new ArrayList<>();
+    private final List<ProcStatReader> readers = new ArrayList<>();
+
+    private interface Sampler {
+        long sample() throws IOException;
+    }
+
+    @After
+    public void tearDown() {
+        for (ProcStatReader reader : readers) {
+            reader.close();
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void stat_readerMatchesSplitParser() throws IOException {
+        File stat = write(STAT_LINE);
+        ProcStatReader reader = reader(stat);
+        Sampler split = () -> splitCpuTicks(stat);
+        Sampler scan = () -> {
+            reader.refresh();
+            return reader.statField(14) + reader.statField(15) + reader.statField(16)
+                    + reader.statField(17) + reader.statField(22);
+        };
+
+        assertEquals(split.sample(), scan.sample());
+        report("stat split", split);
+        report("stat reader", scan);
+    }
+
+    @Test
+    public void status_readerMatchesRegexParser() throws IOException {
+        File status = write(STATUS);
+        ProcStatReader reader = reader(status);
+        Sampler regex = () -> regexRssKb(status);
+        Sampler scan = () -> {
+            reader.refresh();
+            return reader.valueOf(VM_RSS);
+        };
+
+        assertEquals(123456L, regex.sample());
+        assertEquals(regex.sample(), scan.sample());
+        report("status regex", regex);
+        report("status reader", scan);
+    }
+
+    /**
+     * The CPUInfo parser before ProcStatReader: utime, stime, cutime, cstime and starttime
+     */
+    private static long splitCpuTicks(File stat) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(stat));
+        String line = reader.readLine();
+        reader.close();
+        String[] statArray = line.split(" ");
+        return Long.parseLong(statArray[13]) + Long.parseLong(statArray[14])
+                + Long.parseLong(statArray[15]) + Long.parseLong(statArray[16])
+                + Long.parseLong(statArray[21]);
+    }
+
+    /**
+     * The MemoryUsageInfo parser before ProcStatReader
+     */
+    private static long regexRssKb(File status) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(status))) {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            for (String l : lines) {
+                Matcher matcher = RSS_PATTERN.matcher(l);
+                if (matcher.find()) {
+                    return (long) Double.parseDouble(matcher.group(1));
+                }
+            }
+            return ProcStatReader.MISSING;
+        }
+    }
+
+    private static void report(String name, Sampler sampler) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_SAMPLES; i++) {
+            checksum += sampler.sample();
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            checksum += sampler.sample();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        File directory = REPORT.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        try (FileWriter out = new FileWriter(REPORT, true)) {
+            out.write(String.format(Locale.US,
+                    "%-14s %8d ns/sample %8s bytes/sample (checksum %d)%n",
+                    name,
+                    elapsed / SAMPLES,
+                    allocatedBefore < 0 ? "n/a" : String.valueOf(allocated / SAMPLES),
+                    checksum));
+        }
+    }
+
+    /**
+     * @return Bytes allocated by the current thread, or -1 if the JVM doesn't account for them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private ProcStatReader reader(File file) {
+        ProcStatReader reader = new ProcStatReader(file, 1024);
+        readers.add(reader);
+        return reader;
+    }
+
+    private File write(String content) throws IOException {
+        File file = File.createTempFile("proc", "stat");
+        files.add(file);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,182 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+public class ProcStatReaderTest {
+
+    private static final String STAT_LINE =
+            "1234 (my (odd) app) S 1 1234 0 0 -1 4194560 24017 0 0 0 "
+                    + "4294967396 250 7 3 20 0 25 0 12345 1700000000 20000 "
+                    + "18446744073709551615\n";
+
+    private static final String STATUS =
+            "Name:\tmy app\n"
+                    + "VmPeak:\t 2000000 kB\n"
+                    + "VmRSS:\t  123456 kB\n"
+                    + "RssAnon:\t   50000 kB\n";
+
+    private File file;
+    private ProcStatReader reader;
+
+    @After
+    public void tearDown() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void statField_skipsProcessNameWithSpacesAndParentheses() throws IOException {
+        reader = readerFor(STAT_LINE);
+
+        assertTrue(reader.refresh());
+        assertEquals(1234L, reader.statField(1));
+        assertEquals(ProcStatReader.MISSING, reader.statField(3)); // state is not numeric
+        assertEquals(1L, reader.statField(4));
+        assertEquals(250L, reader.statField(15));
+        assertEquals(12345L, reader.statField(22));
+    }
+
+    @Test
+    public void statField_parsesValuesBeyondIntRange() throws IOException {
+        reader = readerFor(STAT_LINE);
+
+        reader.refresh();
+
+        assertEquals(4294967396L, reader.statField(14));
+    }
+
+    @Test
+    public void statField_returnsMissingPastLastField() throws IOException {
+        reader = readerFor("1 (a) S 2 3\n");
+
+        reader.refresh();
+
+        assertEquals(3L, reader.statField(5));
+        assertEquals(ProcStatReader.MISSING, reader.statField(6));
+    }
+
+    @Test
+    public void valueOf_findsKeyAtLineStart() throws IOException {
+        reader = readerFor(STATUS);
+
+        reader.refresh();
+
+        assertEquals(123456L, reader.valueOf(ProcStatReader.key("VmRSS:")));
+        assertEquals(50000L, reader.valueOf(ProcStatReader.key("RssAnon:")));
+        assertEquals(ProcStatReader.MISSING, reader.valueOf(ProcStatReader.key("VmSwap:")));
+    }
+
+    @Test
+    public void longAt_readsSpaceSeparatedFields() throws IOException {
+        reader = readerFor("1000 250 80 4 0 300 0\n");
+
+        reader.refresh();
+
+        assertEquals(1000L, reader.longAt(0));
+        assertEquals(250L, reader.longAt(1));
+        assertEquals(300L, reader.longAt(5));
+        assertEquals(ProcStatReader.MISSING, reader.longAt(7));
+    }
+
+    @Test
+    public void refresh_picksUpNewContent() throws IOException {
+        reader = readerFor("VmRSS:\t 1 kB\n");
+        reader.refresh();
+        assertEquals(1L, reader.valueOf(ProcStatReader.key("VmRSS:")));
+
+        write(file, "VmRSS:\t 22 kB\n");
+        reader.refresh();
+
+        assertEquals(22L, reader.valueOf(ProcStatReader.key("VmRSS:")));
+    }
+
+    @Test
+    public void load_readsOtherFileWithSharedBuffer() throws IOException {
+        file = File.createTempFile("proc", "stat");
+        write(file, "4321 (1.raster) S 1 1234 0 0 -1 4194560 0 0 0 0 77 11 0 0\n");
+        reader = new ProcStatReader(256);
+
+        assertFalse(reader.refresh());
+        assertTrue(reader.load(file));
+
+        assertEquals("1.raster", reader.statName());
+        assertEquals(77L, reader.statField(14));
+        assertEquals(11L, reader.statField(15));
+        assertFalse(reader.load(new File("/nonexistent/proc/task/1/stat")));
+        assertEquals(ProcStatReader.MISSING, reader.statField(14));
+    }
+
+    @Test
+    public void statName_keepsParenthesesInName() throws IOException {
+        reader = readerFor(STAT_LINE);
+
+        reader.refresh();
+
+        assertEquals("my (odd) app", reader.statName());
+    }
+
+    @Test
+    public void refresh_returnsFalseForMissingFile() {
+        reader = new ProcStatReader(new File("/nonexistent/proc/stat"), 64);
+
+        assertFalse(reader.refresh());
+        assertEquals(ProcStatReader.MISSING, reader.statField(14));
+    }
+
+    @Test
+    public void refreshAndParse_doesNotAllocate() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation accounting not available on this JVM
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        reader = readerFor(STAT_LINE);
+        long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        // Warm up so class loading and JIT don't count as per-sample allocations
+        for (int i = 0; i < 2_000; i++) {
+            reader.refresh();
+            checksum += reader.statField(14) + reader.statField(15);
+        }
+
+        int samples = 10_000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < samples; i++) {
+            reader.refresh();
+            checksum += reader.statField(14) + reader.statField(15);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0);
+        assertTrue(
+                "Expected no per-sample allocation, got " + allocated + " bytes for " + samples + " samples",
+                allocated / samples < 8);
+    }
+
+    private ProcStatReader readerFor(String content) throws IOException {
+        file = File.createTempFile("proc", "stat");
+        write(file, content);
+        return new ProcStatReader(file, 1024);
+    }
+
+    private static void write(File target, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StallProfilerTest {
+
+    private static final StackTraceElement LOOP = frame("android.os.Looper", "loop");
+    private static final StackTraceElement HANDLER = frame("android.os.Handler", "dispatchMessage");
+    private static final StackTraceElement READ = frame("com.example.Db", "read");
+    private static final StackTraceElement PARSE = frame("com.example.Json", "parse");
+
+    @Test
+    public void addSample_aggregatesSamplesIntoCallTree() {
+        StallProfiler profiler = new StallProfiler();
+
+        // Stacks are innermost frame first
+        profiler.addSample(new StackTraceElement[] {READ, HANDLER, LOOP});
+        profiler.addSample(new StackTraceElement[] {READ, HANDLER, LOOP});
+        profiler.addSample(new StackTraceElement[] {PARSE, HANDLER, LOOP});
+
+        assertEquals(3, profiler.getSampleCount());
+        assertEquals(3, profiler.getCount(LOOP, HANDLER));
+        assertEquals(2, profiler.getCount(LOOP, HANDLER, READ));
+        assertEquals(1, profiler.getCount(LOOP, HANDLER, PARSE));
+        assertEquals(0, profiler.getCount(HANDLER));
+    }
+
+    @Test
+    public void addSample_keepsOutermostFramesPastMaxDepth() {
+        StallProfiler profiler = new StallProfiler(16, 16, 2);
+
+        profiler.addSample(new StackTraceElement[] {READ, HANDLER, LOOP});
+
+        assertEquals(1, profiler.getCount(LOOP, HANDLER));
+        assertEquals(0, profiler.getCount(LOOP, HANDLER, READ));
+    }
+
+    @Test
+    public void addSample_staysWithinNodeCapacity() {
+        StallProfiler profiler = new StallProfiler(64, 4, 50);
+
+        for (int i = 0; i < 10; i++) {
+            profiler.addSample(new StackTraceElement[] {frame("com.example.C" + i, "m"), HANDLER, LOOP});
+        }
+
+        assertEquals(10, profiler.getSampleCount());
+        assertEquals(10, profiler.getCount(LOOP, HANDLER));
+        // Root, Looper.loop, Handler.dispatchMessage and C0.m fill the tree
+        assertEquals(1, profiler.getCount(LOOP, HANDLER, frame("com.example.C0", "m")));
+        assertEquals(0, profiler.getCount(LOOP, HANDLER, frame("com.example.C1", "m")));
+    }
+
+    @Test
+    public void reset_discardsProfile() {
+        StallProfiler profiler = new StallProfiler();
+        profiler.addSample(new StackTraceElement[] {READ, HANDLER, LOOP});
+
+        profiler.reset();
+
+        assertEquals(0, profiler.getSampleCount());
+        assertEquals(0, profiler.getCount(LOOP));
+    }
+
+    private static StackTraceElement frame(String className, String method) {
+        return new StackTraceElement(className, method, className + ".java", 1);
+    }
+}
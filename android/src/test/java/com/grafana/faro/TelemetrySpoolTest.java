@@ -0,0 +1,155 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TelemetrySpoolTest {
+    private static final int CAPACITY = 100;
+    // Header fields, see TelemetrySpool
+    private static final int HEAD_OFFSET = 12;
+    private static final int TAIL_OFFSET = 16;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("telemetry", "spool");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void drainTo_returnsRecordsOldestFirstAndEmptiesSpool() {
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+        spool.append(TelemetrySpool.RECORD_EVENT_BATCH, ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        spool.append(TelemetrySpool.RECORD_ANR, "anr");
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        assertEquals(0, spool.drainTo(records));
+
+        assertEquals(2, records.size());
+        assertEquals(TelemetrySpool.RECORD_EVENT_BATCH, records.get(0).type);
+        assertArrayEquals(new byte[]{1, 2, 3}, records.get(0).data);
+        assertEquals(TelemetrySpool.RECORD_ANR, records.get(1).type);
+        assertEquals("anr", new String(records.get(1).data));
+        records.clear();
+        spool.drainTo(records);
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void drainTo_readsRecordsWrittenBeforeProcessRestart() {
+        new TelemetrySpool(file, CAPACITY).append(TelemetrySpool.RECORD_ANR, "before restart");
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        new TelemetrySpool(file, CAPACITY).drainTo(records);
+
+        assertEquals(1, records.size());
+        assertEquals("before restart", new String(records.get(0).data));
+    }
+
+    @Test
+    public void append_dropsOldestRecordsAndWrapsAround() {
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+        // 5 header bytes + 25 payload bytes: two or three records fit in the ring,
+        // depending on the space left unused at its end
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spool.append(TelemetrySpool.RECORD_EVENT_BATCH, payload(i)));
+        }
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        int dropped = spool.drainTo(records);
+
+        assertTrue(records.size() >= 2);
+        assertEquals(10, records.size() + dropped);
+        for (int i = 0; i < records.size(); i++) {
+            assertArrayEquals(payload(dropped + i).array(), records.get(i).data);
+        }
+    }
+
+    @Test
+    public void append_rejectsRecordLargerThanSpool() {
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+
+        assertFalse(spool.append(TelemetrySpool.RECORD_EVENT_BATCH, ByteBuffer.allocate(CAPACITY)));
+    }
+
+    @Test
+    public void open_resetsSpoolWithCorruptedHeader() throws IOException {
+        new TelemetrySpool(file, CAPACITY).append(TelemetrySpool.RECORD_ANR, "record");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0);
+        }
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+        spool.drainTo(records);
+        assertTrue(records.isEmpty());
+        assertTrue(spool.append(TelemetrySpool.RECORD_ANR, "next"));
+    }
+
+    @Test
+    public void append_neverExposesReleasedRecordsWhenDyingBeforePublishing() throws IOException {
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+        spool.append(TelemetrySpool.RECORD_EVENT_BATCH, ByteBuffer.allocate(60));
+        int tailBefore = readHeaderInt(TAIL_OFFSET);
+
+        // Does not fit after the first record, which is dropped and its space reused
+        assertTrue(spool.append(TelemetrySpool.RECORD_ANR, ByteBuffer.allocate(40)));
+        // The process dies right after releasing the dropped record, before the new one is published
+        writeHeaderInt(TAIL_OFFSET, tailBefore);
+
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        assertEquals(1, new TelemetrySpool(file, CAPACITY).drainTo(records));
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void drainTo_releasesRecordsInOneWrite() throws IOException {
+        TelemetrySpool spool = new TelemetrySpool(file, CAPACITY);
+        spool.append(TelemetrySpool.RECORD_ANR, "drained");
+        spool.drainTo(new ArrayList<>());
+
+        assertEquals(readHeaderInt(TAIL_OFFSET), readHeaderInt(HEAD_OFFSET));
+        List<TelemetrySpool.Record> records = new ArrayList<>();
+        new TelemetrySpool(file, CAPACITY).drainTo(records);
+        assertTrue(records.isEmpty());
+    }
+
+    private int readHeaderInt(int offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            return Integer.reverseBytes(raf.readInt());
+        }
+    }
+
+    private void writeHeaderInt(int offset, int value) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset);
+            raf.writeInt(Integer.reverseBytes(value));
+        }
+    }
+
+    private static ByteBuffer payload(int index) {
+        byte[] bytes = new byte[25];
+        bytes[0] = (byte) index;
+        return ByteBuffer.wrap(bytes);
+    }
+}
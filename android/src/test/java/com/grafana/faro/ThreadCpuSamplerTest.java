@@ -0,0 +1,160 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class ThreadCpuSamplerTest {
+    private static final long CLOCK_TICKS_PER_SECOND = 100L;
+
+    private File taskDir;
+    private ThreadCpuSampler sampler;
+
+    @Before
+    public void setUp() throws IOException {
+        taskDir = File.createTempFile("task", "");
+        taskDir.delete();
+        taskDir.mkdirs();
+        sampler = new ThreadCpuSampler(taskDir, CLOCK_TICKS_PER_SECOND, new NativeScheduler());
+        sampler.configure(ThreadCpuSampler.DEFAULT_INTERVAL_MS, 2);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(taskDir);
+    }
+
+    @Test
+    public void drainTop_reportsTopConsumersSinceBaseline() throws IOException {
+        writeThread(100, "main", 500, 100);
+        writeThread(101, "1.ui", 1000, 0);
+        writeThread(102, "1.raster", 200, 0);
+        assertTrue(sampler.scan(10_000L));
+
+        writeThread(100, "main", 510, 100);
+        writeThread(101, "1.ui", 1300, 100);
+        writeThread(102, "1.raster", 350, 0);
+        assertTrue(sampler.scan(15_000L));
+
+        Map<String, Object> window = sampler.drainTop();
+        assertEquals(5000L, window.get("windowMs"));
+        assertEquals(3, window.get("threadCount"));
+        assertEquals(5600.0, (Double) window.get("totalCpuMs"), 0.001);
+        List<Map<String, Object>> threads = threadsOf(window);
+        assertEquals(2, threads.size());
+        assertEquals("1.ui", threads.get(0).get("name"));
+        assertEquals(101, threads.get(0).get("tid"));
+        assertEquals(4000.0, (Double) threads.get(0).get("cpuMs"), 0.001);
+        assertEquals(80.0, (Double) threads.get(0).get("cpuUsage"), 0.001);
+        assertEquals("1.raster", threads.get(1).get("name"));
+        assertEquals(30.0, (Double) threads.get(1).get("cpuUsage"), 0.001);
+    }
+
+    @Test
+    public void drainTop_startsNewWindow() throws IOException {
+        writeThread(100, "main", 10, 0);
+        sampler.scan(0L);
+        writeThread(100, "main", 20, 0);
+        sampler.scan(1000L);
+
+        sampler.drainTop();
+
+        assertNull(sampler.drainTop());
+        writeThread(100, "main", 25, 0);
+        sampler.scan(2000L);
+        List<Map<String, Object>> threads = threadsOf(sampler.drainTop());
+        assertEquals(50.0, (Double) threads.get(0).get("cpuMs"), 0.001);
+    }
+
+    @Test
+    public void scan_accountsThreadsStartedAndExitedBetweenScans() throws IOException {
+        writeThread(100, "main", 10, 0);
+        sampler.scan(0L);
+
+        // Started after the baseline: all its CPU time belongs to the window
+        writeThread(200, "faro-io", 30, 5);
+        sampler.scan(1000L);
+        deleteRecursively(new File(taskDir, "200"));
+        writeThread(100, "main", 12, 0);
+        sampler.scan(2000L);
+
+        List<Map<String, Object>> threads = threadsOf(sampler.drainTop());
+        assertEquals("faro-io", threads.get(0).get("name"));
+        assertEquals(350.0, (Double) threads.get(0).get("cpuMs"), 0.001);
+        assertEquals("main", threads.get(1).get("name"));
+
+        // Exited threads are dropped once read
+        sampler.scan(3000L);
+        assertEquals(1, sampler.drainTop().get("threadCount"));
+    }
+
+    @Test
+    public void scan_renamesThreadWhenTidIsReused() throws IOException {
+        writeThread(300, "worker-1", 50, 0);
+        sampler.scan(0L);
+        writeThread(300, "worker-2", 4, 0);
+        sampler.scan(1000L);
+
+        List<Map<String, Object>> threads = threadsOf(sampler.drainTop());
+
+        assertEquals("worker-2", threads.get(0).get("name"));
+        assertEquals(40.0, (Double) threads.get(0).get("cpuMs"), 0.001);
+    }
+
+    @Test
+    public void scan_ignoresNonThreadEntries() throws IOException {
+        writeThread(100, "main", 10, 0);
+        new File(taskDir, "self").mkdirs();
+        sampler.scan(0L);
+        writeThread(100, "main", 11, 0);
+        sampler.scan(1000L);
+
+        assertEquals(1, sampler.drainTop().get("threadCount"));
+    }
+
+    @Test
+    public void scan_returnsFalseWithoutTaskDirectory() {
+        ThreadCpuSampler missing = new ThreadCpuSampler(
+                new File("/nonexistent/proc/self/task"), CLOCK_TICKS_PER_SECOND, new NativeScheduler());
+
+        assertFalse(missing.scan(0L));
+        assertNull(missing.drainTop());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> threadsOf(Map<String, Object> window) {
+        return (List<Map<String, Object>>) window.get("threads");
+    }
+
+    private void writeThread(int tid, String name, long utime, long stime) throws IOException {
+        File dir = new File(taskDir, String.valueOf(tid));
+        dir.mkdirs();
+        String stat = tid + " (" + name + ") S 1 1 0 0 -1 4194560 0 0 0 0 "
+                + utime + " " + stime + " 0 0 20 0 1 0 100\n";
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "stat"))) {
+            out.write(stat.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
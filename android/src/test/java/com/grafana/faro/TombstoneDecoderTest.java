@@ -0,0 +1,156 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TombstoneDecoderTest {
+
+    @Test
+    public void decode_readsSignalAndCrashingThread() throws IOException {
+        TombstoneDecoder.Tombstone tombstone = decode("/tombstones/segv_arm64.pb");
+
+        assertNotNull(tombstone);
+        assertEquals(4321, tombstone.pid);
+        assertEquals(4321, tombstone.tid);
+        assertEquals("com.example.app", tombstone.threadName);
+        assertEquals(11, tombstone.signalNumber);
+        assertEquals("SIGSEGV", tombstone.signalName);
+        assertEquals(1, tombstone.signalCode);
+        assertEquals("SEGV_MAPERR", tombstone.signalCodeName);
+        assertTrue(tombstone.hasFaultAddress);
+        assertEquals(0L, tombstone.faultAddress);
+        assertNull(tombstone.abortMessage);
+
+        assertEquals(4, tombstone.backtrace.size());
+        TombstoneDecoder.Frame top = tombstone.backtrace.get(0);
+        assertEquals(0x1a2b0L, top.relPc);
+        assertEquals("Java_com_example_app_NativeLib_crash", top.functionName);
+        assertEquals(32L, top.functionOffset);
+        assertTrue(top.fileName.endsWith("libnative-lib.so"));
+        assertEquals("5f0e2d1c3b4a59687766554433221100", top.buildId);
+        assertNull(tombstone.backtrace.get(3).functionName);
+    }
+
+    @Test
+    public void decode_stopsAfterCrashingThread() throws IOException {
+        byte[] content = read("/tombstones/segv_arm64.pb");
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(content));
+
+        assertNotNull(TombstoneDecoder.decode(in, content.length));
+
+        // The memory mappings and logs after the threads are never read
+        assertTrue(in.count < content.length / 2);
+    }
+
+    @Test
+    public void decode_truncatesLongBacktraces() throws IOException {
+        TombstoneDecoder.Tombstone tombstone = decode("/tombstones/abort_arm32.pb");
+
+        assertNotNull(tombstone);
+        assertEquals(6, tombstone.signalNumber);
+        assertEquals("SIGABRT", tombstone.signalName);
+        assertEquals(-6, tombstone.signalCode);
+        assertEquals("SI_TKILL", tombstone.signalCodeName);
+        assertEquals("assertion failed: size > 0", tombstone.abortMessage);
+        assertEquals(TombstoneDecoder.MAX_FRAMES, tombstone.backtrace.size());
+        assertEquals(37, tombstone.truncatedFrames);
+        assertEquals("abort", tombstone.backtrace.get(0).functionName);
+    }
+
+    @Test
+    public void format_usesTextTombstoneLayout() throws IOException {
+        String segv = decode("/tombstones/segv_arm64.pb").format();
+
+        assertTrue(segv.startsWith("signal 11 (SIGSEGV), code 1 (SEGV_MAPERR), fault addr 0x0000000000000000\n"
+                + "backtrace:\n"
+                + "      #00 pc 000000000001a2b0  "));
+        assertTrue(segv.contains(" (Java_com_example_app_NativeLib_crash+32) (BuildId: 5f0e2d1c3b4a59687766554433221100)\n"));
+
+        String abort = decode("/tombstones/abort_arm32.pb").format();
+
+        assertTrue(abort.contains("Abort message: 'assertion failed: size > 0'\n"));
+        assertTrue(abort.split("\n")[3].matches("      #00 pc [0-9a-f]{8}  .*"));
+        assertTrue(abort.endsWith("      ... 37 more frames truncated\n"));
+    }
+
+    @Test
+    public void decode_rejectsOtherContent() {
+        byte[] text = "*** *** *** *** *** *** *** *** *** *** *** *** *** *** *** ***\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertNull(TombstoneDecoder.decode(new ByteArrayInputStream(text), text.length));
+        assertNull(TombstoneDecoder.decode(new ByteArrayInputStream(new byte[0]), 0));
+    }
+
+    @Test
+    public void decode_rejectsTruncatedTombstone() throws IOException {
+        byte[] content = read("/tombstones/abort_arm32.pb");
+
+        assertNull(TombstoneDecoder.decode(new ByteArrayInputStream(content), 64));
+    }
+
+    private TombstoneDecoder.Tombstone decode(@NonNull String resource) throws IOException {
+        try (InputStream in = new BufferedInputStream(getClass().getResourceAsStream(resource))) {
+            return TombstoneDecoder.decode(in, 1024 * 1024);
+        }
+    }
+
+    private byte[] read(@NonNull String resource) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(@NonNull InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
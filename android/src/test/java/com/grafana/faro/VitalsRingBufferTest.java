@@ -0,0 +1,79 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VitalsRingBufferTest {
+
+    @Test
+    public void emptyBuffer_statisticsAreNaN() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(4);
+
+        assertEquals(0, buffer.size());
+        assertTrue(Double.isNaN(buffer.min()));
+        assertTrue(Double.isNaN(buffer.max()));
+        assertTrue(Double.isNaN(buffer.average()));
+        assertTrue(Double.isNaN(buffer.percentile(95)));
+        assertEquals(0, buffer.copyValues().length);
+    }
+
+    @Test
+    public void computesStatistics() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(100);
+        for (int i = 1; i <= 100; i++) {
+            buffer.add(i, i);
+        }
+
+        assertEquals(1.0, buffer.min(), 0.0);
+        assertEquals(100.0, buffer.max(), 0.0);
+        assertEquals(50.5, buffer.average(), 1e-9);
+        assertEquals(95.0, buffer.percentile(95), 0.0);
+        assertEquals(50.0, buffer.percentile(50), 0.0);
+    }
+
+    @Test
+    public void overwritesOldestSampleWhenFull() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i * 10L, i);
+        }
+
+        assertEquals(3, buffer.size());
+        assertArrayEquals(new double[]{3, 4, 5}, buffer.copyValues(), 0.0);
+        assertArrayEquals(new long[]{30, 40, 50}, buffer.copyTimestamps());
+        assertEquals(3.0, buffer.min(), 0.0);
+    }
+
+    @Test
+    public void percentileDoesNotReorderSeries() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(4);
+        buffer.add(1, 9);
+        buffer.add(2, 1);
+        buffer.add(3, 5);
+
+        buffer.percentile(95);
+
+        assertArrayEquals(new double[]{9, 1, 5}, buffer.copyValues(), 0.0);
+    }
+
+    @Test
+    public void clearEmptiesBuffer() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(2);
+        buffer.add(1, 1);
+        buffer.add(2, 2);
+
+        buffer.clear();
+        buffer.add(3, 7);
+
+        assertEquals(1, buffer.size());
+        assertArrayEquals(new double[]{7}, buffer.copyValues(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new VitalsRingBuffer(0);
+    }
+}
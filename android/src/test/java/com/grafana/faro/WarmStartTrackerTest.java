@@ -0,0 +1,120 @@
+package com.grafana.faro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class WarmStartTrackerTest {
+    private static final long MS = 1_000_000L;
+
+    private final EventAggregator aggregator = new EventAggregator(new NativeScheduler());
+    private final WarmStartTracker tracker = new WarmStartTracker(aggregator);
+
+    @Test
+    public void processStart_isNotMeasured() {
+        tracker.started(0L);
+        assertEquals(-1, tracker.resumed(10 * MS));
+
+        assertNull(aggregator.drain());
+    }
+
+    @Test
+    public void warmStart_isMeasuredFromTheNewActivity() {
+        launchAndLeave();
+        tracker.created(1000 * MS);
+        tracker.started(1040 * MS);
+        int generation = tracker.resumed(1050 * MS);
+        assertTrue(generation >= 0);
+        assertTrue(tracker.drawn(generation, 1120 * MS));
+
+        ByteBuffer start = appStartRecord(aggregator.drain());
+        assertEquals(WarmStartTracker.START_TYPE_WARM, start.get());
+        assertEquals(40 * MS, start.getLong());
+        assertEquals(10 * MS, start.getLong());
+        assertEquals(70 * MS, start.getLong());
+    }
+
+    @Test
+    public void hotStart_isMeasuredFromTheExistingActivity() {
+        launchAndLeave();
+        tracker.started(1000 * MS);
+        int generation = tracker.resumed(1002 * MS);
+        assertTrue(tracker.drawn(generation, 1018 * MS));
+
+        ByteBuffer start = appStartRecord(aggregator.drain());
+        assertEquals(WarmStartTracker.START_TYPE_HOT, start.get());
+        assertEquals(-1L, start.getLong());
+        assertEquals(2 * MS, start.getLong());
+        assertEquals(16 * MS, start.getLong());
+    }
+
+    @Test
+    public void configurationChange_isNotAStart() {
+        tracker.started(0L);
+        tracker.stopped(true);
+        tracker.created(100 * MS);
+        tracker.started(110 * MS);
+
+        assertEquals(-1, tracker.resumed(120 * MS));
+    }
+
+    @Test
+    public void navigatingBetweenActivities_isNotAStart() {
+        launchAndLeave();
+        tracker.started(1000 * MS);
+        tracker.drawn(tracker.resumed(1002 * MS), 1018 * MS);
+        aggregator.drain();
+
+        tracker.created(2000 * MS);
+        tracker.started(2010 * MS);
+        tracker.stopped(false);
+
+        assertEquals(-1, tracker.resumed(2020 * MS));
+    }
+
+    @Test
+    public void startLeftBeforeItsFrame_isDropped() {
+        launchAndLeave();
+        tracker.started(1000 * MS);
+        int abandoned = tracker.resumed(1002 * MS);
+        tracker.stopped(false);
+        tracker.started(2000 * MS);
+        int generation = tracker.resumed(2005 * MS);
+
+        assertFalse(tracker.drawn(abandoned, 1500 * MS));
+        assertTrue(tracker.drawn(generation, 2030 * MS));
+        ByteBuffer start = appStartRecord(aggregator.drain());
+        assertEquals(WarmStartTracker.START_TYPE_HOT, start.get());
+        start.getLong();
+        assertEquals(5 * MS, start.getLong());
+        assertEquals(25 * MS, start.getLong());
+    }
+
+    private void launchAndLeave() {
+        tracker.started(0L);
+        tracker.resumed(10 * MS);
+        tracker.stopped(false);
+    }
+
+    private static ByteBuffer appStartRecord(ByteBuffer batch) {
+        batch.flip();
+        batch.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(EventAggregator.BATCH_VERSION, batch.get());
+        while (batch.remaining() >= 3) {
+            byte type = batch.get();
+            int length = batch.getShort() & 0xffff;
+            if (type == EventAggregator.RECORD_APP_START) {
+                assertEquals(25, length);
+                return batch;
+            }
+            batch.position(batch.position() + length);
+        }
+        throw new AssertionError("No app start record");
+    }
+}
@@ -21,6 +21,13 @@ class FaroConfig {
     this.refreshRateVitals = false,
     this.enableUiActivityMonitoring = true,
     this.fetchVitalsInterval = const Duration(seconds: 30),
+    this.vitalsSampleInterval = const Duration(seconds: 1),
+    this.anrStallThresholds = const [
+      Duration(milliseconds: 200),
+      Duration(seconds: 1),
+      Duration(seconds: 5),
+    ],
+    this.anrStallSamplingInterval = const Duration(milliseconds: 50),
     BatchConfig? batchConfig,
     this.ignoreUrls,
     this.maxBufferLimit = 30,
@@ -59,6 +66,28 @@ class FaroConfig {
   final BatchConfig batchConfig;
   final int maxBufferLimit;
   final Duration? fetchVitalsInterval;
+
+  /// How often CPU and memory usage are sampled on Android.
+  ///
+  /// Samples are collected natively between two [fetchVitalsInterval] sends,
+  /// and each send reports the average, min, max and p95 of the window.
+  final Duration vitalsSampleInterval;
+
+  /// Main thread stall thresholds used on Android when [anrTracking] is
+  /// enabled.
+  ///
+  /// Each main thread message running longer than a threshold is counted in
+  /// the `app_main_thread_stalls` measurement. A message blocking the main
+  /// thread for 5 seconds is also reported as an ANR. At most 8 thresholds
+  /// are used.
+  final List<Duration> anrStallThresholds;
+
+  /// How often the main thread stack is sampled on Android while a message
+  /// runs past the first of the [anrStallThresholds].
+  ///
+  /// The samples are aggregated into a call tree attached to the ANR as
+  /// `profile`. Set to [Duration.zero] to disable sampling.
+  final Duration anrStallSamplingInterval;
   final List<RegExp>? ignoreUrls;
 
   /// Custom attributes to include in all session data.
@@ -249,6 +249,10 @@ class Faro {
         anr: optionsConfiguration.anrTracking,
         refreshrate: optionsConfiguration.refreshRateVitals,
         setSendUsageInterval: optionsConfiguration.fetchVitalsInterval,
+        vitalsSampleInterval: optionsConfiguration.vitalsSampleInterval,
+        anrStallThresholds: optionsConfiguration.anrStallThresholds,
+        anrStallSamplingInterval:
+            optionsConfiguration.anrStallSamplingInterval,
       );
     }
     await FaroOtelBootstrap.initialize();
@@ -854,6 +858,7 @@ class Faro {
       }
       if (Platform.isAndroid) {
         final crashReports = await _nativeChannel?.getCrashReport();
+        final journal = await _readCrashJournal();
         if (crashReports != null) {
           for (final crashInfo in crashReports) {
             final crashInfoJson = json.decode(crashInfo);
@@ -879,6 +884,13 @@ class Faro {
                 stringifiedContext['importance'] ?? 'No importance';
             final processName =
                 stringifiedContext['processName'] ?? 'No processName';
+            // The journal holds the stack trace of a JVM crash exit
+            final journalCrash = reason == 'CRASH'
+                ? journal.takeMatch(
+                    crashInfoJson['pid'],
+                    crashInfoJson['timestamp'],
+                  )
+                : null;
 
             _instance.pushError(
               type: 'crash',
@@ -886,15 +898,26 @@ class Faro {
               fatal: true,
               context: {
                 'description': description,
-                'stacktrace': stacktrace,
+                'stacktrace':
+                    journalCrash?['stacktrace']?.toString() ?? stacktrace,
+                if (journalCrash != null)
+                  'exception':
+                      '${journalCrash['type'] ?? ''}: ${journalCrash['value'] ?? ''}',
                 'timestamp': timestamp,
                 'timestamp_readable_utc': humanReadableTimestamp,
                 'importance': importance,
                 'processName': processName,
+                // ANRs: the main thread and the threads holding its locks
+                if (crashInfoJson['threads'] != null)
+                  'threads': jsonEncode(crashInfoJson['threads']),
+                // Native crashes: signal and crashing thread backtrace
+                if (crashInfoJson['tombstone'] != null)
+                  'tombstone': jsonEncode(crashInfoJson['tombstone']),
               },
             );
           }
         }
+        await _pushCrashJournal(journal);
       }
     } catch (error, stacktrace) {
       log(
@@ -903,4 +926,82 @@ class Faro {
       );
     }
   }
+
+  /// Reads the uncaught exceptions recorded natively by previous runs.
+  ///
+  /// The journal is paged through with a cursor, and only acknowledged by
+  /// [_pushCrashJournal] once its records were handed to the transports.
+  Future<_CrashJournal> _readCrashJournal() async {
+    const pageSize = 20;
+    final journal = _CrashJournal();
+    var hasMore = true;
+    while (hasMore) {
+      final page = await _nativeChannel?.readCrashJournal(
+        journal.cursor,
+        pageSize,
+      );
+      final records = page?['records'];
+      if (page == null || records is! List || records.isEmpty) {
+        break;
+      }
+      for (final record in records) {
+        try {
+          journal.records.add(
+            json.decode(record as String) as Map<String, dynamic>,
+          );
+        } catch (error) {
+          log('Faro: skipping unreadable crash journal record: $error');
+        }
+      }
+      journal.cursor = page['cursor'] as int;
+      hasMore = page['hasMore'] == true;
+    }
+    return journal;
+  }
+
+  /// Pushes the journal records not attached to a crash exit, then
+  /// acknowledges them.
+  Future<void> _pushCrashJournal(_CrashJournal journal) async {
+    for (final crash in journal.records) {
+      _instance.pushError(
+        type: 'crash',
+        value: 'Uncaught exception: ${crash['value'] ?? ''}',
+        fatal: true,
+        context: {
+          'stacktrace': crash['stacktrace']?.toString() ?? 'No stacktrace',
+        },
+      );
+    }
+    if (journal.cursor > 0) {
+      await _nativeChannel?.acknowledgeCrashJournal(journal.cursor);
+    }
+  }
+}
+
+/// Crash journal records read from the native side, up to [cursor].
+class _CrashJournal {
+  /// A crash exit is recorded once the process is gone, shortly after the
+  /// exception was journaled.
+  static const _maxExitDelayMs = 60000;
+
+  final records = <Map<String, dynamic>>[];
+  var cursor = 0;
+
+  /// Removes and returns the record of the crash that ended process [pid]
+  /// at [exitTimestamp], if any.
+  Map<String, dynamic>? takeMatch(dynamic pid, dynamic exitTimestamp) {
+    if (pid is! int || exitTimestamp is! int) {
+      return null;
+    }
+    for (var i = 0; i < records.length; i++) {
+      final timestamp = records[i]['timestamp'];
+      if (records[i]['pid'] == pid &&
+          timestamp is int &&
+          timestamp <= exitTimestamp &&
+          exitTimestamp - timestamp <= _maxExitDelayMs) {
+        return records.removeAt(i);
+      }
+    }
+    return null;
+  }
 }
@@ -0,0 +1,74 @@
+/// Mirror of the Android `FrameDictionary`, mapping the interned frame ids
+/// carried by native ANR payloads back to formatted stack frames.
+///
+/// Native ids are dense and assigned in order, so only the frames from
+/// [length] onwards are requested, and each payload carrying new frames
+/// states the id of its first frame as `firstFrameId`.
+class NativeFrameDictionary {
+  static const String otherFrame = '(other)';
+
+  final List<String> _frames = [];
+
+  /// Number of frames received so far.
+  int get length => _frames.length;
+
+  /// Adds the frames carried by a native payload, if any.
+  void update(Map<String, dynamic> payload) {
+    final frames = payload['frames'];
+    final firstFrameId = payload['firstFrameId'];
+    if (frames is! List || firstFrameId is! int) {
+      return;
+    }
+    if (firstFrameId > _frames.length) {
+      // Frames in between were never received; they are sent again on the
+      // next request since [length] did not move.
+      return;
+    }
+    _frames
+      ..length = firstFrameId
+      ..addAll(frames.map((frame) => frame.toString()));
+  }
+
+  /// Returns the frame with the given id, or [otherFrame] if it is unknown.
+  String frame(Object? id) {
+    if (id is int && id >= 0 && id < _frames.length) {
+      return _frames[id];
+    }
+    return otherFrame;
+  }
+
+  /// Formats an ANR stack trace, one frame per line as the native side did
+  /// before frames were interned.
+  String? stacktrace(Map<String, dynamic> anr) {
+    final formatted = anr['stacktrace'];
+    if (formatted is String) {
+      return formatted;
+    }
+    final frameIds = anr['frameIds'];
+    if (frameIds is! List) {
+      return null;
+    }
+    final buffer = StringBuffer();
+    for (final id in frameIds) {
+      buffer.writeln(frame(id));
+    }
+    final truncated = anr['truncatedFrames'];
+    if (truncated is int && truncated > 0) {
+      buffer.writeln('... $truncated more frames truncated');
+    }
+    return buffer.toString();
+  }
+
+  /// Replaces the frame ids of a stall profile with the formatted frames.
+  Map<String, dynamic> profile(Map<String, dynamic> profile) {
+    final frameIds = profile['frameIds'];
+    if (frameIds is! List) {
+      return profile;
+    }
+    return {
+      for (final entry in profile.entries)
+        if (entry.key != 'frameIds') entry.key: entry.value,
+      'frames': [for (final id in frameIds) frame(id)],
+    };
+  }
+}
@@ -2,10 +2,12 @@ import 'dart:async';
 import 'dart:convert';
 import 'dart:developer';
 import 'dart:io';
+import 'dart:typed_data';
 
 import 'package:dartypod/dartypod.dart';
 import 'package:faro/src/core/pod.dart';
 import 'package:faro/src/faro.dart';
+import 'package:faro/src/integrations/native_frame_dictionary.dart';
 import 'package:faro/src/models/log_level.dart';
 import 'package:faro/src/models/measurement.dart';
 import 'package:faro/src/session/session_activity_kind.dart';
@@ -22,37 +24,82 @@ class NativeIntegration implements Disposable {
   final TelemetryRouter _telemetryRouter;
   final MethodChannel _channel = const MethodChannel('faro');
 
+  /// Carries binary batches of coalesced native events (frames, ANRs).
+  /// See `EventAggregator` on Android for the format.
+  final BasicMessageChannel<ByteData?> _eventChannel =
+      const BasicMessageChannel<ByteData?>('faro/events', BinaryCodec());
+
+  static const int _eventBatchVersion = 1;
+  static const int _framesRecord = 1;
+  static const int _anrRecord = 2;
+  static const int _frameBudgetHistogramRecord = 3;
+  static const int _stallsRecord = 4;
+  static const int _monitorTransitionsRecord = 5;
+  static const int _gcRecord = 6;
+  static const int _memoryPressureRecord = 7;
+  static const int _appStartRecord = 8;
+  static const int _hotStartType = 3;
+  static const List<String> _frameBudgetBuckets = [
+    'missed_vsyncs_0',
+    'missed_vsyncs_1',
+    'missed_vsyncs_2_3',
+    'missed_vsyncs_4_7',
+    'missed_vsyncs_8_plus',
+  ];
+  static const int _recordHeaderBytes = 3;
+  // Threads reported in the Android per-thread CPU breakdown
+  static const int _threadCpuTopCount = 8;
+
   int _warmStart = 0;
+  bool _anrTracking = false;
+  final NativeFrameDictionary _frameDictionary = NativeFrameDictionary();
   Timer? _vitalsTimer;
 
   /// Initialize the native integration with the specified features
   ///
   /// Parameters:
   /// - [memusage]: Enable memory usage tracking
-  /// - [cpuusage]: Enable CPU usage tracking
+  /// - [cpuusage]: Enable CPU usage tracking, with a per-thread breakdown
+  ///   of the top consumers on Android
   /// - [anr]: Enable ANR (Application Not Responding) detection
   /// - [refreshrate]: Enable refresh rate monitoring
   /// - [setSendUsageInterval]: Interval for sending usage metrics
+  /// - [vitalsSampleInterval]: Interval at which the Android native sampler
+  ///   records CPU and memory usage between two sends
+  /// - [anrStallThresholds]: Main thread stall thresholds watched on Android
+  ///   when [anr] is enabled
+  /// - [anrStallSamplingInterval]: Interval at which the main thread stack is
+  ///   sampled during a stall on Android
   Future<void> init({
     bool? memusage,
     bool? cpuusage,
     bool? anr,
     bool? refreshrate,
     Duration? setSendUsageInterval,
+    Duration? vitalsSampleInterval,
+    List<Duration>? anrStallThresholds,
+    Duration? anrStallSamplingInterval,
   }) async {
+    if ((anr ?? false) && Platform.isAndroid) {
+      _initAnrWatchdog(anrStallThresholds, anrStallSamplingInterval);
+    }
     _scheduleCalls(
       memusage: memusage ?? false,
       cpuusage: cpuusage ?? false,
       anr: anr ?? false,
       refreshrate: refreshrate ?? false,
       setSendUsageInterval: setSendUsageInterval ?? const Duration(seconds: 60),
+      vitalsSampleInterval: vitalsSampleInterval ?? const Duration(seconds: 1),
     );
     initRefreshRate();
     initializeMethodChannel();
+    if (Platform.isAndroid) {
+      await _drainTelemetrySpool();
+    }
   }
 
-  /// Cancels the periodic vitals timer and detaches the method channel
-  /// handler.
+  /// Cancels the periodic vitals timer and detaches the method channel and
+  /// event channel handlers.
   ///
   /// Invoked by dartypod when [nativeIntegrationProvider]'s scope is cleared.
   /// This instance is scoped to a single `Faro.init`; without teardown its
@@ -67,6 +114,7 @@ class NativeIntegration implements Disposable {
     _vitalsTimer?.cancel();
     _vitalsTimer = null;
     _channel.setMethodCallHandler(null);
+    _eventChannel.setMessageHandler(null);
   }
 
   /// Pushes an SDK-emitted vitals measurement, marked
@@ -89,13 +137,21 @@ class NativeIntegration implements Disposable {
   }
 
   /// Get app start metrics for cold start
+  ///
+  /// On Android the start type comes from the platform, and the duration of
+  /// each phase between native milestones is added, in milliseconds.
   Future<void> getAppStart() async {
     try {
       final appStart = await Faro().nativeChannel?.getAppStart();
       if (appStart != null) {
+        final startType = appStart['startType'];
+        final phases = appStart['phases'];
         _pushVitalsMeasurement({
           'appStartDuration': appStart['appStartDuration'],
-          'coldStart': 1,
+          'coldStart': startType == null || startType == 'cold' ? 1 : 0,
+          if (phases is Map)
+            for (final phase in phases.entries)
+              if (phase.value is num) '${phase.key}': phase.value,
         }, 'app_startup');
       }
     } catch (error) {
@@ -104,12 +160,21 @@ class NativeIntegration implements Disposable {
   }
 
   /// Set timestamp for warm start measurement
+  ///
+  /// Not used on Android, where warm and hot starts are measured natively
+  /// from the activity lifecycle and arrive with the event batches.
   void setWarmStart() {
+    if (Platform.isAndroid) {
+      return;
+    }
     _warmStart = DateTime.now().millisecondsSinceEpoch;
   }
 
   /// Get app start metrics for warm start
   Future<void> getWarmStart() async {
+    if (Platform.isAndroid) {
+      return;
+    }
     try {
       final warmStartDuration =
           DateTime.now().millisecondsSinceEpoch - _warmStart;
@@ -130,15 +195,31 @@ class NativeIntegration implements Disposable {
     bool anr = false,
     bool refreshrate = false,
     Duration setSendUsageInterval = const Duration(seconds: 60),
+    Duration vitalsSampleInterval = const Duration(seconds: 1),
   }) {
+    _anrTracking = anr;
     if (memusage || cpuusage || anr || refreshrate) {
+      // On Android, CPU and memory are sampled natively between two sends
+      // and fetched as one window instead of a single point per send.
+      final useVitalsSampler = (memusage || cpuusage) && Platform.isAndroid;
+      if (useVitalsSampler) {
+        _initVitalsSampler(
+          setSendUsageInterval,
+          vitalsSampleInterval,
+          threadCpu: cpuusage,
+        );
+      }
       _vitalsTimer?.cancel();
       _vitalsTimer = Timer.periodic(setSendUsageInterval, (timer) {
-        if (memusage) {
-          _pushMemoryUsage();
-        }
-        if (cpuusage) {
-          _pushCpuUsage();
+        if (useVitalsSampler) {
+          _pushVitalsWindow(memusage: memusage, cpuusage: cpuusage);
+        } else {
+          if (memusage) {
+            _pushMemoryUsage();
+          }
+          if (cpuusage) {
+            _pushCpuUsage();
+          }
         }
         if (anr && Platform.isAndroid) {
           _getAnrStatus();
@@ -146,6 +227,7 @@ class NativeIntegration implements Disposable {
         if (refreshrate) {
           if (Platform.isAndroid) {
             initRefreshRate();
+            _pushFrameHistogram();
           } else {
             _pushRefreshRate();
           }
@@ -154,6 +236,188 @@ class NativeIntegration implements Disposable {
     }
   }
 
+  Future<void> _initVitalsSampler(
+    Duration sendInterval,
+    Duration sampleInterval, {
+    bool threadCpu = false,
+  }) async {
+    try {
+      final sampleMs = sampleInterval.inMilliseconds > 0
+          ? sampleInterval.inMilliseconds
+          : 1;
+      final windowSize = (sendInterval.inMilliseconds / sampleMs).ceil();
+      await Faro().nativeChannel?.initVitalsSampler(
+        sampleInterval,
+        windowSize > 0 ? windowSize : 1,
+        threadCpuTopCount: threadCpu ? _threadCpuTopCount : 0,
+      );
+    } catch (error) {
+      log('Error initializing vitals sampler: $error');
+    }
+  }
+
+  Future<void> _pushVitalsWindow({
+    required bool memusage,
+    required bool cpuusage,
+  }) async {
+    try {
+      final window = await Faro().nativeChannel?.getVitalsWindow();
+      if (window == null) {
+        return;
+      }
+      if (cpuusage) {
+        final cpu = _vitalsWindowValues(window['cpu'], 'cpu_usage');
+        final cpuUsage = cpu?['cpu_usage'] as double?;
+        if (cpuUsage != null && cpuUsage > 0.0 && cpuUsage < 100.0) {
+          _pushVitalsMeasurement(cpu, 'app_cpu_usage');
+        }
+        final threads = _threadCpuValues(window['threads']);
+        if (threads != null) {
+          _pushVitalsMeasurement(threads, 'app_thread_cpu');
+        }
+      }
+      if (memusage) {
+        final memory = _vitalsWindowValues(window['memory'], 'mem_usage');
+        if (memory != null) {
+          _pushVitalsMeasurement(memory, 'app_memory');
+        }
+        final breakdown = _memoryBreakdownValues(window);
+        if (breakdown != null) {
+          _pushVitalsMeasurement(breakdown, 'app_memory_breakdown');
+        }
+      }
+    } catch (error) {
+      log('Error getting vitals window: $error');
+    }
+  }
+
+  /// Maps the statistics of one native vitals series to measurement values,
+  /// keeping the average under [name] so it matches the single-point
+  /// measurement sent on other platforms.
+  Map<String, dynamic>? _vitalsWindowValues(Object? series, String name) {
+    if (series is! Map) {
+      return null;
+    }
+    final average = (series['avg'] as num?)?.toDouble();
+    if (average == null) {
+      return null;
+    }
+    return {
+      name: average,
+      '${name}_min': (series['min'] as num?)?.toDouble(),
+      '${name}_max': (series['max'] as num?)?.toDouble(),
+      '${name}_p95': (series['p95'] as num?)?.toDouble(),
+      '${name}_samples': series['count'],
+    };
+  }
+
+  /// Maps the Java and native heap series sampled natively with the memory
+  /// usage, and the PSS breakdown with the highest total in the window, to
+  /// measurement values in kB. Categories unknown on older Android versions
+  /// are left out.
+  Map<String, dynamic>? _memoryBreakdownValues(Map<String, dynamic> window) {
+    final javaHeap = _vitalsWindowValues(window['javaHeap'], 'java_heap');
+    final nativeHeap = _vitalsWindowValues(window['nativeHeap'], 'native_heap');
+    final breakdown = window['memoryBreakdown'];
+    if (javaHeap == null && nativeHeap == null && breakdown is! Map) {
+      return null;
+    }
+    final values = <String, dynamic>{...?javaHeap, ...?nativeHeap};
+    if (breakdown is Map) {
+      const categories = {
+        'javaHeapKb': 'pss_java_heap',
+        'nativeHeapKb': 'pss_native_heap',
+        'graphicsKb': 'pss_graphics',
+        'codeKb': 'pss_code',
+        'stackKb': 'pss_stack',
+        'totalPssKb': 'pss_total',
+      };
+      categories.forEach((key, name) {
+        final value = breakdown[key] as num?;
+        if (value != null && value >= 0) {
+          values[name] = value;
+        }
+      });
+    }
+    return values;
+  }
+
+  /// Maps the native per-thread CPU breakdown to measurement values: the CPU
+  /// usage of each top thread, in percent of one core, keyed by its name
+  /// (e.g. `thread_cpu_1_ui` for the Flutter UI thread). Threads sharing a
+  /// name are summed.
+  Map<String, dynamic>? _threadCpuValues(Object? breakdown) {
+    if (breakdown is! Map) {
+      return null;
+    }
+    final threads = breakdown['threads'];
+    if (threads is! List || threads.isEmpty) {
+      return null;
+    }
+    final values = <String, dynamic>{
+      'thread_count': breakdown['threadCount'],
+      'thread_cpu_total_ms': (breakdown['totalCpuMs'] as num?)?.toDouble(),
+    };
+    for (final thread in threads.whereType<Map>()) {
+      final name = thread['name'];
+      final usage = (thread['cpuUsage'] as num?)?.toDouble();
+      if (name is! String || usage == null) {
+        continue;
+      }
+      final key =
+          'thread_cpu_${name.replaceAll(RegExp('[^A-Za-z0-9]+'), '_')}';
+      values[key] = ((values[key] as double?) ?? 0.0) + usage;
+    }
+    return values;
+  }
+
+  /// Pushes the frame duration percentiles recorded natively since the
+  /// previous send, in milliseconds.
+  Future<void> _pushFrameHistogram() async {
+    try {
+      final histogram = await Faro().nativeChannel?.getFrameHistogram();
+      final count = histogram?['count'] as num?;
+      if (histogram == null || count == null || count == 0) {
+        return;
+      }
+      double? millis(String key) {
+        final micros = histogram[key] as num?;
+        return micros == null
+            ? null
+            : micros / Duration.microsecondsPerMillisecond;
+      }
+
+      _pushVitalsMeasurement({
+        'frame_count': count,
+        'frame_duration_p50': millis('p50'),
+        'frame_duration_p90': millis('p90'),
+        'frame_duration_p99': millis('p99'),
+        'frame_duration_max': millis('max'),
+      }, 'app_frame_durations');
+    } catch (error) {
+      log('Error getting frame histogram: $error');
+    }
+  }
+
+  Future<void> _initAnrWatchdog(
+    List<Duration>? stallThresholds,
+    Duration? samplingInterval,
+  ) async {
+    try {
+      await Faro().nativeChannel?.initAnrWatchdog(
+        stallThresholds ??
+            const [
+              Duration(milliseconds: 200),
+              Duration(seconds: 1),
+              Duration(seconds: 5),
+            ],
+        samplingInterval ?? const Duration(milliseconds: 50),
+      );
+    } catch (error) {
+      log('Error initializing ANR watchdog: $error');
+    }
+  }
+
   Future<void> _pushRefreshRate() async {
     final refreshRate = await Faro().nativeChannel?.getRefreshRate();
     log('refreshRate $refreshRate');
@@ -170,27 +434,81 @@ class NativeIntegration implements Disposable {
   }
 
   Future<void> _getAnrStatus() async {
-    final anr = await Faro().nativeChannel?.getANRStatus();
+    final anr = await Faro().nativeChannel?.getANRStatus(
+      knownFrames: _frameDictionary.length,
+    );
 
     if (anr != null && anr.isNotEmpty) {
-      // Push the ANR count as a measurement
-      _pushVitalsMeasurement({'anr_count': anr.length}, 'anr');
+      // ANRs are drained natively; those that did not fit in the native
+      // queue are only counted
+      var dropped = 0;
 
       // Log each ANR as a warning with its stacktrace
       for (final anrItem in anr) {
         try {
           // Parse the JSON string to extract just the stacktrace
-          final anrJson = jsonDecode(anrItem);
-          if (anrJson.containsKey('stacktrace')) {
-            Faro().pushError(
-              type: 'flutter_error',
-              value: 'ANR (Application Not Responding)',
-              context: {'stacktrace': anrJson['stacktrace']},
-              fatal: true,
-            );
-          }
+          final anrJson = jsonDecode(anrItem) as Map<String, dynamic>;
+          dropped += (anrJson['droppedCount'] as int?) ?? 0;
+          _pushAnr(anrJson);
         } catch (_) {}
       }
+
+      // Push the ANR count as a measurement
+      _pushVitalsMeasurement({
+        'anr_count': anr.length + dropped,
+        if (dropped > 0) 'anr_dropped': dropped,
+      }, 'anr');
+    }
+  }
+
+  void _pushAnr(Map<String, dynamic> anrJson) {
+    // Android sends interned frame ids plus the frames not sent yet
+    _frameDictionary.update(anrJson);
+    final stacktrace = _frameDictionary.stacktrace(anrJson);
+    final profile = anrJson['profile'];
+    if (stacktrace != null) {
+      Faro().pushError(
+        type: 'flutter_error',
+        value: 'ANR (Application Not Responding)',
+        context: {
+          'stacktrace': stacktrace,
+          // Call tree of the stack samples taken during the stall
+          if (profile is Map<String, dynamic>)
+            'profile': jsonEncode(_frameDictionary.profile(profile)),
+        },
+        fatal: true,
+      );
+    }
+  }
+
+  /// Pushes the telemetry spooled natively while no engine was attached,
+  /// typically by a previous run of the app.
+  Future<void> _drainTelemetrySpool() async {
+    try {
+      final spool = await Faro().nativeChannel?.drainTelemetrySpool();
+      if (spool == null) {
+        return;
+      }
+      final batches = spool['eventBatches'];
+      if (batches is List) {
+        for (final batch in batches.whereType<Uint8List>()) {
+          _handleEventBatch(ByteData.sublistView(batch));
+        }
+      }
+      final anrs = spool['anrs'];
+      if (anrs is List) {
+        for (final anr in anrs.whereType<String>()) {
+          try {
+            _pushAnr(jsonDecode(anr) as Map<String, dynamic>);
+          } catch (_) {}
+        }
+      }
+      final dropped = spool['dropped'] as int? ?? 0;
+      if (dropped > 0) {
+        log('Faro: $dropped native telemetry records were dropped offline');
+      }
+    } catch (error) {
+      log('Error draining native telemetry spool: $error');
     }
   }
 
@@ -208,35 +526,216 @@ class NativeIntegration implements Disposable {
               Faro().pushLog(call.arguments, level: LogLevel.error);
             }
             break;
+        }
+      } catch (error) {
+        log('Error in method channel handler: $error');
+      }
+    });
+    _eventChannel.setMessageHandler((batch) async {
+      _handleEventBatch(batch);
+      return null;
+    });
+  }
 
-          case 'onFrozenFrame':
-            if (call.arguments != null) {
-              _pushVitalsMeasurement({
-                'frozen_frames': call.arguments,
-              }, 'app_frozen_frame');
-            }
+  /// Decodes a native event batch: a version byte followed by records of a
+  /// type byte, a little-endian uint16 payload length and the payload.
+  /// Unknown record types are skipped.
+  void _handleEventBatch(ByteData? batch) {
+    if (batch == null || batch.lengthInBytes == 0) {
+      return;
+    }
+    try {
+      if (batch.getUint8(0) != _eventBatchVersion) {
+        log('Unsupported native event batch version ${batch.getUint8(0)}');
+        return;
+      }
+      var offset = 1;
+      while (offset + _recordHeaderBytes <= batch.lengthInBytes) {
+        final type = batch.getUint8(offset);
+        final length = batch.getUint16(offset + 1, Endian.little);
+        final payload = offset + _recordHeaderBytes;
+        if (payload + length > batch.lengthInBytes) {
+          break;
+        }
+        switch (type) {
+          case _framesRecord:
+            _pushFrameStats(batch, payload);
             break;
-
-          case 'onRefreshRate':
-            if (call.arguments != null) {
-              _pushVitalsMeasurement({
-                'refresh_rate': call.arguments,
-              }, 'app_refresh_rate');
+          case _anrRecord:
+            // The batch only signals new ANRs; fetch their details now
+            // rather than waiting for the next vitals tick.
+            if (_anrTracking && Platform.isAndroid) {
+              _getAnrStatus();
             }
             break;
-
-          case 'onSlowFrames':
-            if (call.arguments != null) {
-              _pushVitalsMeasurement({
-                'slow_frames': call.arguments,
-              }, 'app_frames_rate');
-            }
+          case _frameBudgetHistogramRecord:
+            _pushFrameBudgetHistogram(batch, payload);
+            break;
+          case _stallsRecord:
+            _pushMainThreadStalls(batch, payload);
+            break;
+          case _monitorTransitionsRecord:
+            _pushMonitorTransitions(batch, payload);
+            break;
+          case _gcRecord:
+            _pushGarbageCollection(batch, payload);
+            break;
+          case _memoryPressureRecord:
+            _pushMemoryPressure(batch, payload);
+            break;
+          case _appStartRecord:
+            _pushAppStart(batch, payload);
             break;
         }
-      } catch (error) {
-        log('Error in method channel handler: $error');
+        offset = payload + length;
       }
-    });
+    } catch (error) {
+      log('Error in native event batch handler: $error');
+    }
+  }
+
+  /// Frames record: frame count, slow frames, frozen frames (int32 each)
+  /// and the time the frames occupied on screen, rounded up to whole vsync
+  /// intervals (int64 nanoseconds).
+  void _pushFrameStats(ByteData batch, int offset) {
+    final frames = batch.getInt32(offset, Endian.little);
+    final slowFrames = batch.getInt32(offset + 4, Endian.little);
+    final frozenFrames = batch.getInt32(offset + 8, Endian.little);
+    final occupiedNanos = batch.getInt64(offset + 12, Endian.little);
+    if (frames > 0 && occupiedNanos > 0) {
+      _pushVitalsMeasurement({
+        'refresh_rate': frames * 1e9 / occupiedNanos,
+      }, 'app_refresh_rate');
+    }
+    if (slowFrames > 0) {
+      _pushVitalsMeasurement({'slow_frames': slowFrames}, 'app_frames_rate');
+    }
+    if (frozenFrames > 0) {
+      _pushVitalsMeasurement({
+        'frozen_frames': frozenFrames,
+      }, 'app_frozen_frame');
+    }
+  }
+
+  /// Frame budget histogram record: a bucket count byte followed by one
+  /// int32 frame count per bucket of missed vsyncs.
+  void _pushFrameBudgetHistogram(ByteData batch, int offset) {
+    final buckets = batch.getUint8(offset);
+    final values = <String, dynamic>{};
+    for (var i = 0; i < buckets && i < _frameBudgetBuckets.length; i++) {
+      values[_frameBudgetBuckets[i]] = batch.getInt32(
+        offset + 1 + i * 4,
+        Endian.little,
+      );
+    }
+    if (values.isNotEmpty) {
+      _pushVitalsMeasurement(values, 'app_frame_histogram');
+    }
+  }
+
+  /// Stalls record: a threshold count byte followed by an int32 threshold in
+  /// milliseconds and an int32 count of main thread messages that ran past it,
+  /// per threshold.
+  void _pushMainThreadStalls(ByteData batch, int offset) {
+    final thresholds = batch.getUint8(offset);
+    final values = <String, dynamic>{};
+    for (var i = 0; i < thresholds; i++) {
+      final entry = offset + 1 + i * 8;
+      final thresholdMs = batch.getInt32(entry, Endian.little);
+      values['stalls_over_${thresholdMs}ms'] = batch.getInt32(
+        entry + 4,
+        Endian.little,
+      );
+    }
+    if (values.isNotEmpty) {
+      _pushVitalsMeasurement(values, 'app_main_thread_stalls');
+    }
+  }
+
+  /// Monitor transitions record: the number of foreground/background
+  /// transitions and of skipped ones, to a state the monitors already were
+  /// in (int32 each), then the total and max time spent starting and
+  /// stopping the monitors (int64 nanoseconds each).
+  void _pushMonitorTransitions(ByteData batch, int offset) {
+    final transitions = batch.getInt32(offset, Endian.little);
+    final skipped = batch.getInt32(offset + 4, Endian.little);
+    final totalNanos = batch.getInt64(offset + 8, Endian.little);
+    final maxNanos = batch.getInt64(offset + 16, Endian.little);
+    _pushVitalsMeasurement({
+      'transitions': transitions,
+      'skipped_transitions': skipped,
+      if (transitions > 0)
+        'transition_latency_avg_ms': totalNanos / transitions / 1e6,
+      if (transitions > 0) 'transition_latency_max_ms': maxNanos / 1e6,
+    }, 'app_monitor_transitions');
+  }
+
+  /// GC record: the number of collections, of blocking ones and of frozen
+  /// frames a blocking collection overlapped (int32 each), then the time
+  /// spent collecting and in blocking collections in milliseconds, the bytes
+  /// allocated and freed, and the time they were measured over in
+  /// milliseconds (int64 each).
+  void _pushGarbageCollection(ByteData batch, int offset) {
+    final count = batch.getInt32(offset, Endian.little);
+    final blockingCount = batch.getInt32(offset + 4, Endian.little);
+    final frozenFrames = batch.getInt32(offset + 8, Endian.little);
+    final timeMs = batch.getInt64(offset + 12, Endian.little);
+    final blockingTimeMs = batch.getInt64(offset + 20, Endian.little);
+    final bytesAllocated = batch.getInt64(offset + 28, Endian.little);
+    final bytesFreed = batch.getInt64(offset + 36, Endian.little);
+    final intervalMs = batch.getInt64(offset + 44, Endian.little);
+    if (intervalMs <= 0 && frozenFrames == 0) {
+      return;
+    }
+    _pushVitalsMeasurement({
+      'gc_count': count,
+      'gc_time_ms': timeMs,
+      'blocking_gc_count': blockingCount,
+      'blocking_gc_time_ms': blockingTimeMs,
+      'frozen_frames_blocking_gc': frozenFrames,
+      if (intervalMs > 0)
+        'allocation_rate_kb_per_s': bytesAllocated / 1024 / (intervalMs / 1000),
+      'freed_kb': bytesFreed / 1024,
+    }, 'app_gc');
+  }
+
+  /// Memory pressure record: the number of trim memory and low memory
+  /// signals and the highest trim level (int32 each), then the RSS in kB when
+  /// the latest signal arrived (int64, -1 if unknown).
+  void _pushMemoryPressure(ByteData batch, int offset) {
+    final trimCount = batch.getInt32(offset, Endian.little);
+    final lowMemoryCount = batch.getInt32(offset + 4, Endian.little);
+    final maxTrimLevel = batch.getInt32(offset + 8, Endian.little);
+    final rssKb = batch.getInt64(offset + 12, Endian.little);
+    _pushVitalsMeasurement({
+      'trim_memory_count': trimCount,
+      'low_memory_count': lowMemoryCount,
+      if (trimCount > 0) 'max_trim_level': maxTrimLevel,
+      if (rssKb >= 0) 'mem_usage': rssKb,
+    }, 'app_memory_pressure');
+  }
+
+  /// App start record, one per warm or hot start: the start type byte (2
+  /// warm, 3 hot), then the time from the activity creation to its start (-1
+  /// for a hot start), from its start to its resume and from the resume to
+  /// the next frame drawn (int64 nanoseconds each).
+  void _pushAppStart(ByteData batch, int offset) {
+    final startType = batch.getUint8(offset);
+    final createdToStarted = batch.getInt64(offset + 1, Endian.little);
+    final startedToResumed = batch.getInt64(offset + 9, Endian.little);
+    final resumedToDrawn = batch.getInt64(offset + 17, Endian.little);
+    final total =
+        (createdToStarted > 0 ? createdToStarted : 0) +
+        startedToResumed +
+        resumedToDrawn;
+    _pushVitalsMeasurement({
+      'appStartDuration': total / 1e6,
+      'coldStart': 0,
+      'hotStart': startType == _hotStartType ? 1 : 0,
+      if (createdToStarted >= 0) 'createToStart': createdToStarted / 1e6,
+      'startToResume': startedToResumed / 1e6,
+      'resumeToFirstDraw': resumedToDrawn / 1e6,
+    }, 'app_startup');
   }
 }
 
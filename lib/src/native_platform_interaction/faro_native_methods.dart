@@ -17,6 +17,36 @@ class FaroNativeMethods {
     return FaroSdkPlatform.instance.getCpuUsage();
   }
 
+  Future<void> initVitalsSampler(
+    Duration interval,
+    int windowSize, {
+    int threadCpuTopCount = 0,
+  }) {
+    return FaroSdkPlatform.instance.initVitalsSampler(
+      interval,
+      windowSize,
+      threadCpuTopCount: threadCpuTopCount,
+    );
+  }
+
+  Future<Map<String, dynamic>?> getVitalsWindow() {
+    return FaroSdkPlatform.instance.getVitalsWindow();
+  }
+
+  Future<Map<String, dynamic>?> getFrameHistogram() {
+    return FaroSdkPlatform.instance.getFrameHistogram();
+  }
+
+  Future<void> initAnrWatchdog(
+    List<Duration> stallThresholds,
+    Duration samplingInterval,
+  ) {
+    return FaroSdkPlatform.instance.initAnrWatchdog(
+      stallThresholds,
+      samplingInterval,
+    );
+  }
+
   Future<Map<String, dynamic>?> getAppStart() {
     return FaroSdkPlatform.instance.getAppStart();
   }
@@ -33,8 +63,8 @@ class FaroNativeMethods {
     return FaroSdkPlatform.instance.startFramesTracker();
   }
 
-  Future<List<String>?> getANRStatus() {
-    return FaroSdkPlatform.instance.getANRStatus();
+  Future<List<String>?> getANRStatus({int knownFrames = 0}) {
+    return FaroSdkPlatform.instance.getANRStatus(knownFrames: knownFrames);
   }
 
   Future<void> enableCrashReporter(Map<String, dynamic> config) {
@@ -44,4 +74,16 @@ class FaroNativeMethods {
   Future<List<String>?> getCrashReport() {
     return FaroSdkPlatform.instance.getCrashReport();
   }
+
+  Future<Map<String, dynamic>?> readCrashJournal(int cursor, int limit) {
+    return FaroSdkPlatform.instance.readCrashJournal(cursor, limit);
+  }
+
+  Future<void> acknowledgeCrashJournal(int cursor) {
+    return FaroSdkPlatform.instance.acknowledgeCrashJournal(cursor);
+  }
+
+  Future<Map<String, dynamic>?> drainTelemetrySpool() {
+    return FaroSdkPlatform.instance.drainTelemetrySpool();
+  }
 }
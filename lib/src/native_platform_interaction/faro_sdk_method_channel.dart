@@ -30,8 +30,10 @@ class MethodChannelFaroSdk extends FaroSdkPlatform {
   }
 
   @override
-  Future<List<String>?> getANRStatus() async {
-    final anr = await methodChannel.invokeListMethod<String>('getANRStatus');
+  Future<List<String>?> getANRStatus({int knownFrames = 0}) async {
+    final anr = await methodChannel.invokeListMethod<String>('getANRStatus', {
+      'knownFrames': knownFrames,
+    });
     return anr;
   }
 
@@ -53,6 +55,42 @@ class MethodChannelFaroSdk extends FaroSdkPlatform {
     return methodChannel.invokeMethod<double?>('getCpuUsage');
   }
 
+  @override
+  Future<void> initVitalsSampler(
+    Duration interval,
+    int windowSize, {
+    int threadCpuTopCount = 0,
+  }) async {
+    await methodChannel.invokeMethod<void>('initVitalsSampler', {
+      'intervalMs': interval.inMilliseconds,
+      'windowSize': windowSize,
+      'threadCpuTopCount': threadCpuTopCount,
+    });
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getVitalsWindow() async {
+    return methodChannel.invokeMapMethod<String, dynamic>('getVitalsWindow');
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getFrameHistogram() async {
+    return methodChannel.invokeMapMethod<String, dynamic>('getFrameHistogram');
+  }
+
+  @override
+  Future<void> initAnrWatchdog(
+    List<Duration> stallThresholds,
+    Duration samplingInterval,
+  ) async {
+    await methodChannel.invokeMethod<void>('initAnrWatchdog', {
+      'stallThresholdsMs': [
+        for (final threshold in stallThresholds) threshold.inMilliseconds,
+      ],
+      'samplingIntervalMs': samplingInterval.inMilliseconds,
+    });
+  }
+
   @override
   Future<String?> coldStart() async {
     final coldStart = await methodChannel.invokeMethod<String>('coldStart');
@@ -77,4 +115,26 @@ class MethodChannelFaroSdk extends FaroSdkPlatform {
     );
     return crashInfo;
   }
+
+  @override
+  Future<Map<String, dynamic>?> readCrashJournal(int cursor, int limit) async {
+    return methodChannel.invokeMapMethod<String, dynamic>('readCrashJournal', {
+      'cursor': cursor,
+      'limit': limit,
+    });
+  }
+
+  @override
+  Future<void> acknowledgeCrashJournal(int cursor) async {
+    await methodChannel.invokeMethod<void>('acknowledgeCrashJournal', {
+      'cursor': cursor,
+    });
+  }
+
+  @override
+  Future<Map<String, dynamic>?> drainTelemetrySpool() async {
+    return methodChannel.invokeMapMethod<String, dynamic>(
+      'drainTelemetrySpool',
+    );
+  }
 }
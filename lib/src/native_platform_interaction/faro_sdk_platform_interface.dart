@@ -50,11 +50,34 @@ abstract class FaroSdkPlatform extends PlatformInterface {
     throw UnimplementedError('getCpuUsage() has not been implemented.');
   }
 
+  Future<void> initVitalsSampler(
+    Duration interval,
+    int windowSize, {
+    int threadCpuTopCount = 0,
+  }) {
+    throw UnimplementedError('initVitalsSampler() has not been implemented.');
+  }
+
+  Future<Map<String, dynamic>?> getVitalsWindow() {
+    throw UnimplementedError('getVitalsWindow() has not been implemented.');
+  }
+
+  Future<Map<String, dynamic>?> getFrameHistogram() {
+    throw UnimplementedError('getFrameHistogram() has not been implemented.');
+  }
+
   Future<void> startFramesTracker() {
     throw UnimplementedError('startFramesTracker() has not been implemented.');
   }
 
-  Future<List<String>?> getANRStatus() {
+  Future<void> initAnrWatchdog(
+    List<Duration> stallThresholds,
+    Duration samplingInterval,
+  ) {
+    throw UnimplementedError('initAnrWatchdog() has not been implemented.');
+  }
+
+  Future<List<String>?> getANRStatus({int knownFrames = 0}) {
     throw UnimplementedError('getANRStatus() has not been implemented.');
   }
 
@@ -70,4 +93,20 @@ abstract class FaroSdkPlatform extends PlatformInterface {
   Future<List<String>?> getCrashReport() {
     throw UnimplementedError('getCrashReport() has not been implemented');
   }
+
+  Future<Map<String, dynamic>?> readCrashJournal(int cursor, int limit) {
+    throw UnimplementedError('readCrashJournal() has not been implemented');
+  }
+
+  Future<void> acknowledgeCrashJournal(int cursor) {
+    throw UnimplementedError(
+      'acknowledgeCrashJournal() has not been implemented',
+    );
+  }
+
+  Future<Map<String, dynamic>?> drainTelemetrySpool() {
+    throw UnimplementedError(
+      'drainTelemetrySpool() has not been implemented',
+    );
+  }
 }
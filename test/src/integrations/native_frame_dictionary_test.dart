@@ -0,0 +1,77 @@
+import 'package:faro/src/integrations/native_frame_dictionary.dart';
+import 'package:flutter_test/flutter_test.dart';
+
+void main() {
+  group('NativeFrameDictionary', () {
+    late NativeFrameDictionary dictionary;
+
+    setUp(() {
+      dictionary = NativeFrameDictionary();
+    });
+
+    test('resolves frame ids into a formatted stack trace', () {
+      dictionary.update({
+        'firstFrameId': 0,
+        'frames': ['a.B.c(B.java:1)', 'android.os.Looper.loop(Looper.java:2)'],
+      });
+
+      final stacktrace = dictionary.stacktrace({
+        'frameIds': [0, 1],
+        'truncatedFrames': 3,
+      });
+
+      expect(
+        stacktrace,
+        'a.B.c(B.java:1)\n'
+        'android.os.Looper.loop(Looper.java:2)\n'
+        '... 3 more frames truncated\n',
+      );
+    });
+
+    test('appends delta frames after the ones already known', () {
+      dictionary
+        ..update({
+          'firstFrameId': 0,
+          'frames': ['f0'],
+        })
+        ..update({
+          'firstFrameId': 1,
+          'frames': ['f1', 'f2'],
+        });
+
+      expect(dictionary.length, 3);
+      expect(dictionary.frame(2), 'f2');
+    });
+
+    test('ignores a delta that does not follow the known frames', () {
+      dictionary.update({
+        'firstFrameId': 5,
+        'frames': ['f5'],
+      });
+
+      expect(dictionary.length, 0);
+      expect(dictionary.frame(5), NativeFrameDictionary.otherFrame);
+    });
+
+    test('keeps preformatted stack traces', () {
+      expect(dictionary.stacktrace({'stacktrace': 'x.y(z:1)\n'}), 'x.y(z:1)\n');
+    });
+
+    test('resolves the frame table of a stall profile', () {
+      dictionary.update({
+        'firstFrameId': 0,
+        'frames': ['f0', 'f1'],
+      });
+
+      final profile = dictionary.profile({
+        'samples': 2,
+        'frameIds': [1, -1],
+        'tree': <Object>[],
+      });
+
+      expect(profile['frames'], ['f1', NativeFrameDictionary.otherFrame]);
+      expect(profile.containsKey('frameIds'), isFalse);
+      expect(profile['samples'], 2);
+    });
+  });
+}
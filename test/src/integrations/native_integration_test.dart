@@ -1,3 +1,5 @@
+import 'dart:typed_data';
+
 import 'package:fake_async/fake_async.dart';
 import 'package:faro/src/core/pod.dart';
 import 'package:faro/src/faro.dart';
@@ -79,6 +81,41 @@ void main() {
       expect(measurement?.type, 'app_startup');
     });
 
+    test('getAppStart pushes the native start phases', () async {
+      when(() => mockNativeChannel.getAppStart()).thenAnswer(
+        (_) async => {
+          'startType': 'cold',
+          'appStartDuration': 800,
+          'phases': {
+            'processStartToPluginAttach': 300.0,
+            'resumeToFirstDraw': 100.5,
+          },
+        },
+      );
+
+      await nativeIntegration.getAppStart();
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_startup');
+      expect(measurement?.values, {
+        'appStartDuration': 800,
+        'coldStart': 1,
+        'processStartToPluginAttach': 300.0,
+        'resumeToFirstDraw': 100.5,
+      });
+    });
+
+    test('getAppStart reports a warm process start as not cold', () async {
+      when(() => mockNativeChannel.getAppStart()).thenAnswer(
+        (_) async => {'startType': 'warm', 'appStartDuration': 400},
+      );
+
+      await nativeIntegration.getAppStart();
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.values, {'appStartDuration': 400, 'coldStart': 0});
+    });
+
     test(
       'vitals measurements are ingested as foreground-gated telemetry',
       () async {
@@ -92,6 +129,199 @@ void main() {
       },
     );
 
+    test('decodes native event batches into frame measurements', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(31)
+        // version
+        ..setUint8(0, 1)
+        // unknown record type with a 4 byte payload, must be skipped
+        ..setUint8(1, 99)
+        ..setUint16(2, 4, Endian.little)
+        ..setInt32(4, 7, Endian.little)
+        // frames record
+        ..setUint8(8, 1)
+        ..setUint16(9, 20, Endian.little)
+        ..setInt32(11, 60, Endian.little)
+        ..setInt32(15, 3, Endian.little)
+        ..setInt32(19, 1, Endian.little)
+        ..setInt64(23, 1000000000, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurements = router.ingested
+          .map((item) => item.asMeasurement)
+          .toList();
+      expect(measurements.map((m) => m?.type), [
+        'app_refresh_rate',
+        'app_frames_rate',
+        'app_frozen_frame',
+      ]);
+      expect(measurements[0]?.values?['refresh_rate'], 60.0);
+      expect(measurements[1]?.values?['slow_frames'], 3);
+      expect(measurements[2]?.values?['frozen_frames'], 1);
+    });
+
+    test('decodes the frame budget histogram record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(25)
+        ..setUint8(0, 1)
+        ..setUint8(1, 3)
+        ..setUint16(2, 21, Endian.little)
+        ..setUint8(4, 5);
+      for (var i = 0; i < 5; i++) {
+        batch.setInt32(5 + i * 4, 10 - i, Endian.little);
+      }
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_frame_histogram');
+      expect(measurement?.values, {
+        'missed_vsyncs_0': 10,
+        'missed_vsyncs_1': 9,
+        'missed_vsyncs_2_3': 8,
+        'missed_vsyncs_4_7': 7,
+        'missed_vsyncs_8_plus': 6,
+      });
+    });
+
+    test('decodes the main thread stalls record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(21)
+        ..setUint8(0, 1)
+        ..setUint8(1, 4)
+        ..setUint16(2, 17, Endian.little)
+        ..setUint8(4, 2)
+        ..setInt32(5, 200, Endian.little)
+        ..setInt32(9, 4, Endian.little)
+        ..setInt32(13, 1000, Endian.little)
+        ..setInt32(17, 1, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_main_thread_stalls');
+      expect(measurement?.values, {
+        'stalls_over_200ms': 4,
+        'stalls_over_1000ms': 1,
+      });
+    });
+
+    test('decodes the monitor transitions record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(28)
+        ..setUint8(0, 1)
+        ..setUint8(1, 5)
+        ..setUint16(2, 24, Endian.little)
+        ..setInt32(4, 4, Endian.little)
+        ..setInt32(8, 3, Endian.little)
+        ..setInt64(12, 2000000, Endian.little)
+        ..setInt64(20, 1500000, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_monitor_transitions');
+      expect(measurement?.values, {
+        'transitions': 4,
+        'skipped_transitions': 3,
+        'transition_latency_avg_ms': 0.5,
+        'transition_latency_max_ms': 1.5,
+      });
+    });
+
+    test('decodes the GC record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(56)
+        ..setUint8(0, 1)
+        ..setUint8(1, 6)
+        ..setUint16(2, 52, Endian.little)
+        ..setInt32(4, 5, Endian.little)
+        ..setInt32(8, 2, Endian.little)
+        ..setInt32(12, 1, Endian.little)
+        ..setInt64(16, 120, Endian.little)
+        ..setInt64(24, 80, Endian.little)
+        ..setInt64(32, 8 * 1024 * 1024, Endian.little)
+        ..setInt64(40, 4 * 1024 * 1024, Endian.little)
+        ..setInt64(48, 4000, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_gc');
+      expect(measurement?.values, {
+        'gc_count': 5,
+        'gc_time_ms': 120,
+        'blocking_gc_count': 2,
+        'blocking_gc_time_ms': 80,
+        'frozen_frames_blocking_gc': 1,
+        'allocation_rate_kb_per_s': 2048.0,
+        'freed_kb': 4096.0,
+      });
+    });
+
+    test('decodes the memory pressure record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(24)
+        ..setUint8(0, 1)
+        ..setUint8(1, 7)
+        ..setUint16(2, 20, Endian.little)
+        ..setInt32(4, 2, Endian.little)
+        ..setInt32(8, 1, Endian.little)
+        ..setInt32(12, 15, Endian.little)
+        ..setInt64(16, 250000, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_memory_pressure');
+      expect(measurement?.values, {
+        'trim_memory_count': 2,
+        'low_memory_count': 1,
+        'max_trim_level': 15,
+        'mem_usage': 250000,
+      });
+    });
+
+    test('decodes the app start record', () async {
+      nativeIntegration.initializeMethodChannel();
+      addTearDown(nativeIntegration.dispose);
+      final batch = ByteData(29)
+        ..setUint8(0, 1)
+        ..setUint8(1, 8)
+        ..setUint16(2, 25, Endian.little)
+        ..setUint8(4, 2)
+        ..setInt64(5, 40000000, Endian.little)
+        ..setInt64(13, 10500000, Endian.little)
+        ..setInt64(21, 70000000, Endian.little);
+
+      await TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .handlePlatformMessage('faro/events', batch, (_) {});
+
+      final measurement = router.ingested.single.asMeasurement;
+      expect(measurement?.type, 'app_startup');
+      expect(measurement?.values, {
+        'appStartDuration': 120.5,
+        'coldStart': 0,
+        'hotStart': 0,
+        'createToStart': 40.0,
+        'startToResume': 10.5,
+        'resumeToFirstDraw': 70.0,
+      });
+    });
+
     test('clearing faroInitScope stops the vitals timer', () {
       fakeAsync((async) {
         // Resolve the provider-built instance (as Faro.init does) wired to a